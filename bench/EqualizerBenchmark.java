@@ -0,0 +1,68 @@
+import javax.sound.sampled.AudioFormat;
+
+//Mide cuántas transmisiones estéreo de 48 kHz puede ecualizar en tiempo real un solo núcleo
+//Uso: java -cp out EqualizerBenchmark [bandas] [segundos]
+public class EqualizerBenchmark {
+    private static final int FRAMES = 1024;
+    private static final int CHANNELS = 2;
+    private static final float RATE = 48000f;
+
+    public static void main(String[] args) {
+        int bandCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3;
+
+        AudioFormat format = new AudioFormat(RATE, 16, CHANNELS, true, false);
+        byte[] pcm = new byte[FRAMES * format.getFrameSize()];
+        float[] samples = new float[FRAMES * CHANNELS];
+        for (int i = 0; i < FRAMES; i++) {
+            short value = (short) (Math.sin(2 * Math.PI * 440 * i / RATE) * 16000);
+            for (int c = 0; c < CHANNELS; c++) {
+                int p = (i * CHANNELS + c) * 2;
+                pcm[p] = (byte) value;
+                pcm[p + 1] = (byte) (value >> 8);
+            }
+        }
+
+        Equalizer equalizer = new Equalizer(samples.length);
+        equalizer.setBands(bands(bandCount, 0));
+
+        //Calentamiento para que el JIT compile el bucle antes de medir
+        run(equalizer, format, pcm, samples, 1.0, bandCount);
+        long blocks = run(equalizer, format, pcm, samples, seconds, bandCount);
+
+        double elapsed = seconds;
+        double audioSeconds = blocks * (double) FRAMES / RATE;
+        double realtime = audioSeconds / elapsed;
+        System.out.printf("Bandas: %d, bloque: %d frames, %d canales a %.0f Hz%n", bandCount, FRAMES, CHANNELS, RATE);
+        System.out.printf("Bloques procesados: %d (%.1f s de audio en %.1f s)%n", blocks, audioSeconds, elapsed);
+        System.out.printf("Costo por frame: %.1f ns%n", elapsed * 1e9 / (blocks * (double) FRAMES));
+        System.out.printf("Transmisiones simultáneas por núcleo: %.0f%n", realtime);
+    }
+
+    //Procesa bloques durante el tiempo indicado, cambiando las bandas de vez en cuando como lo haría un usuario
+    private static long run(Equalizer equalizer, AudioFormat format, byte[] pcm, float[] samples, double seconds, int bandCount) {
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        long blocks = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 64; i++) {
+                PcmSamples.toFloat(pcm, 0, samples, samples.length, format);
+                equalizer.process(samples, FRAMES, CHANNELS, RATE);
+                PcmSamples.fromFloat(samples, samples.length, pcm, 0, format);
+            }
+            blocks += 64;
+            if (blocks % 4096 == 0) {
+                equalizer.setBands(bands(bandCount, (blocks / 4096) % 6 - 3));
+            }
+        }
+        return blocks;
+    }
+
+    private static Equalizer.Band[] bands(int count, double offsetDb) {
+        Equalizer.Band[] result = new Equalizer.Band[count];
+        for (int i = 0; i < count; i++) {
+            double frequency = 31.5 * Math.pow(2, i * 10.0 / count);
+            result[i] = new Equalizer.Band(Equalizer.FilterType.PEAK, frequency, (i % 2 == 0 ? 3 : -3) + offsetDb, 1.41);
+        }
+        return result;
+    }
+}
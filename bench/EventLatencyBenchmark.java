@@ -0,0 +1,145 @@
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.swing.*;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+//Cuánto tarda un cambio del reproductor en llegar a la interfaz y cada cuánto llega la posición mientras suena,
+//con los avisos de PlayerEvents contra la ventana de antes, que preguntaba al reproductor cada 500 ms
+//La canción es silencio, suena a velocidad real por NullSink
+//Uso: java -Djava.awt.headless=true -cp out EventLatencyBenchmark [cambios de estado]
+public class EventLatencyBenchmark {
+    private static final int POLL_MS = 500;
+    private static final int SONG_SECONDS = 30;
+    private static final int MEASURE_MS = 3000;
+
+    // ---- Solo en el hilo de la interfaz ----
+    private static long requested;
+    private static CountDownLatch seen;
+    private static boolean polledRepeat;
+    private static final List<Long> eventLatencies = new ArrayList<>();
+    private static final List<Long> pollLatencies = new ArrayList<>();
+    private static final List<Long> positionTimes = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        int toggles = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        File song = silence(SONG_SECONDS);
+        MusicPlayer[] holder = new MusicPlayer[1];
+        Timer[] poller = new Timer[1];
+        SwingUtilities.invokeAndWait(() -> {
+            MusicPlayer player = new MusicPlayer(new UIInformation(), NullSink.realtime());
+            player.addListener((previous, state, playlistChanges) -> {
+                if (seen != null && state.isRepeatMode() != previous.isRepeatMode()) {
+                    eventLatencies.add(System.nanoTime() - requested);
+                    seen.countDown();
+                }
+            });
+            player.addPositionListener((position, length) -> positionTimes.add(System.nanoTime()));
+            //Lo que hacía la ventana antes: preguntar cada 500 ms
+            poller[0] = new Timer(POLL_MS, e -> {
+                if (seen != null && player.isRepeatMode() != polledRepeat) {
+                    polledRepeat = player.isRepeatMode();
+                    pollLatencies.add(System.nanoTime() - requested);
+                    seen.countDown();
+                }
+            });
+            poller[0].start();
+            holder[0] = player;
+        });
+        MusicPlayer player = holder[0];
+
+        //Cambios de estado pedidos en momentos al azar, como los clics de una persona
+        Random random = new Random(42);
+        for (int i = 0; i < toggles; i++) {
+            Thread.sleep(random.nextInt(POLL_MS));
+            CountDownLatch latch = new CountDownLatch(2);
+            SwingUtilities.invokeAndWait(() -> {
+                seen = latch;
+                requested = System.nanoTime();
+            });
+            SwingUtilities.invokeLater(player::toggleRepeatMode);
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        SwingUtilities.invokeAndWait(() -> {
+            seen = null;
+            poller[0].stop();
+        });
+        System.out.printf("%d cambios de estado, hasta que la interfaz se entera:%n", toggles);
+        System.out.printf("%-26s %10s %10s %10s%n", "", "p50 ms", "p99 ms", "máx ms");
+        printLatencies("Avisos", eventLatencies);
+        printLatencies("Consulta cada " + POLL_MS + " ms", pollLatencies);
+
+        //Posición mientras suena
+        SwingUtilities.invokeAndWait(() -> player.loadAsync(song, true));
+        while (!player.getState().isPlaying()) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+        int playing = countPositions(MEASURE_MS);
+        List<Long> gaps = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 1; i < positionTimes.size(); i++) {
+                gaps.add(positionTimes.get(i) - positionTimes.get(i - 1));
+            }
+        });
+        System.out.printf("%nPosición mientras suena: %.1f avisos/s (antes %.1f)%n",
+                playing * 1000.0 / MEASURE_MS, 1000.0 / POLL_MS);
+        System.out.printf("%-26s %10s %10s %10s%n", "", "p50 ms", "p99 ms", "máx ms");
+        printLatencies("Entre avisos", gaps);
+
+        //En pausa no debe correr nada
+        SwingUtilities.invokeAndWait(player::pause);
+        Thread.sleep(200);
+        int paused = countPositions(MEASURE_MS);
+        boolean[] ticking = new boolean[1];
+        SwingUtilities.invokeAndWait(() -> ticking[0] = player.getEvents().isTicking());
+        System.out.printf("%nEn pausa: %d avisos en %d ms, Timer de posición %s%n", paused, MEASURE_MS,
+                ticking[0] ? "corriendo" : "parado");
+
+        SwingUtilities.invokeAndWait(player::close);
+        song.delete();
+        System.exit(0);
+    }
+
+    private static int countPositions(int millis) throws Exception {
+        SwingUtilities.invokeAndWait(positionTimes::clear);
+        Thread.sleep(millis);
+        int[] count = new int[1];
+        SwingUtilities.invokeAndWait(() -> count[0] = positionTimes.size());
+        return count[0];
+    }
+
+    private static void printLatencies(String name, List<Long> nanos) {
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            System.out.printf("%-26s %10s%n", name, "-");
+            return;
+        }
+        System.out.printf("%-26s %10.2f %10.2f %10.2f%n", name, percentile(sorted, 0.5) / 1e6,
+                percentile(sorted, 0.99) / 1e6, sorted.get(sorted.size() - 1) / 1e6);
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) (p * sorted.size())));
+    }
+
+    //WAV de silencio en 44.1 kHz estéreo de 16 bits
+    private static File silence(int seconds) throws Exception {
+        AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+        byte[] pcm = new byte[44100 * 4 * seconds];
+        File file = File.createTempFile("silencio", ".wav");
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(pcm), format, 44100L * seconds)) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Mide cuánta memoria ocupa cada canción de una biblioteca grande una vez abierta: la foto que guarda el vigilante,
+//los metadatos cargados de la caché, el índice del selector y una playlist con toda la biblioteca
+//Las rutas están una sola vez, en TrackTable; todo lo demás guarda ids de canción
+//Uso: java -Xmx3g -cp out LibraryMemoryBenchmark [canciones] [canciones por carpeta]
+public class LibraryMemoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int perFolder = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        File snapshotFile = File.createTempFile("library", ".snapshot");
+        File metadataFile = File.createTempFile("metadata", ".cache");
+        long base = usedHeap();
+
+        //Rutas como las de una biblioteca real: artista/álbum/"NN título.wav", con tildes
+        String root = File.separator + "home" + File.separator + "usuario" + File.separator + "Música";
+        List<LibrarySnapshot.Folder> folders = new ArrayList<>();
+        MetadataLibrary writer = new MetadataLibrary(metadataFile);
+        for (int start = 0; start < tracks; start += perFolder) {
+            int album = start / perFolder;
+            String artist = "Artista " + (album / 8);
+            String path = root + File.separator + artist + File.separator + "Álbum número " + album;
+            String[] names = new String[Math.min(perFolder, tracks - start)];
+            for (int t = 0; t < names.length; t++) {
+                String title = "Canción " + (start + t) + " del álbum";
+                names[t] = String.format("%02d %s.wav", t + 1, title);
+                writer.put(new Track(new File(path, names[t]), 40_000_000L, 1_600_000_000_000L, title, artist,
+                        "Álbum número " + album, 240_000_000L, 44100, 2, 16));
+            }
+            folders.add(new LibrarySnapshot.Folder(path, 1_600_000_000_000L, names));
+        }
+        new LibrarySnapshot(root, folders).save(snapshotFile);
+        writer.save();
+        folders = null;
+        writer = null;
+
+        //Lo único que queda de armar las cachés son los ids de TrackTable, que al abrir el reproductor pediría igual
+        long afterTable = report("Tabla de rutas (ids de canción)", base, tracks);
+
+        //Cada parte se carga como al abrir el reproductor y se mide lo que queda ocupado después de juntar basura
+        LibrarySnapshot snapshot = LibrarySnapshot.load(snapshotFile);
+        long afterSnapshot = report("Foto de la biblioteca", afterTable, tracks);
+
+        MetadataLibrary metadata = new MetadataLibrary(metadataFile);
+        long afterMetadata = report("Metadatos", afterSnapshot, tracks);
+
+        SongIndex index = selector(snapshot, metadata);
+        long afterIndex = report("Selector (sin palabras indexadas)", afterMetadata, tracks);
+
+        //Las canciones llegan a la playlist desde el selector
+        Playlist playlist = new Playlist();
+        playlist.addAll(index.getFiles());
+        long afterPlaylist = report("Playlist con toda la biblioteca", afterIndex, tracks);
+
+        index.search("cancion", 1);
+        report("Palabras del índice de búsqueda", afterPlaylist, tracks);
+        report("Total", base, tracks);
+
+        //Que nada se libere antes de medir
+        System.out.println(snapshot.getTrackCount() + metadata.size() + index.size() + playlist.size() > 0 ? "" : "-");
+        snapshotFile.delete();
+        metadataFile.delete();
+    }
+
+    //Como en la ventana: cada archivo de la foto entra al selector con los datos de la caché
+    //En un método aparte, así la lista de archivos ya es basura al medir
+    private static SongIndex selector(LibrarySnapshot snapshot, MetadataLibrary metadata) {
+        SongIndex index = new SongIndex();
+        List<Track> found = new ArrayList<>(snapshot.getTrackCount());
+        for (File file : snapshot.getTracks()) {
+            found.add(metadata.getOrUnknown(file));
+        }
+        index.addAll(found);
+        return index;
+    }
+
+    private static long report(String part, long before, int tracks) {
+        long used = usedHeap();
+        System.out.printf("%-36s %8.1f MB  %6.1f bytes/canción%n", part, (used - before) / 1e6, (double) (used - before) / tracks);
+        return used;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        //Varias pasadas hasta que no baje más, un solo System.gc() puede dejar basura
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,56 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+//Mide la caché de metadatos: cuánto tarda en cargarse con una biblioteca grande y cuántos archivos por segundo
+//se leen de verdad la primera vez. Los WAV de prueba son cortos porque solo se leen las cabeceras.
+//Uso: java -cp out MetadataBenchmark [pistas en la caché] [archivos WAV a leer]
+public class MetadataBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int cached = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int real = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        File dir = Files.createTempDirectory("metadata-bench").toFile();
+        File cache = new File(dir, "metadata.cache");
+
+        //Caché grande sin archivos reales: lo que importa es leer el archivo de caché
+        MetadataLibrary writer = new MetadataLibrary(cache);
+        for (int i = 0; i < cached; i++) {
+            File file = new File("/musica/artista-" + (i % 5000) + "/album-" + (i % 97) + "/pista-" + i + ".wav");
+            writer.put(new Track(file, 40_000_000L + i, 1_600_000_000_000L + i, "Pista " + i,
+                    "Artista " + (i % 5000), "Álbum " + (i % 97), 240_000_000L, 44100, 2, 16));
+        }
+        writer.save();
+        System.out.printf("Caché de %d pistas (%.1f MB)%n", cached, cache.length() / 1e6);
+        //La primera carga calienta el JIT
+        for (int round = 0; round < 3; round++) {
+            MetadataLibrary reader = new MetadataLibrary(cache);
+            System.out.printf("  carga %d: %.0f ms, %d pistas%n", round + 1, reader.getLoadSeconds() * 1000, reader.size());
+        }
+
+        //Lectura real de cabeceras, primero sin caché y después con la caché recién escrita
+        File tracks = new File(dir, "wav");
+        List<File> files = new ArrayList<>();
+        try (WavFileSink.Recorder recorder = new WavFileSink.Recorder(new File(tracks, "base.wav"))) {
+            byte[] silence = new byte[4 * 4410];
+            AudioSink sink = recorder.open(new AudioFormat(44100, 16, 2, true, false), silence.length);
+            sink.write(silence, 0, silence.length);
+            sink.close();
+        } catch (LineUnavailableException e) {
+            throw new IOException(e);
+        }
+        byte[] base = Files.readAllBytes(new File(tracks, "base.wav").toPath());
+        for (int i = 0; i < real; i++) {
+            File file = new File(tracks, "pista-" + i + ".wav");
+            Files.write(file.toPath(), base);
+            files.add(file);
+        }
+        File realCache = new File(dir, "real.cache");
+        System.out.println(new MetadataLibrary(realCache).extractAll(files, null));
+        System.out.println(new MetadataLibrary(realCache).extractAll(files, null));
+    }
+}
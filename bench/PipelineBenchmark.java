@@ -0,0 +1,114 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Reproduce una lista completa con MusicPlayer sobre una salida nula y mide cuántas veces más rápido que el tiempo real
+//corre todo el camino: lectura, conversión de formato, fundidos, ecualizador y volumen. No necesita tarjeta de sonido.
+//Uso: java -Djava.awt.headless=true -cp out PipelineBenchmark [carpeta o archivos .wav]
+//Sin argumentos genera canciones de prueba en formatos distintos en una carpeta temporal
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        List<File> files = args.length > 0 ? collect(args) : generate(8, 30);
+        if (files.isEmpty()) {
+            System.out.println("No se encontraron archivos .wav");
+            return;
+        }
+
+        NullSink.Device device = NullSink.maxSpeed();
+        AtomicReference<MusicPlayer> holder = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> {
+            MusicPlayer player = new MusicPlayer(new UIInformation(), device);
+            player.addAllToPlaylist(files);
+            holder.set(player);
+        });
+        MusicPlayer player = holder.get();
+
+        long start = System.nanoTime();
+        SwingUtilities.invokeAndWait(() -> player.loadAsync(files.get(0), true));
+        while (!finished(player)) {
+            Thread.sleep(5);
+        }
+        long elapsed = System.nanoTime() - start;
+        SwingUtilities.invokeAndWait(player::close);
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("Canciones:          %d%n", files.size());
+        System.out.printf("Audio entregado:    %.1f s (%.1f MB)%n", device.getConsumedSeconds(), device.getConsumedBytes() / 1e6);
+        System.out.printf("Tiempo:             %.2f s%n", seconds);
+        System.out.printf("Velocidad:          %.0f x tiempo real, %.1f MB/s%n",
+                device.getConsumedSeconds() / seconds, device.getConsumedBytes() / 1e6 / seconds);
+    }
+
+    //La última canción terminó: no suena nada, no hay carga pendiente y el índice quedó en el final
+    private static boolean finished(MusicPlayer player) throws Exception {
+        AtomicReference<Boolean> done = new AtomicReference<>(false);
+        SwingUtilities.invokeAndWait(() -> done.set(!player.isPlaying() && !player.isLoading()
+                && player.getCurrentIndex() == player.getPlaylist().size() - 1));
+        return done.get();
+    }
+
+    private static List<File> collect(String[] args) {
+        List<File> files = new ArrayList<>();
+        for (String arg : args) {
+            File file = new File(arg);
+            File[] children = file.isDirectory() ? file.listFiles((dir, name) -> name.toLowerCase().endsWith(".wav")) : new File[]{file};
+            if (children != null) {
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            }
+        }
+        return files;
+    }
+
+    //Canciones de prueba grabadas con la misma salida a WAV del reproductor, alternando formatos para forzar conversiones
+    private static List<File> generate(int count, double seconds) throws IOException {
+        File dir = Files.createTempDirectory("pipeline-benchmark").toFile();
+        dir.deleteOnExit();
+        AudioFormat[] formats = {
+                new AudioFormat(44100, 16, 2, true, false),
+                new AudioFormat(48000, 24, 2, true, false),
+                new AudioFormat(96000, 24, 2, true, false),
+                new AudioFormat(22050, 16, 1, true, false)
+        };
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AudioFormat format = formats[i % formats.length];
+            File file = new File(dir, "pista-" + (i + 1) + ".wav");
+            file.deleteOnExit();
+            try (WavFileSink.Recorder recorder = new WavFileSink.Recorder(file)) {
+                AudioSink sink = recorder.open(format, 64 * 1024);
+                writeSine(sink, format, seconds, 220 * (i + 1));
+                sink.close();
+            } catch (LineUnavailableException e) {
+                throw new IOException(e);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeSine(AudioSink sink, AudioFormat format, double seconds, double frequency) {
+        int channels = format.getChannels();
+        int blockFrames = 4096;
+        float[] samples = new float[blockFrames * channels];
+        byte[] block = new byte[blockFrames * format.getFrameSize()];
+        long total = (long) (format.getFrameRate() * seconds);
+        for (long frame = 0; frame < total; frame += blockFrames) {
+            int frames = (int) Math.min(blockFrames, total - frame);
+            for (int f = 0; f < frames; f++) {
+                float value = (float) (0.5 * Math.sin(2 * Math.PI * frequency * (frame + f) / format.getFrameRate()));
+                Arrays.fill(samples, f * channels, (f + 1) * channels, value);
+            }
+            PcmSamples.fromFloat(samples, frames * channels, block, 0, format);
+            sink.write(block, 0, frames * format.getFrameSize());
+        }
+    }
+}
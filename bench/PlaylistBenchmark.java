@@ -0,0 +1,61 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//Compara Playlist contra ArrayList en las operaciones que hace el reproductor sobre listas enormes:
+//buscar una canción (load, modo aleatorio), insertar en la cola (en medio de la lista) y quitar
+//Uso: java -cp out PlaylistBenchmark [canciones en la lista]
+public class PlaylistBenchmark {
+    private static final int OPERATIONS = 2000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File[] files = new File[size];
+        for (int i = 0; i < size; i++) {
+            files[i] = new File("/musica/artista-" + (i % 5000) + "/album-" + (i % 97) + "/pista-" + i + ".wav");
+        }
+
+        System.out.printf("%d canciones, %d operaciones por prueba%n", size, OPERATIONS);
+        System.out.printf("%-12s %14s %14s %14s %14s%n", "", "llenar ms", "indexOf us", "insertar us", "quitar us");
+        //Dos rondas, la primera solo calienta el JIT
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            run("ArrayList", new ArrayList<>(), files, print);
+            run("Playlist", new Playlist(), files, print);
+        }
+    }
+
+    private static void run(String name, List<File> list, File[] files, boolean print) {
+        Random random = new Random(42);
+
+        long start = System.nanoTime();
+        //Como al cargar una carpeta: todas las canciones de una vez
+        list.addAll(Arrays.asList(files));
+        double fill = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            found += list.indexOf(files[random.nextInt(files.length)]);
+        }
+        double lookup = (System.nanoTime() - start) / 1e3 / OPERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            list.add(random.nextInt(list.size()), files[random.nextInt(files.length)]);
+        }
+        double insert = (System.nanoTime() - start) / 1e3 / OPERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            list.remove(random.nextInt(list.size()));
+        }
+        double remove = (System.nanoTime() - start) / 1e3 / OPERATIONS;
+
+        if (print) {
+            System.out.printf("%-12s %14.1f %14.2f %14.2f %14.2f%s%n", name, fill, lookup, insert, remove, found < 0 ? "!" : "");
+        }
+    }
+}
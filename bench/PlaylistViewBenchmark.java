@@ -0,0 +1,125 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//Cuánto tarda la vista de la playlist en reflejar una acción con una playlist grande:
+//antes se volvía a armar el texto de toda la lista y se ponía en un JTextArea, ahora PlaylistViewModel avisa
+//solo las filas que cambiaron y la lista arma el texto de las filas visibles
+//Uso: java -Djava.awt.headless=true -cp out PlaylistViewBenchmark [canciones en la playlist]
+public class PlaylistViewBenchmark {
+    private static final int ACTIONS = 20;
+    //Filas que se ven en la ventana (180 px de alto, 18 por fila)
+    private static final int VISIBLE_ROWS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        List<File> files = new ArrayList<>(size + 2 * ACTIONS);
+        for (int i = 0; i < size + 2 * ACTIONS; i++) {
+            files.add(new File("/musica/artista-" + (i % 500) + "/album-" + (i % 97) + "/pista-" + i + ".wav"));
+        }
+
+        System.out.printf("%d canciones en la playlist, %d acciones por prueba%n", size, ACTIONS);
+        System.out.printf("%-28s %14s %14s%n", "", "texto ms", "lista ms");
+        MusicPlayer[] players = new MusicPlayer[2];
+        SwingUtilities.invokeAndWait(() -> {
+            MusicPlayer textPlayer = new MusicPlayer(new UIInformation(), NullSink.maxSpeed());
+            JTextArea area = new JTextArea();
+            textPlayer.addListener((previous, state, changes) -> area.setText(fullText(textPlayer, state)));
+            textPlayer.addAllToPlaylist(files.subList(0, size));
+
+            MusicPlayer listPlayer = new MusicPlayer(new UIInformation(), NullSink.maxSpeed());
+            PlaylistViewModel model = new PlaylistViewModel(listPlayer);
+            JList<String> list = new JList<>(model);
+            list.setFixedCellHeight(18);
+            list.setFixedCellWidth(520);
+            listPlayer.addListener((previous, state, changes) -> {
+                model.update(previous, state, changes);
+                paintVisible(list);
+            });
+            listPlayer.addAllToPlaylist(files.subList(0, size));
+            players[0] = textPlayer;
+            players[1] = listPlayer;
+        });
+
+        //Dos rondas, la primera solo calienta el JIT
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            int offset = round * ACTIONS;
+            run("Agregar al final", print, players,
+                    (player, i) -> player.addAllToPlaylist(List.of(files.get(size + offset + i))));
+            run("Quitar una del medio", print, players,
+                    (player, i) -> player.removeFromLibrary(Set.of(files.get(size / 2 + offset + i))));
+            run("Cambiar modo repetir", print, players,
+                    (player, i) -> player.toggleRepeatMode());
+        }
+        SwingUtilities.invokeAndWait(() -> {
+            players[0].close();
+            players[1].close();
+        });
+        System.exit(0);
+    }
+
+    private interface Action {
+        void apply(MusicPlayer player, int i);
+    }
+
+    private static void run(String name, boolean print, MusicPlayer[] players, Action action) throws Exception {
+        double text = time(players[0], action);
+        double list = time(players[1], action);
+        if (print) {
+            System.out.printf("%-28s %14.3f %14.3f%n", name, text, list);
+        }
+    }
+
+    //Cada acción es un evento de la interfaz y el aviso del reproductor llega en el siguiente, como en la ventana
+    private static double time(MusicPlayer player, Action action) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ACTIONS; i++) {
+            int n = i;
+            SwingUtilities.invokeAndWait(() -> action.apply(player, n));
+            SwingUtilities.invokeAndWait(() -> { });
+        }
+        return (System.nanoTime() - start) / 1e6 / ACTIONS;
+    }
+
+    //Lo que hace la lista al repintar: pedir al renderer solo las filas que se ven
+    private static void paintVisible(JList<String> list) {
+        ListCellRenderer<? super String> renderer = list.getCellRenderer();
+        int rows = Math.min(VISIBLE_ROWS, list.getModel().getSize());
+        for (int row = 0; row < rows; row++) {
+            Component cell = renderer.getListCellRendererComponent(list, list.getModel().getElementAt(row), row, false, false);
+            cell.getPreferredSize();
+        }
+    }
+
+    //El texto completo que armaba la ventana antes en cada acción
+    private static String fullText(MusicPlayer player, PlayerState state) {
+        List<File> currentPlaylist = state.getPlaylist();
+        List<File> queued = state.getUpNext();
+        StringBuilder playlistText = new StringBuilder();
+        if (!queued.isEmpty()) {
+            playlistText.append("EN COLA (").append(queued.size()).append(" canciones)\n\n");
+            int position = 1;
+            for (File song : queued) {
+                if (position > PlaylistViewModel.MAX_QUEUE_ROWS) {
+                    playlistText.append("   ... y ").append(queued.size() - PlaylistViewModel.MAX_QUEUE_ROWS).append(" más\n");
+                    break;
+                }
+                playlistText.append("-> ").append(String.format("%2d", position++)).append(". ")
+                        .append(player.getTrack(song).getDisplayName()).append("\n");
+            }
+            playlistText.append("\n");
+        }
+        playlistText.append("LISTA ACTUAL (").append(currentPlaylist.size()).append(" canciones)\n\n");
+        int i = 0;
+        for (File song : currentPlaylist) {
+            playlistText.append(i == state.getPlayingIndex() ? ">> " : "- ");
+            playlistText.append(String.format("%2d", ++i)).append(". ")
+                    .append(player.getTrack(song).getDisplayName()).append("\n");
+        }
+        return playlistText.toString();
+    }
+}
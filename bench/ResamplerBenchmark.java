@@ -0,0 +1,63 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+//Mide cuántas veces más rápido que el tiempo real convierte un núcleo cada combinación de formatos
+//Uso: java -cp out ResamplerBenchmark [segundos de audio por prueba]
+public class ResamplerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+
+        System.out.printf("%-34s %12s %14s%n", "Conversión", "ms", "x tiempo real");
+        run("44.1 kHz/16 -> 48 kHz/16 estéreo", seconds, format(44100, 16, 2), format(48000, 16, 2));
+        run("48 kHz/16 -> 44.1 kHz/16 estéreo", seconds, format(48000, 16, 2), format(44100, 16, 2));
+        run("96 kHz/24 -> 48 kHz/16 estéreo", seconds, format(96000, 24, 2), format(48000, 16, 2));
+        run("44.1 kHz/16 -> 96 kHz/24 estéreo", seconds, format(44100, 16, 2), format(96000, 24, 2));
+        run("22.05 kHz/16 mono -> 48 kHz estéreo", seconds, format(22050, 16, 1), format(48000, 16, 2));
+        run("48 kHz/24 -> 48 kHz/16 (solo bits)", seconds, format(48000, 24, 2), format(48000, 16, 2));
+    }
+
+    private static void run(String name, double seconds, AudioFormat from, AudioFormat to) throws IOException {
+        byte[] pcm = sine(from, seconds);
+        byte[] chunk = new byte[16 * 1024];
+
+        //Una pasada de calentamiento para que el JIT compile el filtro
+        convert(pcm, from, to, chunk);
+        long start = System.nanoTime();
+        convert(pcm, from, to, chunk);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-34s %12.1f %14.0f%n", name, elapsed / 1e6, seconds / (elapsed / 1e9));
+    }
+
+    private static void convert(byte[] pcm, AudioFormat from, AudioFormat to, byte[] chunk) throws IOException {
+        AudioInputStream source = new AudioInputStream(new ByteArrayInputStream(pcm), from, pcm.length / from.getFrameSize());
+        try (AudioInputStream converted = FormatConverter.convert(source, to)) {
+            while (converted.read(chunk, 0, chunk.length) > 0) {
+                //Solo se mide la conversión, el resultado se descarta
+            }
+        }
+    }
+
+    private static AudioFormat format(float rate, int bits, int channels) {
+        return new AudioFormat(rate, bits, channels, true, false);
+    }
+
+    //Seno de 1 kHz a -6 dBFS en el formato pedido
+    private static byte[] sine(AudioFormat format, double seconds) {
+        int frames = (int) (format.getFrameRate() * seconds);
+        int channels = format.getChannels();
+        float[] samples = new float[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            float value = (float) (0.5 * Math.sin(2 * Math.PI * 1000 * i / format.getFrameRate()));
+            for (int c = 0; c < channels; c++) {
+                samples[i * channels + c] = value;
+            }
+        }
+        byte[] pcm = new byte[frames * format.getFrameSize()];
+        PcmSamples.fromFloat(samples, samples.length, pcm, 0, format);
+        return pcm;
+    }
+}
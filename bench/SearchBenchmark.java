@@ -0,0 +1,106 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//Mide el índice de búsqueda con una biblioteca grande de nombres inventados: cuánto tarda en armarse y cuánto
+//tarda cada búsqueda del selector mientras se escribe (prefijos cortos, varias palabras y errores de tipeo)
+//Uso: java -cp out SearchBenchmark [canciones] [resultados por búsqueda]
+public class SearchBenchmark {
+    private static final String[] SYLLABLES = {"la", "mo", "re", "ta", "ki", "son", "dor", "el", "va", "ri",
+            "nu", "be", "can", "to", "sa", "lu", "mar", "fe", "go", "zi", "pa", "ne", "qui", "ro"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Random random = new Random(42);
+        //Vocabulario con palabras muy repetidas y otras raras, como en una biblioteca real
+        String[] vocabulary = new String[30_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random, 2 + random.nextInt(3));
+        }
+        String[] artists = new String[20_000];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = capitalize(word(random, 2 + random.nextInt(2))) + " " + capitalize(word(random, 2 + random.nextInt(2)));
+        }
+        List<Track> tracks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                //Cuadrado del azar: las primeras palabras del vocabulario salen mucho más seguido
+                double r = random.nextDouble();
+                title.append(w == 0 ? "" : " ").append(capitalize(vocabulary[(int) (r * r * vocabulary.length)]));
+            }
+            String artist = artists[random.nextInt(artists.length)];
+            File file = new File("/musica/" + artist + "/album-" + (i / 12) + "/" + String.format("%02d", i % 12 + 1) + " " + title + ".wav");
+            tracks.add(new Track(file, 40_000_000L, 1_600_000_000_000L, title.toString(), artist, "Álbum " + (i / 12),
+                    240_000_000L, 44100, 2, 16));
+        }
+
+        SongIndex index = new SongIndex();
+        //La primera vez calienta el JIT; las palabras se indexan con la primera búsqueda
+        for (int round = 0; round < 2; round++) {
+            index = new SongIndex();
+            long start = System.nanoTime();
+            index.addAll(tracks);
+            double add = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            index.search("x", 1);
+            System.out.printf("Biblioteca de %d canciones: %.0f ms, índice de %d palabras: %.0f ms%n",
+                    index.size(), add, index.getTermCount(), (System.nanoTime() - start) / 1e6);
+        }
+
+        //Cada consulta se escribe letra por letra, como en el selector
+        String sample = tracks.get(size / 2).getTitle().toLowerCase();
+        String artist = tracks.get(size / 3).getArtist().toLowerCase();
+        String[] queries = {sample, artist, artist.split(" ")[0] + " " + sample.split(" ")[0],
+                typo(sample), typo(artist), "la", "zzzz"};
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            for (String query : queries) {
+                double[] times = new double[query.length()];
+                int total = 0;
+                for (int end = 1; end <= query.length(); end++) {
+                    SongIndex.Result result = index.search(query.substring(0, end), limit);
+                    times[end - 1] = result.getMillis();
+                    total = result.getTotal();
+                }
+                Arrays.sort(times);
+                if (print) {
+                    System.out.printf("  %-32s %d letras, mediana %.2f ms, peor %.2f ms, %d coincidencias al final%n",
+                            "\"" + query + "\"", query.length(), times[times.length / 2], times[times.length - 1], total);
+                }
+            }
+        }
+    }
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    //Cambia una letra de la palabra más larga, como un error de tipeo
+    private static String typo(String text) {
+        String[] words = text.split(" ");
+        int longest = 0;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].length() > words[longest].length()) {
+                longest = i;
+            }
+        }
+        char[] chars = words[longest].toCharArray();
+        int at = chars.length / 2;
+        chars[at] = chars[at] == 'x' ? 'y' : 'x';
+        words[longest] = new String(chars);
+        return String.join(" ", words);
+    }
+}
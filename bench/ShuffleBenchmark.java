@@ -0,0 +1,97 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+//Cuánto cuesta elegir la siguiente del modo aleatorio en una playlist enorme, y si se cumple que cada canción suena
+//una vez por ciclo también cuando la playlist cambia a mitad de ciclo (canciones agregadas o quitadas entre medio)
+//Uso: java -cp out ShuffleBenchmark [canciones en la lista]
+public class ShuffleBenchmark {
+    private static final int STEPS = 200_000;
+    //Cada cuántas canciones cambia la playlist en la prueba con cambios
+    private static final int CHANGE_EVERY = 7;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<File> files = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            files.add(new File("/musica/artista-" + (i % 5000) + "/album-" + (i % 97) + "/pista-" + i + ".wav"));
+        }
+
+        Playlist playlist = new Playlist();
+        playlist.addAll(files);
+        ShuffleOrder shuffle = new ShuffleOrder(42);
+        int current = 0;
+        shuffle.start(playlist, current);
+        //Dos rondas, la primera solo calienta el JIT
+        double perStep = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                current = shuffle.next(playlist, current);
+            }
+            perStep = (System.nanoTime() - start) / (double) STEPS;
+        }
+        System.out.printf("%d canciones: %.0f ns por canción elegida%n", size, perStep);
+
+        System.out.println("Sin cambios, lista de 1000: " + check(1000, false) + " repetidas antes de terminar el ciclo");
+        System.out.println("Con cambios cada " + CHANGE_EVERY + " canciones, lista de 1000: " + check(1000, true)
+                + " repetidas antes de terminar el ciclo");
+    }
+
+    //Recorre varios ciclos y cuenta las veces que volvió a sonar una canción cuando todavía faltaban otras
+    private static int check(int size, boolean changes) {
+        Random random = new Random(7);
+        Playlist playlist = new Playlist();
+        for (int i = 0; i < size; i++) {
+            playlist.add(new File("/musica/pista-" + i + ".wav"));
+        }
+        int added = size;
+        ShuffleOrder shuffle = new ShuffleOrder(42);
+        int current = 0;
+        shuffle.start(playlist, current);
+        Set<Long> played = new HashSet<>();
+        played.add(key(playlist, current));
+        int repeated = 0;
+        for (int i = 0; i < size * 5; i++) {
+            if (changes && i % CHANGE_EVERY == 0) {
+                //Se quita una que no es la actual y se agrega una nueva en cualquier lugar
+                int removed = random.nextInt(playlist.size());
+                if (removed != current) {
+                    playlist.remove(removed);
+                    if (removed < current) {
+                        current--;
+                    }
+                }
+                int at = random.nextInt(playlist.size() + 1);
+                playlist.add(at, new File("/musica/pista-" + added++ + ".wav"));
+                if (at <= current) {
+                    current++;
+                }
+            }
+            int next = shuffle.next(playlist, current);
+            long nextKey = key(playlist, next);
+            if (played.contains(nextKey)) {
+                //Solo puede repetirse si ya sonaron todas las que están en la lista: empieza otro ciclo
+                for (int k = 0; k < playlist.size(); k++) {
+                    if (!played.contains(key(playlist, k))) {
+                        repeated++;
+                        break;
+                    }
+                }
+                played.clear();
+                played.add(key(playlist, current));
+            }
+            played.add(nextKey);
+            current = next;
+        }
+        return repeated;
+    }
+
+    private static long key(Playlist playlist, int index) {
+        int entry = playlist.entryAt(index);
+        return (long) entry << 32 | (playlist.trackOfEntry(entry) & 0xFFFFFFFFL);
+    }
+}
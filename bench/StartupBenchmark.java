@@ -0,0 +1,63 @@
+import javax.swing.DefaultComboBoxModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+//Compara el arranque con una biblioteca grande: escanear la carpeta completa contra abrir la biblioteca guardada
+//(mapear la foto, armar la lista de canciones y el modelo del selector) y revisarla en segundo plano
+//Uso: java -Djava.awt.headless=true -cp out StartupBenchmark [canciones] [canciones por carpeta]
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int perFolder = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        File root = Files.createTempDirectory("startup-bench").toFile();
+        //Fuera de la biblioteca, si no guardarla cambiaría la fecha de la carpeta raíz
+        File snapshotFile = File.createTempFile("library", ".snapshot");
+
+        //Archivos vacíos: el escaneo y la revisión solo miran nombres y fechas
+        long start = System.nanoTime();
+        for (int i = 0; i < tracks; i++) {
+            File folder = new File(root, "artista-" + (i / perFolder / 10) + File.separator + "album-" + (i / perFolder));
+            if (i % perFolder == 0 && !folder.mkdirs()) {
+                throw new IOException("No se pudo crear " + folder);
+            }
+            Files.createFile(new File(folder, "pista-" + i + ".wav").toPath());
+        }
+        System.out.printf("Biblioteca de prueba: %d canciones en %s (%.1f s)%n", tracks, root, (System.nanoTime() - start) / 1e9);
+
+        LibraryScanner scanner = new LibraryScanner();
+        LibraryScanner.Report scan = scanner.scan(root, null);
+        System.out.println(scan);
+        scan.getSnapshot().save(snapshotFile);
+        System.out.printf("Foto guardada: %.1f MB%n", snapshotFile.length() / 1e6);
+
+        MetadataLibrary metadata = new MetadataLibrary(null);
+        //La primera ronda calienta el JIT
+        for (int round = 0; round < 3; round++) {
+            start = System.nanoTime();
+            LibrarySnapshot snapshot = LibrarySnapshot.load(snapshotFile);
+            double load = (System.nanoTime() - start) / 1e6;
+            List<File> files = snapshot.getTracks();
+            String[] names = new String[files.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = metadata.getOrUnknown(files.get(i)).getDisplayName();
+            }
+            DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(names);
+            double ready = (System.nanoTime() - start) / 1e6;
+            System.out.printf("Arranque %d: foto %.0f ms, listo para usar %.0f ms (%d canciones, escaneo completo %.0f ms)%n",
+                    round + 1, load, ready, model.getSize(), scan.getSeconds() * 1000);
+
+            System.out.println("  " + scanner.revalidate(snapshot, null));
+        }
+
+        snapshotFile.delete();
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+//Destino del audio ya procesado: la tarjeta de sonido, un archivo o ninguno (pruebas y benchmarks sin tarjeta)
+//Tiene el mismo comportamiento que un SourceDataLine: write bloquea mientras el búfer está lleno
+public interface AudioSink {
+
+    //Crea un destino abierto en el formato pedido; el motor pide uno nuevo cada vez que cambia el formato
+    interface Factory {
+        AudioSink open(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+    }
+
+    AudioFormat getFormat();
+
+    void start();
+
+    void stop();
+
+    //Descarta lo que está en el búfer sin reproducirlo
+    void flush();
+
+    //Espera a que suene todo lo que ya se escribió
+    void drain();
+
+    void close();
+
+    int write(byte[] data, int offset, int length);
+
+    //Frames que ya se reprodujeron desde que se abrió
+    long getLongFramePosition();
+
+    //Bytes que se pueden escribir sin bloquear
+    int available();
+
+    int getBufferSize();
+}
@@ -0,0 +1,51 @@
+//Resumen de un trabajo sobre toda la biblioteca (leer metadatos, analizar volumen), con el rendimiento obtenido
+//Las canciones que ya estaban en la caché cuentan en el total pero no se procesan
+public abstract class BatchReport {
+    //Atributos
+
+    private final int totalFiles;
+    private final int processedFiles;
+    private final int failedFiles;
+    private final long elapsedNanos;
+    private final int threads;
+
+    BatchReport(int totalFiles, int processedFiles, int failedFiles, long elapsedNanos, int threads) {
+        this.totalFiles = totalFiles;
+        this.processedFiles = processedFiles;
+        this.failedFiles = failedFiles;
+        this.elapsedNanos = elapsedNanos;
+        this.threads = threads;
+    }
+
+    //Getters
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    //Canciones que ya estaban en la caché y no se volvieron a leer
+    public int getCachedFiles() {
+        return totalFiles - processedFiles - failedFiles;
+    }
+
+    public int getFailedFiles() {
+        return failedFiles;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public double getSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : processedFiles / getSeconds();
+    }
+
+    //Canciones procesadas sin error
+    protected int getProcessedFiles() {
+        return processedFiles;
+    }
+}
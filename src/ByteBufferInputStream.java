@@ -0,0 +1,63 @@
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+//Stream de lectura sobre uno o varios ByteBuffer seguidos (memoria directa o archivos mapeados)
+//El salto (seek) solo mueve la posición, no lee nada
+class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer[] segments;
+    private int current = 0;
+
+    ByteBufferInputStream(ByteBuffer... segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer segment = currentSegment();
+        return segment == null ? -1 : segment.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        ByteBuffer segment = currentSegment();
+        if (segment == null) {
+            return -1;
+        }
+        int n = Math.min(len, segment.remaining());
+        //Única copia: de la memoria del búfer directo al arreglo que se entrega a la línea
+        segment.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        while (skipped < n) {
+            ByteBuffer segment = currentSegment();
+            if (segment == null) {
+                break;
+            }
+            int step = (int) Math.min(n - skipped, segment.remaining());
+            segment.position(segment.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long remaining = 0;
+        for (int i = current; i < segments.length; i++) {
+            remaining += segments[i].remaining();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    //Devuelve el segmento con datos pendientes, o null si ya se leyó todo
+    private ByteBuffer currentSegment() {
+        while (current < segments.length && !segments[current].hasRemaining()) {
+            current++;
+        }
+        return current < segments.length ? segments[current] : null;
+    }
+}
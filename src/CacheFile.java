@@ -0,0 +1,56 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+//Lectura y escritura de los archivos de caché de la biblioteca: cabecera con número mágico y versión,
+//y escritura a un archivo temporal que después reemplaza al viejo, así un corte a mitad no deja la caché a medias
+final class CacheFile {
+    //Atributos
+
+    //Tamaño del búfer de lectura y escritura, con 100.000 pistas la caché de metadatos ocupa varios megabytes
+    private static final int IO_BUFFER = 1 << 16;
+
+    interface Reader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private CacheFile() {
+    }
+
+    //Devuelve false sin leer nada si el archivo no existe o es de otro formato o versión
+    static boolean read(File file, int magic, int version, Reader reader) throws IOException {
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), IO_BUFFER))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                return false;
+            }
+            reader.read(in);
+            return true;
+        }
+    }
+
+    static void write(File file, int magic, int version, Writer writer) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath()), IO_BUFFER))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            writer.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
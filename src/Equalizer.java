@@ -0,0 +1,284 @@
+import java.util.Arrays;
+
+//Ecualizador paramétrico/gráfico: una cascada de filtros biquad aplicada en el hilo de salida
+//La configuración se publica como un arreglo inmutable de bandas; el hilo de audio calcula los
+//coeficientes en arreglos preasignados y pasa de la configuración vieja a la nueva con un fundido corto
+public class Equalizer {
+    //Atributos
+
+    public static final int MAX_BANDS = 16;
+    public static final int MAX_CHANNELS = 8;
+    //Centros de un ecualizador gráfico de 10 bandas por octava (ISO)
+    public static final double[] GRAPHIC_FREQUENCIES = {31.5, 63, 125, 250, 500, 1000, 2000, 4000, 8000, 16000};
+    //Duración del fundido entre coeficientes viejos y nuevos, evita chasquidos al mover una banda
+    private static final int SWAP_MILLIS = 20;
+    //Valores de estado más chicos que esto se anulan para no caer en números desnormalizados (muy lentos)
+    private static final float DENORMAL_LIMIT = 1e-25f;
+
+    //Tipos de filtro de cada banda (fórmulas del "Audio EQ Cookbook" de R. Bristow-Johnson)
+    public enum FilterType {
+        PEAK,
+        LOW_SHELF,
+        HIGH_SHELF,
+        LOW_PASS,
+        HIGH_PASS
+    }
+
+    //Configuración publicada por cualquier hilo; el arreglo nunca se modifica después de publicarse
+    private volatile Band[] bands = new Band[0];
+
+    // ---- Solo el hilo de salida ----
+    //Coeficientes activos y los de la configuración entrante: b0, b1, b2, a1, a2 por banda
+    private float[] coefficients = new float[MAX_BANDS * 5];
+    private float[] incomingCoefficients = new float[MAX_BANDS * 5];
+    private int activeBands = 0;
+    private int incomingBands = 0;
+    //Estado de cada banda y canal (forma directa transpuesta II): z1, z2
+    private float[] state = new float[MAX_BANDS * MAX_CHANNELS * 2];
+    private float[] incomingState = new float[MAX_BANDS * MAX_CHANNELS * 2];
+    //Salida de la cadena vieja mientras dura el fundido
+    private final float[] scratch;
+    private Band[] appliedBands = bands;
+    private float appliedRate = 0;
+    private int appliedChannels = 0;
+    private int swapFrames = 0;
+    private int swapPosition = 0;
+
+    //Constructor, maxSamples es el bloque más grande (en muestras) que se va a procesar
+    public Equalizer(int maxSamples) {
+        this.scratch = new float[maxSamples];
+    }
+
+    //Reemplaza todas las bandas; se puede llamar desde cualquier hilo mientras suena
+    public void setBands(Band... newBands) {
+        if (newBands == null) {
+            newBands = new Band[0];
+        }
+        if (newBands.length > MAX_BANDS) {
+            throw new IllegalArgumentException("Máximo " + MAX_BANDS + " bandas");
+        }
+        bands = newBands.clone();
+    }
+
+    public Band[] getBands() {
+        return bands.clone();
+    }
+
+    //Sin bandas el ecualizador no toca el audio
+    public void clear() {
+        bands = new Band[0];
+    }
+
+    //Bandas de un ecualizador gráfico, una ganancia en dB por cada frecuencia de GRAPHIC_FREQUENCIES
+    public static Band[] graphicBands(double... gainsDb) {
+        int count = Math.min(gainsDb.length, GRAPHIC_FREQUENCIES.length);
+        Band[] result = new Band[count];
+        for (int i = 0; i < count; i++) {
+            //Q de una octava, las bandas vecinas se cruzan sin dejar huecos
+            result[i] = new Band(FilterType.PEAK, GRAPHIC_FREQUENCIES[i], gainsDb[i], 1.41);
+        }
+        return result;
+    }
+
+    //No hay nada que hacer: sin bandas y sin un fundido pendiente
+    boolean isIdle() {
+        return bands.length == 0 && activeBands == 0 && swapFrames == 0;
+    }
+
+    //Filtra muestras float intercaladas en el lugar; solo lo llama el hilo de salida
+    void process(float[] samples, int frames, int channels, float frameRate) {
+        if (channels > MAX_CHANNELS || frames <= 0) {
+            return;
+        }
+        //Otro formato de línea: el estado anterior no sirve y los coeficientes dependen de la frecuencia de muestreo
+        if (frameRate != appliedRate || channels != appliedChannels) {
+            appliedRate = frameRate;
+            appliedChannels = channels;
+            appliedBands = bands;
+            activeBands = computeCoefficients(appliedBands, frameRate, coefficients);
+            Arrays.fill(state, 0f);
+            swapFrames = 0;
+        }
+
+        Band[] published = bands;
+        if (published != appliedBands && swapFrames == 0) {
+            //Configuración nueva: la cadena entrante arranca con el estado de la actual para no empezar en seco
+            appliedBands = published;
+            incomingBands = computeCoefficients(published, frameRate, incomingCoefficients);
+            System.arraycopy(state, 0, incomingState, 0, state.length);
+            swapFrames = Math.max(1, (int) (frameRate * SWAP_MILLIS / 1000));
+            swapPosition = 0;
+        }
+
+        if (swapFrames == 0) {
+            filter(samples, frames, channels, coefficients, activeBands, state);
+            return;
+        }
+
+        //Durante el cambio suenan las dos cadenas y se pasa de una a otra linealmente
+        int count = frames * channels;
+        System.arraycopy(samples, 0, scratch, 0, count);
+        filter(scratch, frames, channels, coefficients, activeBands, state);
+        filter(samples, frames, channels, incomingCoefficients, incomingBands, incomingState);
+        for (int f = 0, i = 0; f < frames; f++) {
+            float t = Math.min(1f, (float) (swapPosition + f) / swapFrames);
+            for (int c = 0; c < channels; c++, i++) {
+                samples[i] = scratch[i] + (samples[i] - scratch[i]) * t;
+            }
+        }
+        swapPosition += frames;
+        if (swapPosition >= swapFrames) {
+            //La cadena entrante pasa a ser la activa, se intercambian los arreglos sin copiar
+            float[] swap = coefficients;
+            coefficients = incomingCoefficients;
+            incomingCoefficients = swap;
+            swap = state;
+            state = incomingState;
+            incomingState = swap;
+            activeBands = incomingBands;
+            swapFrames = 0;
+            //El estado de bandas que ya no existen se limpia, una cadena futura no debe heredarlo
+            Arrays.fill(state, activeBands * MAX_CHANNELS * 2, state.length, 0f);
+        }
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Aplica las bandas en cascada, banda por banda sobre todo el bloque
+    private static void filter(float[] samples, int frames, int channels, float[] coef, int bandCount, float[] z) {
+        for (int b = 0; b < bandCount; b++) {
+            float b0 = coef[b * 5];
+            float b1 = coef[b * 5 + 1];
+            float b2 = coef[b * 5 + 2];
+            float a1 = coef[b * 5 + 3];
+            float a2 = coef[b * 5 + 4];
+            for (int c = 0; c < channels; c++) {
+                int s = (b * MAX_CHANNELS + c) * 2;
+                float z1 = z[s];
+                float z2 = z[s + 1];
+                for (int i = c, end = frames * channels; i < end; i += channels) {
+                    float x = samples[i];
+                    float y = b0 * x + z1;
+                    z1 = b1 * x - a1 * y + z2;
+                    z2 = b2 * x - a2 * y;
+                    samples[i] = y;
+                }
+                z[s] = Math.abs(z1) < DENORMAL_LIMIT ? 0f : z1;
+                z[s + 1] = Math.abs(z2) < DENORMAL_LIMIT ? 0f : z2;
+            }
+        }
+    }
+
+    //Calcula los coeficientes normalizados (a0 = 1) de cada banda, devuelve cuántas bandas quedaron
+    private static int computeCoefficients(Band[] config, float frameRate, float[] out) {
+        int count = 0;
+        for (Band band : config) {
+            //Las frecuencias por encima de Nyquist no se pueden filtrar a esta frecuencia de muestreo
+            if (band == null || band.frequency <= 0 || band.frequency >= frameRate / 2) {
+                continue;
+            }
+            double w0 = 2 * Math.PI * band.frequency / frameRate;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2 * band.q);
+            double a = Math.pow(10, band.gainDb / 40);
+            double b0, b1, b2, a0, a1, a2;
+
+            switch (band.type) {
+                case LOW_SHELF: {
+                    double sq = 2 * Math.sqrt(a) * alpha;
+                    b0 = a * ((a + 1) - (a - 1) * cos + sq);
+                    b1 = 2 * a * ((a - 1) - (a + 1) * cos);
+                    b2 = a * ((a + 1) - (a - 1) * cos - sq);
+                    a0 = (a + 1) + (a - 1) * cos + sq;
+                    a1 = -2 * ((a - 1) + (a + 1) * cos);
+                    a2 = (a + 1) + (a - 1) * cos - sq;
+                    break;
+                }
+                case HIGH_SHELF: {
+                    double sq = 2 * Math.sqrt(a) * alpha;
+                    b0 = a * ((a + 1) + (a - 1) * cos + sq);
+                    b1 = -2 * a * ((a - 1) + (a + 1) * cos);
+                    b2 = a * ((a + 1) + (a - 1) * cos - sq);
+                    a0 = (a + 1) - (a - 1) * cos + sq;
+                    a1 = 2 * ((a - 1) - (a + 1) * cos);
+                    a2 = (a + 1) - (a - 1) * cos - sq;
+                    break;
+                }
+                case LOW_PASS:
+                    b0 = (1 - cos) / 2;
+                    b1 = 1 - cos;
+                    b2 = (1 - cos) / 2;
+                    a0 = 1 + alpha;
+                    a1 = -2 * cos;
+                    a2 = 1 - alpha;
+                    break;
+                case HIGH_PASS:
+                    b0 = (1 + cos) / 2;
+                    b1 = -(1 + cos);
+                    b2 = (1 + cos) / 2;
+                    a0 = 1 + alpha;
+                    a1 = -2 * cos;
+                    a2 = 1 - alpha;
+                    break;
+                default:
+                    b0 = 1 + alpha * a;
+                    b1 = -2 * cos;
+                    b2 = 1 - alpha * a;
+                    a0 = 1 + alpha / a;
+                    a1 = -2 * cos;
+                    a2 = 1 - alpha / a;
+                    break;
+            }
+
+            int o = count * 5;
+            out[o] = (float) (b0 / a0);
+            out[o + 1] = (float) (b1 / a0);
+            out[o + 2] = (float) (b2 / a0);
+            out[o + 3] = (float) (a1 / a0);
+            out[o + 4] = (float) (a2 / a0);
+            count++;
+        }
+        return count;
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Una banda del ecualizador, inmutable para poder publicarla entre hilos sin locks
+    public static final class Band {
+        private final FilterType type;
+        private final double frequency;
+        private final double gainDb;
+        private final double q;
+
+        public Band(FilterType type, double frequency, double gainDb, double q) {
+            if (type == null) {
+                throw new IllegalArgumentException("Tipo de filtro requerido");
+            }
+            this.type = type;
+            this.frequency = frequency;
+            this.gainDb = gainDb;
+            this.q = q > 0 ? q : 0.707;
+        }
+
+        public FilterType getType() {
+            return type;
+        }
+
+        public double getFrequency() {
+            return frequency;
+        }
+
+        public double getGainDb() {
+            return gainDb;
+        }
+
+        public double getQ() {
+            return q;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + frequency + " Hz " + gainDb + " dB Q=" + q;
+        }
+    }
+}
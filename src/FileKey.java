@@ -0,0 +1,52 @@
+import java.io.File;
+import java.util.Objects;
+
+//Identidad de un archivo: ruta (su id en TrackTable) + tamaño + fecha de modificación, si el archivo cambia deja de coincidir
+final class FileKey {
+    private final int track;
+    private final long size;
+    private final long modified;
+
+    FileKey(int track, long size, long modified) {
+        this.track = track;
+        this.size = size;
+        this.modified = modified;
+    }
+
+    //Lee tamaño y fecha del disco, null si el archivo no existe
+    static FileKey of(File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        return new FileKey(TrackTable.shared().intern(file), file.length(), file.lastModified());
+    }
+
+    int getTrack() {
+        return track;
+    }
+
+    String getPath() {
+        return TrackTable.shared().path(track);
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getModified() {
+        return modified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileKey)) return false;
+        FileKey other = (FileKey) o;
+        return track == other.track && size == other.size && modified == other.modified;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(track, size, modified);
+    }
+}
@@ -0,0 +1,472 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Convierte un stream PCM a otro formato mientras se lee: frecuencia de muestreo (remuestreo polifásico),
+//bits por muestra y cantidad de canales. Trabaja por bloques con búferes fijos, nunca carga la pista completa
+final class FormatConverter extends InputStream {
+    //Atributos
+
+    //Mitad del largo del filtro: 24 muestras a cada lado, atenuación de ~80 dB fuera de la banda
+    private static final int HALF_TAPS = 24;
+    private static final int TAPS = HALF_TAPS * 2;
+    //Máximo de fases precalculadas; con frecuencias estándar (44.1/48/96 kHz) cada fase es exacta
+    private static final int MAX_PHASES = 4096;
+    private static final double KAISER_BETA = 8.6;
+    //La banda de paso termina un poco antes de Nyquist para dejar lugar a la transición del filtro
+    private static final double PASSBAND = 0.95;
+    private static final int BLOCK_FRAMES = 4096;
+    //Tablas ya calculadas, se comparten entre todas las pistas con la misma relación de frecuencias
+    private static final Map<String, float[][]> TABLES = new ConcurrentHashMap<>();
+
+    private final AudioInputStream source;
+    private final AudioFormat sourceFormat;
+    private final AudioFormat targetFormat;
+    private final int sourceChannels;
+    private final int targetChannels;
+    //Canales que se procesan: un mono se remuestrea una vez y se duplica al final
+    private final int workChannels;
+    //Coeficientes de la mezcla a estéreo de una pista multicanal, [salida][canal de entrada]; null si no hace falta
+    private final float[][] downmix;
+
+    //Relación exacta de frecuencias: por cada frame de salida la entrada avanza step/phases frames
+    private final boolean resample;
+    private final long phases;
+    private final long step;
+    private final float[][] table;
+    private final int tablePhases;
+    private final int history;
+    private final int lookahead;
+
+    //Muestras de entrada por canal; index es el frame de entrada actual y phase la fracción en 1/phases
+    private final float[][] input;
+    private int count;
+    private int index;
+    private long phase;
+    private boolean sourceEnded;
+    //Donde terminan los frames reales; detrás solo hay ceros de relleno para vaciar el filtro
+    private int realEnd = Integer.MAX_VALUE;
+
+    private final byte[] sourceBytes;
+    private final float[] sourceSamples;
+    private final float[] targetSamples;
+    private final byte[] targetBytes;
+    private int targetOffset;
+    private int targetLength;
+
+    //Ruido triangular (TPDF) al reducir a 16 bits o menos, evita la distorsión de cuantización
+    private final boolean dither;
+    private final float ditherScale;
+    private int random = 0x2545F491;
+
+    private FormatConverter(AudioInputStream source, AudioFormat targetFormat) {
+        this.source = source;
+        this.sourceFormat = source.getFormat();
+        this.targetFormat = targetFormat;
+        this.sourceChannels = sourceFormat.getChannels();
+        this.targetChannels = targetFormat.getChannels();
+        this.workChannels = sourceChannels == 1 || targetChannels == 1 ? 1 : Math.min(sourceChannels, targetChannels);
+        this.downmix = targetChannels == 2 && sourceChannels > 2 ? stereoDownmix(sourceChannels) : null;
+
+        long inRate = Math.round(sourceFormat.getFrameRate());
+        long outRate = Math.round(targetFormat.getFrameRate());
+        long gcd = gcd(inRate, outRate);
+        this.resample = inRate != outRate;
+        this.phases = outRate / gcd;
+        this.step = inRate / gcd;
+        this.tablePhases = (int) Math.min(phases, MAX_PHASES);
+        //Al bajar la frecuencia el filtro corta en el Nyquist de la salida para no generar aliasing
+        double cutoff = PASSBAND * Math.min(1.0, (double) outRate / inRate);
+        this.table = resample ? table(tablePhases, cutoff) : null;
+        this.history = resample ? HALF_TAPS - 1 : 0;
+        this.lookahead = resample ? HALF_TAPS : 0;
+
+        int inputCapacity = history + BLOCK_FRAMES + lookahead + 1;
+        this.input = new float[workChannels][inputCapacity];
+        this.count = history;
+        this.index = history;
+
+        this.sourceBytes = new byte[BLOCK_FRAMES * sourceFormat.getFrameSize()];
+        this.sourceSamples = new float[BLOCK_FRAMES * sourceChannels];
+        int outBlock = (int) (BLOCK_FRAMES * Math.max(1.0, (double) outRate / inRate)) + 2;
+        this.targetSamples = new float[outBlock * targetChannels];
+        this.targetBytes = new byte[outBlock * targetFormat.getFrameSize()];
+
+        int targetBits = targetFormat.getSampleSizeInBits();
+        this.dither = !AudioFormat.Encoding.PCM_FLOAT.equals(targetFormat.getEncoding()) && targetBits <= 16
+                && (resample || sourceFormat.getSampleSizeInBits() > targetBits
+                || AudioFormat.Encoding.PCM_FLOAT.equals(sourceFormat.getEncoding()));
+        this.ditherScale = 1.0f / (1L << (targetBits - 1));
+    }
+
+    //Stream en el formato pedido; si ya coincide o no se puede convertir se devuelve el original
+    //Menos canales solo se consigue mezclando a mono o a estéreo; una distribución multicanal desconocida, o bajar
+    //a más de dos canales, no se convierte (nunca se descartan canales en silencio)
+    static AudioInputStream convert(AudioInputStream source, AudioFormat target) {
+        AudioFormat format = source.getFormat();
+        if (target == null || format.matches(target) || !PcmSamples.isSupported(format) || !PcmSamples.isSupported(target)) {
+            return source;
+        }
+        int channels = format.getChannels();
+        int targetChannels = target.getChannels();
+        if (channels > targetChannels && targetChannels > 1
+                && (targetChannels != 2 || stereoDownmix(channels) == null)) {
+            return source;
+        }
+        long frames = source.getFrameLength();
+        if (frames != AudioSystem.NOT_SPECIFIED) {
+            //Frames de salida: uno por cada posición de la entrada que cae antes del final
+            frames = (long) Math.ceil(frames * (double) target.getFrameRate() / format.getFrameRate());
+        }
+        return new AudioInputStream(new FormatConverter(source, target), target, frames);
+    }
+
+    //Formato de salida fijo para la línea: PCM con signo, little endian
+    static AudioFormat pcmFormat(float rate, int bits, int channels) {
+        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, rate, bits, channels, bits / 8 * channels, rate, false);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) <= 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (targetOffset == targetLength && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, targetLength - targetOffset);
+        System.arraycopy(targetBytes, targetOffset, b, off, n);
+        targetOffset += n;
+        return n;
+    }
+
+    //El salto avanza la posición de entrada equivalente, sin remuestrear lo que se salta
+    @Override
+    public long skip(long n) throws IOException {
+        int frameSize = targetFormat.getFrameSize();
+        long frames = n / frameSize;
+        if (frames <= 0) {
+            return 0;
+        }
+        //Primero lo que ya estaba convertido
+        int pendingFrames = (targetLength - targetOffset) / frameSize;
+        if (frames <= pendingFrames) {
+            targetOffset += (int) frames * frameSize;
+            return frames * frameSize;
+        }
+        long remaining = frames - pendingFrames;
+        targetOffset = targetLength;
+
+        long total = phase + remaining * step;
+        long advance = total / phases;
+        phase = total % phases;
+        if (index + advance < count) {
+            index += (int) advance;
+        } else {
+            long toSkip = (index + advance - count) * sourceFormat.getFrameSize();
+            while (toSkip > 0) {
+                long skipped = source.skip(toSkip);
+                if (skipped <= 0) {
+                    break;
+                }
+                toSkip -= skipped;
+            }
+            //El filtro arranca de nuevo desde silencio en la posición nueva
+            for (float[] channel : input) {
+                Arrays.fill(channel, 0, history, 0f);
+            }
+            count = history;
+            index = history;
+            realEnd = Integer.MAX_VALUE;
+            sourceEnded = false;
+        }
+        return frames * frameSize;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return targetLength - targetOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Convierte el siguiente bloque de salida, devuelve false si ya no queda nada
+    private boolean fill() throws IOException {
+        int maxFrames = targetSamples.length / targetChannels;
+        int produced = 0;
+        while (produced < maxFrames) {
+            if (index < Math.min(count - lookahead, realEnd)) {
+                produced = produce(produced, maxFrames);
+            } else if (!readSource()) {
+                break;
+            }
+        }
+        if (produced == 0) {
+            return false;
+        }
+        applyDither(produced * targetChannels);
+        PcmSamples.fromFloat(targetSamples, produced * targetChannels, targetBytes, 0, targetFormat);
+        targetOffset = 0;
+        targetLength = produced * targetFormat.getFrameSize();
+        return true;
+    }
+
+    //Genera frames de salida mientras haya entrada suficiente para el filtro
+    private int produce(int produced, int maxFrames) {
+        int end = Math.min(count - lookahead, realEnd);
+        int o = produced * targetChannels;
+        while (produced < maxFrames && index < end) {
+            if (resample) {
+                float[] taps = table[(int) (phase * tablePhases / phases)];
+                int start = index - history;
+                for (int w = 0; w < workChannels; w++) {
+                    float[] x = input[w];
+                    float sum = 0;
+                    for (int k = 0; k < TAPS; k++) {
+                        sum += taps[k] * x[start + k];
+                    }
+                    o = writeFrame(o, w, sum);
+                }
+                phase += step;
+                index += (int) (phase / phases);
+                phase %= phases;
+            } else {
+                for (int w = 0; w < workChannels; w++) {
+                    o = writeFrame(o, w, input[w][index]);
+                }
+                index++;
+            }
+            //Canales de salida que la entrada no tiene quedan en silencio
+            for (int c = workChannels == 1 ? targetChannels : workChannels; c < targetChannels; c++) {
+                targetSamples[o++] = 0f;
+            }
+            produced++;
+        }
+        return produced;
+    }
+
+    //Escribe la muestra de un canal de trabajo; un canal mono se copia a todos los de salida
+    private int writeFrame(int o, int w, float value) {
+        if (workChannels == 1) {
+            for (int c = 0; c < targetChannels; c++) {
+                targetSamples[o++] = value;
+            }
+            return o;
+        }
+        targetSamples[o] = value;
+        return o + 1;
+    }
+
+    //Lee el siguiente bloque de la entrada y lo separa por canal; al final agrega ceros para vaciar el filtro
+    private boolean readSource() throws IOException {
+        //Se conserva solo lo que el filtro todavía necesita (historia + lo pendiente)
+        int from = index - history;
+        int keep = Math.max(0, count - from);
+        if (from > 0) {
+            for (float[] channel : input) {
+                System.arraycopy(channel, from, channel, 0, keep);
+            }
+            count = keep;
+            index = history;
+            if (realEnd != Integer.MAX_VALUE) {
+                realEnd -= from;
+            }
+        }
+
+        int frameSize = sourceFormat.getFrameSize();
+        int room = Math.min(BLOCK_FRAMES, input[0].length - count);
+        int read = 0;
+        while (read < room * frameSize) {
+            int n = source.read(sourceBytes, read, room * frameSize - read);
+            if (n <= 0) {
+                break;
+            }
+            read += n;
+            //Con lo que hay alcanza para seguir, no hace falta esperar el bloque completo
+            if (read % frameSize == 0 && read >= frameSize * 256) {
+                break;
+            }
+        }
+        int frames = read / frameSize;
+        if (frames == 0) {
+            if (sourceEnded) {
+                return false;
+            }
+            sourceEnded = true;
+            realEnd = count;
+            //Ceros después del final para que salgan las últimas muestras del filtro
+            for (float[] channel : input) {
+                Arrays.fill(channel, count, Math.min(channel.length, count + lookahead), 0f);
+            }
+            count = Math.min(input[0].length, count + lookahead);
+            return true;
+        }
+
+        PcmSamples.toFloat(sourceBytes, 0, sourceSamples, frames * sourceChannels, sourceFormat);
+        if (targetChannels == 1 && sourceChannels > 1) {
+            //Mezcla a mono: promedio de todos los canales
+            float scale = 1.0f / sourceChannels;
+            float[] mono = input[0];
+            for (int f = 0, i = 0; f < frames; f++) {
+                float sum = 0;
+                for (int c = 0; c < sourceChannels; c++, i++) {
+                    sum += sourceSamples[i];
+                }
+                mono[count + f] = sum * scale;
+            }
+        } else if (downmix != null) {
+            float[] left = input[0];
+            float[] right = input[1];
+            float[] toLeft = downmix[0];
+            float[] toRight = downmix[1];
+            for (int f = 0, i = 0; f < frames; f++, i += sourceChannels) {
+                float l = 0;
+                float r = 0;
+                for (int c = 0; c < sourceChannels; c++) {
+                    l += toLeft[c] * sourceSamples[i + c];
+                    r += toRight[c] * sourceSamples[i + c];
+                }
+                left[count + f] = l;
+                right[count + f] = r;
+            }
+        } else {
+            for (int w = 0; w < workChannels; w++) {
+                float[] channel = input[w];
+                for (int f = 0, i = w; f < frames; f++, i += sourceChannels) {
+                    channel[count + f] = sourceSamples[i];
+                }
+            }
+        }
+        count += frames;
+        return true;
+    }
+
+    //Mezcla a estéreo según ITU-R BS.775: L + 0,707·C + 0,707·Ls, y lo mismo con R y Rs; el LFE no se suma
+    //WAV no dice qué es cada canal si no trae máscara, se asume el orden estándar según cuántos hay.
+    //null si no se conoce la distribución. Se escala para que con todos los canales al máximo no recorte
+    private static float[][] stereoDownmix(int channels) {
+        final float h = 0.7071f;
+        float[][] matrix;
+        switch (channels) {
+            case 3:
+                //L R C
+                matrix = new float[][]{{1, 0, h}, {0, 1, h}};
+                break;
+            case 4:
+                //L R Ls Rs
+                matrix = new float[][]{{1, 0, h, 0}, {0, 1, 0, h}};
+                break;
+            case 5:
+                //L R C Ls Rs
+                matrix = new float[][]{{1, 0, h, h, 0}, {0, 1, h, 0, h}};
+                break;
+            case 6:
+                //5.1: L R C LFE Ls Rs
+                matrix = new float[][]{{1, 0, h, 0, h, 0}, {0, 1, h, 0, 0, h}};
+                break;
+            case 7:
+                //6.1: L R C LFE Cs Ls Rs, el surround central va a los dos lados
+                matrix = new float[][]{{1, 0, h, 0, 0.5f, h, 0}, {0, 1, h, 0, 0.5f, 0, h}};
+                break;
+            case 8:
+                //7.1: L R C LFE Lb Rb Ls Rs
+                matrix = new float[][]{{1, 0, h, 0, h, 0, h, 0}, {0, 1, h, 0, 0, h, 0, h}};
+                break;
+            default:
+                return null;
+        }
+        float sum = 0;
+        for (float coefficient : matrix[0]) {
+            sum += coefficient;
+        }
+        for (float[] row : matrix) {
+            for (int c = 0; c < row.length; c++) {
+                row[c] /= sum;
+            }
+        }
+        return matrix;
+    }
+
+    private void applyDither(int samples) {
+        if (!dither) {
+            return;
+        }
+        int r = random;
+        for (int i = 0; i < samples; i++) {
+            //Dos valores uniformes (xorshift) restados dan una distribución triangular de ±1 LSB
+            r ^= r << 13;
+            r ^= r >>> 17;
+            r ^= r << 5;
+            float a = (r >>> 8) * (1.0f / (1 << 24));
+            r ^= r << 13;
+            r ^= r >>> 17;
+            r ^= r << 5;
+            float b = (r >>> 8) * (1.0f / (1 << 24));
+            targetSamples[i] += (a - b) * ditherScale;
+        }
+        random = r;
+    }
+
+    //Tabla polifásica: una fila de TAPS coeficientes (sinc con ventana de Kaiser) por cada fase fraccionaria
+    private static float[][] table(int phaseCount, double cutoff) {
+        String key = phaseCount + ":" + cutoff;
+        return TABLES.computeIfAbsent(key, k -> {
+            float[][] rows = new float[phaseCount][TAPS];
+            double i0Beta = besselI0(KAISER_BETA);
+            for (int p = 0; p < phaseCount; p++) {
+                double fraction = (double) p / phaseCount;
+                double sum = 0;
+                for (int t = 0; t < TAPS; t++) {
+                    double x = t - (HALF_TAPS - 1) - fraction;
+                    double sinc = x == 0 ? 1 : Math.sin(Math.PI * cutoff * x) / (Math.PI * cutoff * x);
+                    double ratio = x / HALF_TAPS;
+                    double window = Math.abs(ratio) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - ratio * ratio)) / i0Beta;
+                    rows[p][t] = (float) (cutoff * sinc * window);
+                    sum += rows[p][t];
+                }
+                //Ganancia unitaria en continua para cada fase, así no aparece un zumbido a la frecuencia de las fases
+                for (int t = 0; t < TAPS; t++) {
+                    rows[p][t] /= (float) sum;
+                }
+            }
+            return rows;
+        });
+    }
+
+    //Función de Bessel modificada de orden 0, por serie de potencias
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.max(1, a);
+    }
+}
@@ -0,0 +1,77 @@
+//Control de volumen por software aplicado a cada bloque antes de entregarlo a la línea
+//No depende de FloatControl.Type.MASTER_GAIN, que muchos mezcladores de Linux no ofrecen
+class GainStage {
+    //Volumen mínimo de la escala en dB, por debajo se considera silencio
+    static final double MIN_DB = -60.0;
+    static final double MAX_DB = 12.0;
+    //Duración de la rampa entre dos ganancias, evita el ruido de "cremallera" al mover el volumen
+    private static final int RAMP_MILLIS = 20;
+
+    //Lo escribe cualquier hilo, lo lee el hilo de salida
+    private volatile double volumeDb = 0.0;
+    private volatile boolean muted = false;
+    //Ganancia lineal objetivo ya calculada, el hilo de audio no calcula logaritmos ni potencias
+    private volatile float target = 1.0f;
+
+    // ---- Solo el hilo de salida ----
+    private float current = 1.0f;
+    private float step = 0.0f;
+    private float rampTarget = 1.0f;
+
+    void setVolumeDb(double db) {
+        volumeDb = Math.max(MIN_DB, Math.min(MAX_DB, db));
+        updateTarget();
+    }
+
+    void setMuted(boolean mute) {
+        muted = mute;
+        updateTarget();
+    }
+
+    double getVolumeDb() {
+        return volumeDb;
+    }
+
+    boolean isMuted() {
+        return muted;
+    }
+
+    //Con ganancia unitaria y sin rampa pendiente el bloque puede pasar sin convertirse a float
+    boolean isIdle() {
+        return target == 1.0f && rampTarget == 1.0f && current == 1.0f;
+    }
+
+    //Aplica la ganancia sobre muestras float intercaladas; solo lo llama el hilo de salida
+    void process(float[] samples, int frames, int channels, float frameRate) {
+        float goal = target;
+        if (goal != rampTarget) {
+            //Nueva ganancia pedida: la rampa dura lo mismo sin importar cuánto cambió
+            rampTarget = goal;
+            int rampFrames = Math.max(1, (int) (frameRate * RAMP_MILLIS / 1000));
+            step = (goal - current) / rampFrames;
+        }
+
+        float gain = current;
+        for (int f = 0, i = 0; f < frames; f++) {
+            if (gain != rampTarget) {
+                gain += step;
+                //La rampa termina exactamente en el objetivo, sin pasarse
+                if ((step > 0 && gain > rampTarget) || (step < 0 && gain < rampTarget) || step == 0) {
+                    gain = rampTarget;
+                }
+            }
+            for (int c = 0; c < channels; c++, i++) {
+                samples[i] *= gain;
+            }
+        }
+        current = gain;
+    }
+
+    private void updateTarget() {
+        if (muted || volumeDb <= MIN_DB) {
+            target = 0.0f;
+        } else {
+            target = (float) Math.pow(10.0, volumeDb / 20.0);
+        }
+    }
+}
@@ -0,0 +1,584 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Busca canciones en una carpeta y todas sus subcarpetas, repartiendo las carpetas entre varios hilos (fork/join)
+//Los enlaces simbólicos se siguen, pero cada carpeta real se visita una sola vez, así un enlace que apunta
+//hacia arriba no genera un ciclo infinito. Las canciones encontradas se entregan por tandas mientras se busca.
+//Cada escaneo deja una LibrarySnapshot; revalidate() parte de una anterior y solo vuelve a leer las carpetas
+//cuya fecha de modificación cambió.
+public class LibraryScanner {
+    //Atributos
+
+    //Patrones de nombre que cuentan como canción, separados por coma (-Dmusicplayer.scan.include)
+    private static final String INCLUDE = System.getProperty("musicplayer.scan.include", "*.wav");
+    private static final int THREADS = Integer.getInteger("musicplayer.scan.threads",
+            Runtime.getRuntime().availableProcessors());
+    //Cada cuánto se avisa el progreso; avisar por archivo saturaría la interfaz con miles de canciones
+    private static final long PROGRESS_MS = Long.getLong("musicplayer.scan.progress.ms", 100);
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final int threads;
+    private final long progressMillis;
+    //Un solo pool para todos los escaneos; sus hilos son daemon y se terminan solos cuando no hay trabajo
+    private final ForkJoinPool pool;
+
+    //Avisos del escaneo, llegan en el hilo que llamó a scan()
+    public interface Listener {
+        //Canciones encontradas desde el aviso anterior
+        void tracksFound(List<File> tracks);
+
+        //Canciones de la foto anterior que ya no están (solo al revalidar)
+        void tracksRemoved(List<File> tracks);
+
+        //Progreso acumulado; filesPerSecond cuenta todos los archivos revisados, sean canciones o no
+        void progress(int tracks, int directories, double filesPerSecond, File lastTrack);
+    }
+
+    //Constructor con la configuración de -Dmusicplayer.scan.*
+    public LibraryScanner() {
+        this(List.of(INCLUDE.split(",")), THREADS, PROGRESS_MS);
+    }
+
+    //Los patrones son globs sobre el nombre del archivo ("*.wav", "*.{wav,wave}") y no distinguen mayúsculas
+    public LibraryScanner(List<String> includePatterns, int threads, long progressMillis) {
+        for (String pattern : includePatterns) {
+            String trimmed = pattern.trim();
+            if (!trimmed.isEmpty()) {
+                includes.add(FileSystems.getDefault().getPathMatcher("glob:" + trimmed.toLowerCase(Locale.ROOT)));
+            }
+        }
+        if (includes.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un patrón de archivos");
+        }
+        this.threads = Math.max(1, threads);
+        this.progressMillis = Math.max(1, progressMillis);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    //Escanea la carpeta y espera a que termine; mientras tanto este hilo entrega las tandas y el progreso
+    public Report scan(File root, Listener listener) {
+        long start = System.nanoTime();
+        Scan scan = new Scan();
+        await(pool.submit(new DirectoryTask(scan, root.toPath())), scan, listener, start);
+        return new Report(false, new LibrarySnapshot(root.getAbsolutePath(), scan.folders), scan.tracks.get(),
+                scan.directories.get(), scan.files.get(), scan.unreadable.get(), scan.repeated.get(),
+                0, 0, 0, System.nanoTime() - start, threads);
+    }
+
+    //Pone al día una foto anterior: las carpetas con la misma fecha se dan por buenas sin listarlas,
+    //las que cambiaron se vuelven a leer y las subcarpetas nuevas se escanean completas
+    public Report revalidate(LibrarySnapshot previous, Listener listener) {
+        long start = System.nanoTime();
+        Scan scan = new Scan();
+        List<LibrarySnapshot.Folder> folders = previous.getFolders();
+        Set<String> known = new HashSet<>();
+        for (LibrarySnapshot.Folder folder : folders) {
+            known.add(folder.getPath());
+        }
+        LibrarySnapshot.Folder[] changed = new LibrarySnapshot.Folder[folders.size()];
+        //Primero se consultan todas las fechas, así las carpetas conocidas quedan marcadas como visitadas
+        //antes de que un enlace nuevo pueda llevar a ellas
+        await(pool.submit(new CheckTask(scan, folders, changed, 0, folders.size())), scan, listener, start);
+        List<RelistTask> relist = new ArrayList<>();
+        for (LibrarySnapshot.Folder folder : changed) {
+            if (folder != null) {
+                relist.add(new RelistTask(scan, folder, known));
+            }
+        }
+        await(pool.submit(() -> ForkJoinTask.invokeAll(relist)), scan, listener, start);
+        return new Report(true, new LibrarySnapshot(previous.getRoot().getAbsolutePath(), scan.folders),
+                scan.tracks.get(), scan.directories.get(), scan.files.get(), scan.unreadable.get(),
+                scan.repeated.get(), scan.addedCount.get(), scan.removedCount.get(), scan.changedCount.get(),
+                System.nanoTime() - start, threads);
+    }
+
+    //Aplica cambios conocidos sin mirar el resto: las carpetas indicadas se vuelven a listar y, si ya no existen,
+    //se quitan con todo lo que tenían debajo. Las demás carpetas de la foto se conservan tal cual, sin tocar el disco
+    public Report update(LibrarySnapshot previous, Collection<String> dirtyPaths, Listener listener) {
+        long start = System.nanoTime();
+        Scan scan = new Scan();
+        Set<String> dirty = new HashSet<>(dirtyPaths);
+        Set<String> known = new HashSet<>();
+        for (LibrarySnapshot.Folder folder : previous.getFolders()) {
+            known.add(folder.getPath());
+        }
+        //Carpetas borradas: la propia y todas las que cuelgan de ella
+        List<String> gone = new ArrayList<>();
+        for (String path : dirty) {
+            if (!Files.isDirectory(Path.of(path))) {
+                gone.add(path);
+            }
+        }
+        //Además, las subcarpetas conocidas de una carpeta que cambió pueden haberse borrado sin aviso propio
+        for (LibrarySnapshot.Folder folder : previous.getFolders()) {
+            Path parent = Path.of(folder.getPath()).getParent();
+            if (parent != null && dirty.contains(parent.toString()) && !Files.isDirectory(Path.of(folder.getPath()))) {
+                gone.add(folder.getPath());
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        Set<String> handled = new HashSet<>();
+        for (LibrarySnapshot.Folder folder : previous.getFolders()) {
+            String path = folder.getPath();
+            if (isUnder(path, gone)) {
+                forget(scan, folder);
+                continue;
+            }
+            //Las carpetas conocidas cuentan como visitadas, así un enlace nuevo hacia ellas no las repite
+            //Su identidad ya está en la foto; solo se consulta el disco si cambiaron o si la foto vino del archivo
+            Object key = dirty.contains(path) ? null : folder.getKey();
+            if (key == null) {
+                try {
+                    Path dir = Path.of(path);
+                    key = keyOf(dir, Files.readAttributes(dir, BasicFileAttributes.class));
+                } catch (IOException e) {
+                    //Se borró recién; su carpeta padre avisará y la próxima actualización la quita
+                }
+            }
+            if (key != null) {
+                scan.visited.add(key);
+            }
+            if (dirty.contains(path)) {
+                tasks.add(new RelistTask(scan, folder, known));
+                handled.add(path);
+            } else {
+                scan.directories.incrementAndGet();
+                scan.tracks.addAndGet(folder.getTrackCount());
+                scan.folders.add(folder.withKey(key));
+            }
+        }
+        //Carpetas marcadas que la foto no tenía (por ejemplo, recién creadas): se escanean completas
+        for (String path : dirty) {
+            if (!handled.contains(path) && !known.contains(path) && !isUnder(path, gone)) {
+                tasks.add(new DirectoryTask(scan, Path.of(path)));
+            }
+        }
+
+        await(pool.submit(() -> ForkJoinTask.invokeAll(tasks)), scan, listener, start);
+        return new Report(true, new LibrarySnapshot(previous.getRoot().getAbsolutePath(), scan.folders),
+                scan.tracks.get(), scan.directories.get(), scan.files.get(), scan.unreadable.get(),
+                scan.repeated.get(), scan.addedCount.get(), scan.removedCount.get(), scan.changedCount.get(),
+                System.nanoTime() - start, threads);
+    }
+
+    //Si el nombre del archivo cuenta como canción según los patrones de inclusión
+    public boolean isTrack(File file) {
+        return isTrack(file.toPath());
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Si la ruta es alguna de las carpetas o está dentro de ellas
+    private static boolean isUnder(String path, List<String> folders) {
+        for (String folder : folders) {
+            if (path.equals(folder) || path.startsWith(folder + File.separator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Espera la tarea avisando el progreso cada progressMillis
+    private void await(ForkJoinTask<?> task, Scan scan, Listener listener, long start) {
+        boolean done = false;
+        while (!done) {
+            try {
+                task.get(progressMillis, TimeUnit.MILLISECONDS);
+                done = true;
+            } catch (TimeoutException e) {
+                //Sigue buscando, solo toca avisar
+            } catch (ExecutionException e) {
+                //Un error inesperado deja lo encontrado hasta ese momento
+                done = true;
+            } catch (InterruptedException e) {
+                //El pool sigue para los próximos escaneos, solo se abandona esta tarea
+                task.cancel(true);
+                Thread.currentThread().interrupt();
+                done = true;
+            }
+            report(scan, listener, start);
+        }
+    }
+
+    //Entrega lo que se juntó desde el último aviso
+    private void report(Scan scan, Listener listener, long start) {
+        List<File> batch = drain(scan.pending);
+        List<File> removed = drain(scan.removed);
+        if (listener == null) {
+            return;
+        }
+        if (!removed.isEmpty()) {
+            listener.tracksRemoved(removed);
+        }
+        if (!batch.isEmpty()) {
+            listener.tracksFound(batch);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        listener.progress(scan.tracks.get(), scan.directories.get(),
+                seconds > 0 ? scan.files.get() / seconds : 0,
+                batch.isEmpty() ? null : batch.get(batch.size() - 1));
+    }
+
+    //Las canciones de una carpeta que ya no existe pasan a quitadas
+    private static void forget(Scan scan, LibrarySnapshot.Folder folder) {
+        for (String name : folder.getTracks()) {
+            scan.removed.add(new File(folder.getPath(), name));
+        }
+        scan.removedCount.addAndGet(folder.getTrackCount());
+    }
+
+    private static List<File> drain(ConcurrentLinkedQueue<File> queue) {
+        List<File> batch = new ArrayList<>();
+        File file;
+        while ((file = queue.poll()) != null) {
+            batch.add(file);
+        }
+        return batch;
+    }
+
+    //Identidad de la carpeta (inodo o ruta real) para no visitarla dos veces
+    private static Object keyOf(Path dir, BasicFileAttributes attributes) throws IOException {
+        Object key = attributes.fileKey();
+        //Sistemas sin inodos (Windows): la ruta real identifica la carpeta
+        return key != null ? key : dir.toRealPath();
+    }
+
+    private boolean isTrack(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        Path lower = file.getFileSystem().getPath(name.toString().toLowerCase(Locale.ROOT));
+        for (PathMatcher include : includes) {
+            if (include.matches(lower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Estado compartido de un escaneo
+    private static final class Scan {
+        //Identidad de cada carpeta visitada (inodo o ruta real), evita ciclos por enlaces simbólicos
+        final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        final ConcurrentLinkedQueue<File> pending = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<File> removed = new ConcurrentLinkedQueue<>();
+        //Carpetas con canciones para la foto nueva
+        final ConcurrentLinkedQueue<LibrarySnapshot.Folder> folders = new ConcurrentLinkedQueue<>();
+        final AtomicInteger tracks = new AtomicInteger();
+        final AtomicInteger directories = new AtomicInteger();
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger unreadable = new AtomicInteger();
+        final AtomicInteger repeated = new AtomicInteger();
+        final AtomicInteger addedCount = new AtomicInteger();
+        final AtomicInteger removedCount = new AtomicInteger();
+        final AtomicInteger changedCount = new AtomicInteger();
+    }
+
+    //Lee una carpeta y reparte sus subcarpetas como tareas nuevas
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Scan scan;
+        private final transient Path directory;
+
+        DirectoryTask(Scan scan, Path directory) {
+            this.scan = scan;
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            BasicFileAttributes attributes;
+            Object key;
+            try {
+                attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+                key = keyOf(directory, attributes);
+                if (!scan.visited.add(key)) {
+                    scan.repeated.incrementAndGet();
+                    return;
+                }
+            } catch (IOException e) {
+                scan.unreadable.incrementAndGet();
+                return;
+            }
+            scan.directories.incrementAndGet();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<String> tracks = list(scan, directory, subdirectories, null);
+            if (tracks == null) {
+                return;
+            }
+            for (String name : tracks) {
+                scan.pending.add(directory.resolve(name).toFile());
+            }
+            scan.tracks.addAndGet(tracks.size());
+            scan.addedCount.addAndGet(tracks.size());
+            scan.folders.add(new LibrarySnapshot.Folder(directory.toString(),
+                    attributes.lastModifiedTime().toMillis(), tracks.toArray(new String[0]), key));
+            invokeAll(subdirectories);
+        }
+    }
+
+    //Lista una carpeta: devuelve los nombres de las canciones y agrega las subcarpetas que hay que recorrer
+    //(las que no están en known); null si no se pudo leer
+    private List<String> list(Scan scan, Path directory, List<DirectoryTask> subdirectories, Set<String> known) {
+        List<String> tracks = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    //Sigue los enlaces: una canción o carpeta enlazada cuenta como si estuviera aquí
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    //Enlace roto o sin permisos
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (known == null || !known.contains(entry.toString())) {
+                        subdirectories.add(new DirectoryTask(scan, entry));
+                    }
+                } else if (attributes.isRegularFile()) {
+                    scan.files.incrementAndGet();
+                    if (isTrack(entry)) {
+                        tracks.add(entry.getFileName().toString());
+                    }
+                }
+            }
+            return tracks;
+        } catch (IOException e) {
+            //Carpeta sin permisos: se salta y se sigue con las demás
+            scan.unreadable.incrementAndGet();
+            return null;
+        }
+    }
+
+    //Consulta la fecha de un rango de carpetas de la foto anterior, partiendo el rango entre los hilos
+    private final class CheckTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int BATCH = 64;
+
+        private final transient Scan scan;
+        private final transient List<LibrarySnapshot.Folder> folders;
+        private final transient LibrarySnapshot.Folder[] changed;
+        private final int from;
+        private final int to;
+
+        CheckTask(Scan scan, List<LibrarySnapshot.Folder> folders, LibrarySnapshot.Folder[] changed, int from, int to) {
+            this.scan = scan;
+            this.folders = folders;
+            this.changed = changed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CheckTask(scan, folders, changed, from, middle),
+                        new CheckTask(scan, folders, changed, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                LibrarySnapshot.Folder folder = folders.get(i);
+                Path dir = Path.of(folder.getPath());
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(dir, BasicFileAttributes.class);
+                    Object key = attributes.isDirectory() ? keyOf(dir, attributes) : null;
+                    if (key == null || !scan.visited.add(key)) {
+                        forget(scan, folder);
+                    } else if (attributes.lastModifiedTime().toMillis() != folder.getModified()) {
+                        changed[i] = folder;
+                    } else {
+                        //Misma fecha: nadie agregó, quitó ni renombró archivos aquí
+                        scan.directories.incrementAndGet();
+                        scan.tracks.addAndGet(folder.getTrackCount());
+                        scan.folders.add(folder.withKey(key));
+                    }
+                } catch (IOException e) {
+                    //La carpeta se borró o ya no se puede leer
+                    forget(scan, folder);
+                }
+            }
+        }
+    }
+
+    //Vuelve a listar una carpeta que cambió y compara con lo que tenía la foto
+    private final class RelistTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Scan scan;
+        private final transient LibrarySnapshot.Folder folder;
+        private final transient Set<String> known;
+
+        RelistTask(Scan scan, LibrarySnapshot.Folder folder, Set<String> known) {
+            this.scan = scan;
+            this.folder = folder;
+            this.known = known;
+        }
+
+        @Override
+        protected void compute() {
+            Path dir = Path.of(folder.getPath());
+            long modified;
+            Object key;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(dir, BasicFileAttributes.class);
+                modified = attributes.lastModifiedTime().toMillis();
+                key = keyOf(dir, attributes);
+            } catch (IOException e) {
+                modified = folder.getModified();
+                key = null;
+            }
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<String> tracks = list(scan, dir, subdirectories, known);
+            if (tracks == null) {
+                tracks = new ArrayList<>();
+            }
+            scan.directories.incrementAndGet();
+            scan.changedCount.incrementAndGet();
+
+            Set<String> before = new HashSet<>(folder.getTracks());
+            Set<String> now = new HashSet<>(tracks);
+            for (String name : tracks) {
+                if (!before.contains(name)) {
+                    scan.pending.add(new File(folder.getPath(), name));
+                    scan.addedCount.incrementAndGet();
+                }
+            }
+            for (String name : folder.getTracks()) {
+                if (!now.contains(name)) {
+                    scan.removed.add(new File(folder.getPath(), name));
+                    scan.removedCount.incrementAndGet();
+                }
+            }
+            scan.tracks.addAndGet(tracks.size());
+            scan.folders.add(new LibrarySnapshot.Folder(folder.getPath(), modified, tracks.toArray(new String[0]), key));
+
+            //Las subcarpetas nuevas se recorren completas; sus canciones cuentan como agregadas
+            invokeAll(subdirectories);
+        }
+    }
+
+    //Resumen de un escaneo, con el rendimiento obtenido
+    public static final class Report {
+        //Si partió de una foto anterior en lugar de escanear todo
+        private final boolean revalidation;
+        private final LibrarySnapshot snapshot;
+        private final int tracks;
+        private final int directories;
+        private final int files;
+        private final int unreadableDirectories;
+        private final int repeatedDirectories;
+        private final int addedTracks;
+        private final int removedTracks;
+        private final int changedDirectories;
+        private final long elapsedNanos;
+        private final int threads;
+
+        Report(boolean revalidation, LibrarySnapshot snapshot, int tracks, int directories, int files,
+               int unreadableDirectories, int repeatedDirectories, int addedTracks, int removedTracks,
+               int changedDirectories, long elapsedNanos, int threads) {
+            this.revalidation = revalidation;
+            this.snapshot = snapshot;
+            this.tracks = tracks;
+            this.directories = directories;
+            this.files = files;
+            this.unreadableDirectories = unreadableDirectories;
+            this.repeatedDirectories = repeatedDirectories;
+            this.addedTracks = addedTracks;
+            this.removedTracks = removedTracks;
+            this.changedDirectories = changedDirectories;
+            this.elapsedNanos = elapsedNanos;
+            this.threads = threads;
+        }
+
+        //Foto de la biblioteca tal como quedó, lista para guardar
+        public LibrarySnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        public int getTracks() {
+            return tracks;
+        }
+
+        public int getDirectories() {
+            return directories;
+        }
+
+        //Archivos revisados, sean canciones o no; al revalidar solo cuentan las carpetas que cambiaron
+        public int getFiles() {
+            return files;
+        }
+
+        public int getUnreadableDirectories() {
+            return unreadableDirectories;
+        }
+
+        //Carpetas alcanzadas otra vez por un enlace simbólico, no se volvieron a recorrer
+        public int getRepeatedDirectories() {
+            return repeatedDirectories;
+        }
+
+        //Canciones que no estaban en la foto anterior (al revalidar)
+        public int getAddedTracks() {
+            return revalidation ? addedTracks : tracks;
+        }
+
+        public int getRemovedTracks() {
+            return removedTracks;
+        }
+
+        //Carpetas cuya fecha cambió y se volvieron a listar (al revalidar)
+        public int getChangedDirectories() {
+            return changedDirectories;
+        }
+
+        //Si la foto nueva difiere de la anterior y conviene guardarla
+        public boolean hasChanges() {
+            return !revalidation || changedDirectories > 0 || removedTracks > 0;
+        }
+
+        public double getSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : files / getSeconds();
+        }
+
+        @Override
+        public String toString() {
+            if (revalidation) {
+                return String.format("Biblioteca revisada: %d canciones en %d carpetas, %d nuevas y %d quitadas (%d carpetas cambiadas, %d archivos releídos) en %.2f s (%d hilos)",
+                        tracks, directories, addedTracks, removedTracks, changedDirectories, files, getSeconds(), threads);
+            }
+            return String.format("Biblioteca escaneada: %d canciones en %d carpetas (%d archivos, %d sin permiso, %d enlaces repetidos) en %.2f s (%d hilos) - %.0f archivos/s",
+                    tracks, directories, files, unreadableDirectories, repeatedDirectories, getSeconds(), threads, getFilesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+//Foto de la biblioteca guardada en disco: la carpeta elegida y, por cada subcarpeta, su fecha de modificación
+//y los nombres de sus canciones. Al iniciar se lee de una pasada y el reproductor abre sin volver a escanear;
+//después solo se revisan las carpetas cuya fecha cambió (LibraryScanner.revalidate)
+public final class LibrarySnapshot {
+    //Atributos
+
+    //Cabecera del archivo, si cambia el formato se ignora el archivo viejo
+    private static final int MAGIC = 0x4C494253;
+    private static final int VERSION = 1;
+
+    private final String root;
+    //Ordenadas por ruta, así la biblioteca siempre aparece en el mismo orden
+    private final List<Folder> folders;
+    private final int trackCount;
+
+    LibrarySnapshot(String root, Collection<Folder> folders) {
+        this.root = root;
+        List<Folder> sorted = new ArrayList<>(folders);
+        sorted.sort(Comparator.comparing(Folder::getPath));
+        this.folders = Collections.unmodifiableList(sorted);
+        int count = 0;
+        for (Folder folder : sorted) {
+            count += folder.getTrackCount();
+        }
+        this.trackCount = count;
+    }
+
+    public File getRoot() {
+        return new File(root);
+    }
+
+    public List<Folder> getFolders() {
+        return folders;
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    //Todas las canciones, carpeta por carpeta
+    public List<File> getTracks() {
+        List<File> tracks = new ArrayList<>(trackCount);
+        for (Folder folder : folders) {
+            File dir = new File(folder.path);
+            for (int t = 0; t < folder.getTrackCount(); t++) {
+                tracks.add(new File(dir, folder.getTrack(t)));
+            }
+        }
+        return tracks;
+    }
+
+    // ============ DISCO ============
+
+    //Lee el archivo de corrido con un búfer; null si no existe, está dañado o es de otra versión
+    //No se mapea: un archivo mapeado no se puede reemplazar en Windows mientras el mapeo siga vivo, y save() lo reemplaza
+    public static LibrarySnapshot load(File file) {
+        LibrarySnapshot[] loaded = new LibrarySnapshot[1];
+        try {
+            long limit = file == null ? 0 : file.length();
+            CacheFile.read(file, MAGIC, VERSION, in -> loaded[0] = read(in, limit));
+        } catch (IOException | IllegalArgumentException e) {
+            //Foto dañada: se vuelve a escanear como la primera vez
+            return null;
+        }
+        return loaded[0];
+    }
+
+    //Escribe a un archivo temporal y lo reemplaza, así un corte a mitad no deja la foto a medias
+    public void save(File file) throws IOException {
+        CacheFile.write(file, MAGIC, VERSION, out -> {
+            writeString(out, root);
+            out.writeInt(folders.size());
+            for (Folder folder : folders) {
+                writeString(out, folder.path);
+                out.writeLong(folder.modified);
+                out.writeInt(folder.getTrackCount());
+                for (int t = 0; t < folder.getTrackCount(); t++) {
+                    out.writeInt(folder.starts[t + 1] - folder.starts[t]);
+                    out.write(folder.names, folder.starts[t], folder.starts[t + 1] - folder.starts[t]);
+                }
+            }
+        });
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Ningún largo puede pasar el tamaño del archivo, así un número dañado no pide memoria de más
+    private static LibrarySnapshot read(DataInputStream in, long limit) throws IOException {
+        byte[] scratch = new byte[256];
+        String root = readString(in, scratch, limit);
+        int folderCount = readLength(in, limit);
+        List<Folder> folders = new ArrayList<>(folderCount);
+        for (int i = 0; i < folderCount; i++) {
+            String path = readString(in, scratch, limit);
+            long modified = in.readLong();
+            //Los nombres ya están en UTF-8 y en orden: se copian tal cual, sin pasar por String
+            int[] starts = new int[readLength(in, limit) + 1];
+            int length = 0;
+            for (int t = 1; t < starts.length; t++) {
+                int size = readLength(in, limit);
+                if (length + size > scratch.length) {
+                    scratch = Arrays.copyOf(scratch, Math.max(length + size, scratch.length * 2));
+                }
+                in.readFully(scratch, length, size);
+                length += size;
+                starts[t] = length;
+            }
+            folders.add(new Folder(path, modified, Arrays.copyOf(scratch, length), starts, null));
+        }
+        return new LibrarySnapshot(root, folders);
+    }
+
+    private static int readLength(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > limit) {
+            throw new IllegalArgumentException("Largo dañado");
+        }
+        return length;
+    }
+
+    //Texto UTF-8 con su largo adelante; los nombres de canción son relativos a su carpeta
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, byte[] scratch, long limit) throws IOException {
+        int length = readLength(in, limit);
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Una carpeta de la biblioteca; si su fecha no cambió, tampoco cambió la lista de archivos que contiene
+    //Los nombres se guardan en UTF-8 uno detrás del otro, sin un String por canción: el vigilante tiene la foto
+    //abierta todo el tiempo y con un millón de canciones la diferencia son decenas de megabytes
+    public static final class Folder {
+        private final String path;
+        private final long modified;
+        //El nombre i ocupa names[starts[i] .. starts[i + 1])
+        private final byte[] names;
+        private final int[] starts;
+        //Identidad de la carpeta en disco (inodo o ruta real) si se leyó en esta ejecución; null si vino del archivo
+        //Con ella update() marca las carpetas conocidas como visitadas sin volver a consultarlas
+        private final Object key;
+
+        Folder(String path, long modified, String[] tracks) {
+            this(path, modified, tracks, null);
+        }
+
+        Folder(String path, long modified, String[] tracks, Object key) {
+            this.path = path;
+            this.modified = modified;
+            this.key = key;
+            Arrays.sort(tracks);
+            byte[][] encoded = new byte[tracks.length][];
+            this.starts = new int[tracks.length + 1];
+            for (int t = 0; t < tracks.length; t++) {
+                encoded[t] = tracks[t].getBytes(StandardCharsets.UTF_8);
+                starts[t + 1] = starts[t] + encoded[t].length;
+            }
+            this.names = new byte[starts[tracks.length]];
+            for (int t = 0; t < tracks.length; t++) {
+                System.arraycopy(encoded[t], 0, names, starts[t], encoded[t].length);
+            }
+        }
+
+        //Nombres ya ordenados y empaquetados, como quedan en el archivo
+        private Folder(String path, long modified, byte[] names, int[] starts, Object key) {
+            this.path = path;
+            this.modified = modified;
+            this.names = names;
+            this.starts = starts;
+            this.key = key;
+        }
+
+        //La misma carpeta con su identidad en disco, comparte los nombres
+        Folder withKey(Object key) {
+            return key == this.key ? this : new Folder(path, modified, names, starts, key);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public int getTrackCount() {
+            return starts.length - 1;
+        }
+
+        Object getKey() {
+            return key;
+        }
+
+        //Nombre de la canción, sin la carpeta
+        public String getTrack(int index) {
+            return new String(names, starts[index], starts[index + 1] - starts[index], StandardCharsets.UTF_8);
+        }
+
+        //Nombres de las canciones, sin la carpeta; se arman en cada llamada
+        public List<String> getTracks() {
+            List<String> tracks = new ArrayList<>(getTrackCount());
+            for (int t = 0; t < getTrackCount(); t++) {
+                tracks.add(getTrack(t));
+            }
+            return Collections.unmodifiableList(tracks);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//Mantiene la biblioteca al día mientras el reproductor está abierto, sin volver a escanearla
+//Cada carpeta de la biblioteca se vigila con un WatchService; los avisos solo marcan carpetas como cambiadas y,
+//cuando pasa un rato sin avisos nuevos, esas carpetas se vuelven a listar juntas (LibraryScanner.update).
+//Si el sistema no deja vigilar más carpetas (límite de inotify), esas se revisan cada tanto comparando su fecha.
+public class LibraryWatcher implements Closeable {
+    //Atributos
+
+    //Silencio que se espera antes de aplicar los cambios; copiar un álbum genera cientos de avisos seguidos
+    private static final long DEBOUNCE_MS = Long.getLong("musicplayer.watch.debounce.ms", 500);
+    //Aunque los avisos no paren, los cambios se aplican al menos con esta frecuencia
+    private static final long MAX_DELAY_MS = Long.getLong("musicplayer.watch.max.delay.ms", 5000);
+    //Cada cuánto se revisan las fechas de las carpetas que no se pudieron vigilar
+    private static final long SWEEP_MS = Long.getLong("musicplayer.watch.sweep.ms", 30000);
+
+    private final LibraryScanner scanner;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // ---- Solo los usa el hilo del vigilante ----
+    private LibrarySnapshot snapshot;
+    private final Map<WatchKey, Path> watched = new HashMap<>();
+    private final Set<String> watchedPaths = new HashSet<>();
+    //Carpetas sin WatchService, se revisan por fecha
+    private final Map<String, Long> swept = new HashMap<>();
+    //Cambios juntados desde la última aplicación
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private final Set<File> modified = new LinkedHashSet<>();
+    private boolean overflow = false;
+    private long firstEventMillis = 0;
+    private long lastEventMillis = 0;
+    private long nextSweepMillis;
+
+    //Avisos del vigilante, llegan desde su propio hilo
+    public interface Listener extends LibraryScanner.Listener {
+        //Canciones que siguen en la biblioteca pero cuyo contenido cambió
+        void tracksModified(List<File> tracks);
+
+        //La biblioteca cambió, la foto nueva ya incluye todos los cambios avisados
+        void snapshotUpdated(LibrarySnapshot snapshot);
+    }
+
+    //Empieza a vigilar todas las carpetas de la foto en un hilo propio
+    public LibraryWatcher(LibrarySnapshot snapshot, LibraryScanner scanner, Listener listener) throws IOException {
+        this.snapshot = snapshot;
+        this.scanner = scanner;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.nextSweepMillis = System.currentTimeMillis() + SWEEP_MS;
+        this.thread = new Thread(this::run, "library-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watchService.close();
+        thread.interrupt();
+    }
+
+    // ============ HILO DEL VIGILANTE ============
+
+    private void run() {
+        registerAll();
+        try {
+            while (running) {
+                WatchKey key = watchService.poll(waitMillis(), TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (key != null) {
+                    collect(key, now);
+                }
+                if (!dirty.isEmpty() || overflow) {
+                    if (now - lastEventMillis >= DEBOUNCE_MS || now - firstEventMillis >= MAX_DELAY_MS) {
+                        apply();
+                    }
+                }
+                if (now >= nextSweepMillis) {
+                    sweep();
+                    nextSweepMillis = now + SWEEP_MS;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //close(): el vigilante termina
+        }
+    }
+
+    //Hasta el próximo trabajo pendiente: aplicar cambios o revisar fechas
+    private long waitMillis() {
+        long now = System.currentTimeMillis();
+        long until = nextSweepMillis;
+        if (!dirty.isEmpty() || overflow) {
+            until = Math.min(until, Math.min(lastEventMillis + DEBOUNCE_MS, firstEventMillis + MAX_DELAY_MS));
+        }
+        return Math.max(1, until - now);
+    }
+
+    //Junta los avisos de una carpeta; solo se anota qué carpeta cambió, el detalle sale al volver a listarla
+    private void collect(WatchKey key, long now) {
+        Path dir = watched.get(key);
+        if (dirty.isEmpty() && !overflow) {
+            firstEventMillis = now;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                //Se perdieron avisos: se revisan las fechas de todas las carpetas
+                overflow = true;
+            } else if (dir != null) {
+                Path child = dir.resolve((Path) event.context());
+                dirty.add(dir.toString());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && scanner.isTrack(child.toFile())
+                        && Files.isRegularFile(child)) {
+                    modified.add(child.toFile());
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                        && (watchedPaths.contains(child.toString()) || swept.containsKey(child.toString()))) {
+                    //Era una carpeta de la biblioteca: ella y lo que tenía debajo se quitan al aplicar
+                    dirty.add(child.toString());
+                }
+            }
+            lastEventMillis = now;
+        }
+        if (!key.reset()) {
+            //La carpeta se borró o dejó de ser accesible
+            Path gone = watched.remove(key);
+            if (gone != null) {
+                watchedPaths.remove(gone.toString());
+            }
+        }
+    }
+
+    //Aplica los cambios juntados y publica la foto nueva
+    private void apply() {
+        LibraryScanner.Report report;
+        if (overflow) {
+            LibrarySnapshot current = scanner.update(snapshot, dirty, listener).getSnapshot();
+            report = scanner.revalidate(current, listener);
+        } else {
+            report = scanner.update(snapshot, dirty, listener);
+        }
+        snapshot = report.getSnapshot();
+        dirty.clear();
+        overflow = false;
+
+        //Un archivo modificado que después se borró ya llegó como quitado
+        List<File> changed = new ArrayList<>();
+        for (File file : modified) {
+            if (file.isFile()) {
+                changed.add(file);
+            }
+        }
+        modified.clear();
+        if (!changed.isEmpty()) {
+            listener.tracksModified(changed);
+        }
+
+        registerAll();
+        listener.snapshotUpdated(snapshot);
+    }
+
+    //Las carpetas que no se pudieron vigilar se comparan por fecha, sin listarlas
+    private void sweep() {
+        for (Map.Entry<String, Long> entry : swept.entrySet()) {
+            File dir = new File(entry.getKey());
+            if (dir.lastModified() != entry.getValue()) {
+                markDirty(entry.getKey());
+            }
+        }
+        if (!dirty.isEmpty()) {
+            apply();
+        }
+    }
+
+    private void markDirty(String path) {
+        long now = System.currentTimeMillis();
+        if (dirty.isEmpty() && !overflow) {
+            firstEventMillis = now;
+        }
+        dirty.add(path);
+        lastEventMillis = now;
+    }
+
+    //Vigila las carpetas nuevas de la foto y olvida las que ya no están
+    private void registerAll() {
+        Set<String> current = new HashSet<>();
+        for (LibrarySnapshot.Folder folder : snapshot.getFolders()) {
+            String path = folder.getPath();
+            current.add(path);
+            if (watchedPaths.contains(path)) {
+                continue;
+            }
+            if (swept.containsKey(path)) {
+                swept.put(path, folder.getModified());
+                continue;
+            }
+            try {
+                WatchKey key = Path.of(path).register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watched.put(key, Path.of(path));
+                watchedPaths.add(path);
+                //Lo que se creó entre listarla y empezar a vigilarla no generó avisos: se vuelve a listar
+                if (new File(path).lastModified() != folder.getModified()) {
+                    markDirty(path);
+                }
+            } catch (IOException e) {
+                //Límite de vigilancias del sistema (o carpeta sin permisos): queda para la revisión por fecha
+                swept.put(path, folder.getModified());
+            }
+        }
+        watched.entrySet().removeIf(entry -> {
+            if (!current.contains(entry.getValue().toString())) {
+                entry.getKey().cancel();
+                watchedPaths.remove(entry.getValue().toString());
+                return true;
+            }
+            return false;
+        });
+        swept.keySet().retainAll(current);
+    }
+}
@@ -0,0 +1,77 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+//Salida por la tarjeta de sonido a través de un SourceDataLine de Java Sound
+public class LineSink implements AudioSink {
+    private final SourceDataLine line;
+
+    private LineSink(SourceDataLine line) {
+        this.line = line;
+    }
+
+    //Destino por defecto del reproductor
+    public static AudioSink.Factory factory() {
+        return (format, bufferBytes) -> {
+            try {
+                SourceDataLine line = AudioSystem.getSourceDataLine(format);
+                line.open(format, bufferBytes);
+                return new LineSink(line);
+            } catch (IllegalArgumentException e) {
+                //Algunos mezcladores rechazan el formato con esta excepción en lugar de LineUnavailableException
+                throw new LineUnavailableException(e.getMessage());
+            }
+        };
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return line.getFormat();
+    }
+
+    @Override
+    public void start() {
+        line.start();
+    }
+
+    @Override
+    public void stop() {
+        line.stop();
+    }
+
+    @Override
+    public void flush() {
+        line.flush();
+    }
+
+    @Override
+    public void drain() {
+        line.drain();
+    }
+
+    @Override
+    public void close() {
+        line.close();
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length) {
+        return line.write(data, offset, length);
+    }
+
+    @Override
+    public long getLongFramePosition() {
+        return line.getLongFramePosition();
+    }
+
+    @Override
+    public int available() {
+        return line.available();
+    }
+
+    @Override
+    public int getBufferSize() {
+        return line.getBufferSize();
+    }
+}
@@ -0,0 +1,311 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+//Mide el volumen percibido de una pista según ITU-R BS.1770 / EBU R128 (el mismo que usa ReplayGain 2.0)
+//Lee el archivo completo una sola vez: filtro K, bloques de 400 ms con puertas absoluta y relativa, y pico real
+public final class LoudnessAnalyzer {
+    //Atributos
+
+    //Nivel de referencia de ReplayGain 2.0, la ganancia de pista lleva la canción hasta aquí
+    public static final double REFERENCE_LUFS = -18.0;
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    //Sobremuestreo para estimar el pico real entre muestras
+    private static final int OVERSAMPLING = 4;
+    private static final int TAPS_PER_PHASE = 12;
+    //Filtro de interpolación polifásico (sinc con ventana de Hann), se calcula una sola vez
+    private static final float[][] INTERPOLATION = interpolationFilter();
+
+    private LoudnessAnalyzer() {
+    }
+
+    //Analiza el archivo completo; lanza excepción si no se puede leer como audio
+    public static Result analyze(File file) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream stream = PlaybackEngine.openDecodedStream(file)) {
+            return analyze(stream);
+        }
+    }
+
+    static Result analyze(AudioInputStream stream) throws IOException {
+        AudioFormat format = stream.getFormat();
+        if (!PcmSamples.isSupported(format)) {
+            throw new IOException("Formato no soportado para el análisis: " + format);
+        }
+        int channels = format.getChannels();
+        int frameSize = format.getFrameSize();
+        float rate = format.getFrameRate();
+
+        //Filtro K: estante agudo (efecto de la cabeza) seguido de un pasa altos (curva RLB)
+        double[] shelf = shelfCoefficients(rate);
+        double[] highPass = highPassCoefficients(rate);
+        double[] state = new double[channels * 4];
+        double[] weights = channelWeights(channels);
+
+        //Energía acumulada en sub-bloques de 100 ms; un bloque de 400 ms son 4 sub-bloques seguidos
+        int subBlockFrames = Math.max(1, Math.round(rate / 10));
+        double[] lastSubBlocks = new double[4];
+        int subBlockCount = 0;
+        double subBlockEnergy = 0;
+        int subBlockPosition = 0;
+        double[] blocks = new double[256];
+        int blockCount = 0;
+
+        float[][] history = new float[channels][TAPS_PER_PHASE];
+        int historyPosition = 0;
+        double samplePeak = 0;
+        double truePeak = 0;
+
+        byte[] bytes = new byte[Math.max(frameSize, 64 * 1024 / frameSize * frameSize)];
+        float[] samples = new float[bytes.length / frameSize * channels];
+        long totalBytes = 0;
+        int read;
+        int pending = 0;
+        while ((read = stream.read(bytes, pending, bytes.length - pending)) > 0 || pending > 0) {
+            int available = pending + Math.max(0, read);
+            int frames = available / frameSize;
+            if (frames == 0) {
+                if (read <= 0) {
+                    break;
+                }
+                pending = available;
+                continue;
+            }
+            totalBytes += (long) frames * frameSize;
+            PcmSamples.toFloat(bytes, 0, samples, frames * channels, format);
+
+            for (int f = 0; f < frames; f++) {
+                double frameEnergy = 0;
+                for (int c = 0; c < channels; c++) {
+                    float x = samples[f * channels + c];
+
+                    //Pico de muestra y pico real con interpolación 4x
+                    double abs = Math.abs(x);
+                    if (abs > samplePeak) {
+                        samplePeak = abs;
+                    }
+                    float[] h = history[c];
+                    h[historyPosition] = x;
+                    for (int phase = 0; phase < OVERSAMPLING; phase++) {
+                        float[] taps = INTERPOLATION[phase];
+                        double y = 0;
+                        for (int t = 0, p = historyPosition; t < TAPS_PER_PHASE; t++) {
+                            y += taps[t] * h[p];
+                            p = p == 0 ? TAPS_PER_PHASE - 1 : p - 1;
+                        }
+                        if (Math.abs(y) > truePeak) {
+                            truePeak = Math.abs(y);
+                        }
+                    }
+
+                    if (weights[c] == 0) {
+                        continue;
+                    }
+                    double y = biquad(x, shelf, state, c * 4);
+                    y = biquad(y, highPass, state, c * 4 + 2);
+                    frameEnergy += weights[c] * y * y;
+                }
+                historyPosition = historyPosition + 1 == TAPS_PER_PHASE ? 0 : historyPosition + 1;
+
+                subBlockEnergy += frameEnergy;
+                if (++subBlockPosition == subBlockFrames) {
+                    lastSubBlocks[subBlockCount % 4] = subBlockEnergy / subBlockFrames;
+                    subBlockCount++;
+                    subBlockEnergy = 0;
+                    subBlockPosition = 0;
+                    if (subBlockCount >= 4) {
+                        double energy = (lastSubBlocks[0] + lastSubBlocks[1] + lastSubBlocks[2] + lastSubBlocks[3]) / 4;
+                        if (blockCount == blocks.length) {
+                            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                        }
+                        blocks[blockCount++] = energy;
+                    }
+                }
+            }
+
+            //Si quedó un frame incompleto se mueve al inicio para la próxima lectura
+            int used = frames * frameSize;
+            pending = available - used;
+            System.arraycopy(bytes, used, bytes, 0, pending);
+            if (read <= 0) {
+                break;
+            }
+        }
+
+        truePeak = Math.max(truePeak, samplePeak);
+        return new Result(integrate(blocks, blockCount), toDb(truePeak), toDb(samplePeak), totalBytes);
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Promedio con puertas: primero se descartan los bloques de silencio y después los muy bajos respecto al resto
+    private static double integrate(double[] blocks, int count) {
+        double absoluteGate = energyOf(ABSOLUTE_GATE_LUFS);
+        double sum = 0;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (blocks[i] > absoluteGate) {
+                sum += blocks[i];
+                n++;
+            }
+        }
+        if (n == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double relativeGate = energyOf(loudnessOf(sum / n) + RELATIVE_GATE_LU);
+        double gatedSum = 0;
+        int gated = 0;
+        for (int i = 0; i < count; i++) {
+            if (blocks[i] > absoluteGate && blocks[i] > relativeGate) {
+                gatedSum += blocks[i];
+                gated++;
+            }
+        }
+        return gated == 0 ? Double.NEGATIVE_INFINITY : loudnessOf(gatedSum / gated);
+    }
+
+    private static double loudnessOf(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double energyOf(double lufs) {
+        return Math.pow(10, (lufs + 0.691) / 10);
+    }
+
+    private static double toDb(double linear) {
+        return linear > 0 ? 20 * Math.log10(linear) : Double.NEGATIVE_INFINITY;
+    }
+
+    //Biquad en forma directa transpuesta II, el estado son dos valores por filtro y canal
+    private static double biquad(double x, double[] c, double[] z, int s) {
+        double y = c[0] * x + z[s];
+        z[s] = c[1] * x - c[3] * y + z[s + 1];
+        z[s + 1] = c[2] * x - c[4] * y;
+        return y;
+    }
+
+    //Coeficientes del filtro K para cualquier frecuencia de muestreo (BS.1770 los da solo para 48 kHz)
+    private static double[] shelfCoefficients(double rate) {
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / rate);
+        double vh = Math.pow(10, gain / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        return new double[]{
+                (vh + vb * k / q + k * k) / a0,
+                2 * (k * k - vh) / a0,
+                (vh - vb * k / q + k * k) / a0,
+                2 * (k * k - 1) / a0,
+                (1 - k / q + k * k) / a0
+        };
+    }
+
+    private static double[] highPassCoefficients(double rate) {
+        double f0 = 38.13547087602444;
+        double q = 0.5003270373238773;
+        double k = Math.tan(Math.PI * f0 / rate);
+        double a0 = 1 + k / q + k * k;
+        return new double[]{1, -2, 1, 2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0};
+    }
+
+    //Peso de cada canal: frontales 1.0, envolventes 1.41 y el LFE (canal 4 de un 5.1) no cuenta
+    private static double[] channelWeights(int channels) {
+        double[] weights = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            if (channels == 6 && c == 3) {
+                weights[c] = 0;
+            } else if (channels >= 5 && c >= 3) {
+                weights[c] = 1.41;
+            } else {
+                weights[c] = 1.0;
+            }
+        }
+        return weights;
+    }
+
+    //Una fila de coeficientes por fase; las 4 fases caen entre las muestras originales, repartidas a igual distancia
+    private static float[][] interpolationFilter() {
+        float[][] phases = new float[OVERSAMPLING][TAPS_PER_PHASE];
+        int length = OVERSAMPLING * TAPS_PER_PHASE;
+        double center = (length - 1) / 2.0;
+        for (int i = 0; i < length; i++) {
+            double x = (i - center) / OVERSAMPLING;
+            double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * (i + 0.5) / length);
+            phases[i % OVERSAMPLING][i / OVERSAMPLING] = (float) (sinc * window);
+        }
+        //Cada fase con ganancia unitaria en continua, así una señal constante no aparenta picos
+        for (float[] phase : phases) {
+            float sum = 0;
+            for (float tap : phase) {
+                sum += tap;
+            }
+            for (int t = 0; t < phase.length; t++) {
+                phase[t] /= sum;
+            }
+        }
+        return phases;
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Resultado del análisis de una pista
+    public static final class Result {
+        private final double integratedLufs;
+        private final double truePeakDb;
+        private final double samplePeakDb;
+        private final long analyzedBytes;
+
+        Result(double integratedLufs, double truePeakDb, double samplePeakDb, long analyzedBytes) {
+            this.integratedLufs = integratedLufs;
+            this.truePeakDb = truePeakDb;
+            this.samplePeakDb = samplePeakDb;
+            this.analyzedBytes = analyzedBytes;
+        }
+
+        //Volumen integrado en LUFS, -infinito si la pista es silencio
+        public double getIntegratedLufs() {
+            return integratedLufs;
+        }
+
+        //Pico real (entre muestras) en dBTP
+        public double getTruePeakDb() {
+            return truePeakDb;
+        }
+
+        public double getSamplePeakDb() {
+            return samplePeakDb;
+        }
+
+        long getAnalyzedBytes() {
+            return analyzedBytes;
+        }
+
+        //Ganancia de pista de ReplayGain 2.0: lo que falta para llegar a -18 LUFS
+        public double getTrackGainDb() {
+            if (Double.isInfinite(integratedLufs)) {
+                return 0;
+            }
+            return REFERENCE_LUFS - integratedLufs;
+        }
+
+        //Ganancia que se aplica al reproducir: la de pista, limitada para que el pico real no pase de 0 dBTP
+        public double getPlaybackGainDb() {
+            double gain = getTrackGainDb();
+            if (!Double.isInfinite(truePeakDb)) {
+                gain = Math.min(gain, -truePeakDb);
+            }
+            return gain;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f LUFS, pico %.1f dBTP, ganancia %+.1f dB", integratedLufs, truePeakDb, getTrackGainDb());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Volumen medido de cada canción de la biblioteca, guardado en disco para no volver a analizar lo que no cambió
+public class LoudnessLibrary {
+    //Atributos
+
+    //Cabecera del archivo de caché, si cambia el formato se ignora el archivo viejo
+    private static final int MAGIC = 0x4C554653;
+    private static final int VERSION = 1;
+
+    private final File cacheFile;
+    //Último resultado de cada canción por id de TrackTable, con el tamaño y la fecha que tenía el archivo al medirlo
+    //Una canción modificada se vuelve a analizar y su resultado reemplaza al viejo
+    private final Map<Integer, Entry> results = new ConcurrentHashMap<>();
+    //Si se aplica la ganancia de cada canción al reproducir
+    private volatile boolean normalization = true;
+
+    //Avisos de progreso del análisis, llegan desde los hilos de análisis
+    public interface ProgressListener {
+        void progress(int done, int total, File file);
+    }
+
+    //Constructor, carga lo que se haya analizado en ejecuciones anteriores
+    public LoudnessLibrary(File cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    //Ganancia lineal para reproducir la canción, 1 si no está analizada o la normalización está apagada
+    public float getPlaybackGain(File file) {
+        if (!normalization) {
+            return 1.0f;
+        }
+        LoudnessAnalyzer.Result result = get(file);
+        if (result == null) {
+            return 1.0f;
+        }
+        return (float) Math.pow(10, result.getPlaybackGainDb() / 20);
+    }
+
+    //Resultado guardado, null si la canción todavía no se analizó o cambió desde entonces
+    public LoudnessAnalyzer.Result get(File file) {
+        FileKey key = FileKey.of(file);
+        Entry entry = key == null ? null : results.get(key.getTrack());
+        return entry != null && entry.key.equals(key) ? entry.result : null;
+    }
+
+    //Analiza en paralelo, con un hilo por núcleo, solo las canciones que no están en la caché
+    public Report analyzeAll(List<File> files, ProgressListener listener) {
+        long start = System.nanoTime();
+        //Una canción repetida en la lista se analiza una sola vez
+        Map<FileKey, File> pendingFiles = new LinkedHashMap<>();
+        for (File file : files) {
+            FileKey key = FileKey.of(file);
+            Entry known = key == null ? null : results.get(key.getTrack());
+            if (key != null && (known == null || !known.key.equals(key))) {
+                pendingFiles.putIfAbsent(key, file);
+            }
+        }
+        List<FileKey> missing = new ArrayList<>(pendingFiles.keySet());
+        AtomicLong bytes = new AtomicLong();
+        //La reproducción siempre tiene prioridad sobre el análisis
+        ParallelJob job = ParallelJob.run("loudness-analyzer", Thread.MIN_PRIORITY, missing, key -> {
+            try {
+                LoudnessAnalyzer.Result result = LoudnessAnalyzer.analyze(pendingFiles.get(key));
+                results.put(key.getTrack(), new Entry(key, result));
+                bytes.addAndGet(result.getAnalyzedBytes());
+                return true;
+            } catch (IOException | UnsupportedAudioFileException e) {
+                //Las canciones que no se pueden leer se reproducen sin ganancia
+                return false;
+            }
+        }, listener == null ? null : (done, total, key) -> listener.progress(done, total, pendingFiles.get(key)));
+
+        if (!missing.isEmpty()) {
+            save();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Report(files.size(), missing.size() - job.getFailed(), job.getFailed(), bytes.get(), elapsed, job.getThreads());
+    }
+
+    //Olvida las canciones que salieron de la biblioteca; devuelve true si alguna estaba medida
+    public boolean forget(Collection<File> files) {
+        boolean removed = false;
+        for (File file : files) {
+            int id = TrackTable.shared().find(file);
+            if (id >= 0 && results.remove(id) != null) {
+                removed = true;
+            }
+        }
+        if (removed) {
+            save();
+        }
+        return removed;
+    }
+
+    public void setNormalization(boolean enabled) {
+        normalization = enabled;
+    }
+
+    public boolean isNormalization() {
+        return normalization;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private void load() {
+        try {
+            CacheFile.read(cacheFile, MAGIC, VERSION, in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    FileKey key = new FileKey(TrackTable.shared().intern(in.readUTF()), in.readLong(), in.readLong());
+                    double integrated = in.readDouble();
+                    double truePeak = in.readDouble();
+                    double samplePeak = in.readDouble();
+                    long analyzed = in.readLong();
+                    results.put(key.getTrack(), new Entry(key, new LoudnessAnalyzer.Result(integrated, truePeak, samplePeak, analyzed)));
+                }
+            });
+        } catch (IOException e) {
+            //Caché dañada o de otra versión: se empieza de cero y se reescribe en el próximo análisis
+            results.clear();
+        }
+    }
+
+    private synchronized void save() {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            CacheFile.write(cacheFile, MAGIC, VERSION, out -> {
+                List<Entry> entries = new ArrayList<>(results.values());
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    FileKey key = entry.key;
+                    LoudnessAnalyzer.Result result = entry.result;
+                    out.writeUTF(key.getPath());
+                    out.writeLong(key.getSize());
+                    out.writeLong(key.getModified());
+                    out.writeDouble(result.getIntegratedLufs());
+                    out.writeDouble(result.getTruePeakDb());
+                    out.writeDouble(result.getSamplePeakDb());
+                    out.writeLong(result.getAnalyzedBytes());
+                }
+            });
+        } catch (IOException e) {
+            //Sin caché en disco el análisis simplemente se repite en la próxima ejecución
+        }
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Resultado junto con la identidad del archivo que se midió
+    private static final class Entry {
+        final FileKey key;
+        final LoudnessAnalyzer.Result result;
+
+        Entry(FileKey key, LoudnessAnalyzer.Result result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+
+    //Resumen de un análisis de la biblioteca, con los megabytes de PCM decodificados
+    public static final class Report extends BatchReport {
+        private final long analyzedBytes;
+
+        Report(int totalFiles, int analyzedFiles, int failedFiles, long analyzedBytes, long elapsedNanos, int threads) {
+            super(totalFiles, analyzedFiles, failedFiles, elapsedNanos, threads);
+            this.analyzedBytes = analyzedBytes;
+        }
+
+        public int getAnalyzedFiles() {
+            return getProcessedFiles();
+        }
+
+        //Megabytes de PCM decodificado por segundo
+        public double getMegabytesPerSecond() {
+            return getSeconds() == 0 ? 0 : analyzedBytes / 1e6 / getSeconds();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Volumen analizado: %d nuevas, %d en caché, %d con error en %.2f s (%d hilos) - %.1f archivos/s, %.1f MB/s",
+                    getAnalyzedFiles(), getCachedFiles(), getFailedFiles(), getSeconds(), getThreads(), getFilesPerSecond(), getMegabytesPerSecond());
+        }
+    }
+}
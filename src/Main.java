@@ -1,14 +1,30 @@
 import javax.swing.*;
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
+    //Última biblioteca cargada; con ella el reproductor abre sin preguntar la carpeta ni escanearla
+    private static final String LIBRARY_SNAPSHOT = System.getProperty("musicplayer.library.snapshot",
+            System.getProperty("user.home") + File.separator + ".musicplayer" + File.separator + "library.snapshot");
+    //-Dmusicplayer.library.rescan=true vuelve a preguntar la carpeta aunque haya una biblioteca guardada
+    private static final boolean RESCAN = Boolean.getBoolean("musicplayer.library.rescan");
+
     public static void main(String[] args) {
 
         UIInformation info = new UIInformation();
         // MusicPlayer player = new MusicPlayer(info);
 
+        File snapshotFile = new File(LIBRARY_SNAPSHOT);
+        LibrarySnapshot snapshot = RESCAN ? null : LibrarySnapshot.load(snapshotFile);
+        if (snapshot != null && snapshot.getRoot().isDirectory()) {
+            openSnapshot(snapshot, snapshotFile, info);
+            return;
+        }
+
     // Abrir selector de carpeta
         String carpetaSeleccionada = info.selectMusicFolder(null);
 
@@ -32,21 +48,6 @@ public class Main {
             return;
         }
 
-        //Almacenar las rutas de las canciones
-        List<File> songFiles = new ArrayList<>();
-
-        //Filtramos solo los archivos .wav
-        File [] files = tracksFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".wav"));
-
-        if (files == null || files.length == 0){
-            info.showException(
-                    "Carpeta vacia",
-                    "No se encontro ningun elemento dento de la carpeta 'Tracks' ",
-                    "Error, sistema de archivos"
-            );
-            return;
-        }
-
         // ========== AQUÍ EMPIEZA LA ANIMACIÓN ==========
 
         // Crear la ventana de carga
@@ -57,43 +58,150 @@ public class Main {
             loadingWindow.setVisible(true);
         }).start();
 
-        // Cargar archivos con animación
-        new Thread(() -> {
-            int total = files.length;
+        //El reproductor se abre de entrada y recibe las canciones a medida que el escaneo las encuentra
+        UIMusicPlayer[] window = new UIMusicPlayer[1];
 
-            for (int i = 0; i < files.length; i++) {
-                File f = files[i];
-                songFiles.add(f);
+        // Escanear la carpeta y sus subcarpetas en paralelo
+        new Thread(() -> {
+            try {
+                SwingUtilities.invokeAndWait(() -> {
+                    window[0] = new UIMusicPlayer(new ArrayList<>(), info);
+                    window[0].setVisible(true);
+                });
+            } catch (InterruptedException | InvocationTargetException e) {
+                e.printStackTrace();
+                loadingWindow.close();
+                return;
+            }
 
-                // Actualizar progreso
-                loadingWindow.updateProgress(i + 1, total, f.getName());
+            LibraryScanner.Report report = new LibraryScanner().scan(tracksFolder, new LibraryScanner.Listener() {
+                @Override
+                public void tracksFound(List<File> tracks) {
+                    SwingUtilities.invokeLater(() -> window[0].addSongs(tracks));
+                }
 
-                try {
-                    Thread.sleep(600);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                @Override
+                public void tracksRemoved(List<File> tracks) {
+                    //Un escaneo completo no parte de nada, no hay canciones que quitar
                 }
-            }
 
-            // Pausa antes de cerrar
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+                @Override
+                public void progress(int tracks, int directories, double filesPerSecond, File lastTrack) {
+                    loadingWindow.updateScan(tracks, directories, filesPerSecond,
+                            lastTrack == null ? null : lastTrack.getName());
+                }
+            });
+            System.out.println(report);
+            saveSnapshot(report.getSnapshot(), snapshotFile);
 
             // Cerrar ventana
             loadingWindow.close();
+
+            if (report.getTracks() == 0){
+                SwingUtilities.invokeLater(() -> window[0].dispose());
+                info.showException(
+                        "Carpeta vacia",
+                        "No se encontro ningun archivo de audio dentro de la carpeta ni sus subcarpetas",
+                        "Error, sistema de archivos"
+                );
+                return;
+            }
+
             info.showSuccess(
                     "Carga completada!",
-                    "Se cargaron " + songFiles.size() + " canciones",
+                    "Se cargaron " + report.getTracks() + " canciones",
                     "Musica lista"
             );
 
-            //Mostrar el menú
-            SwingUtilities.invokeLater(() -> {
-                new UIMusicPlayer(songFiles, info).setVisible(true);
+            //Con la biblioteca completa ya se puede medir el volumen de todas; el informe sale junto al del escaneo
+            SwingUtilities.invokeLater(() -> window[0].analyzeLibrary().thenAccept(System.out::println));
+            watchLibrary(report.getSnapshot(), snapshotFile, window[0]);
+        }, "library-scanner").start();
+    }
+
+    //Abre el reproductor con la biblioteca guardada y después, en segundo plano, la compara con el disco
+    private static void openSnapshot(LibrarySnapshot snapshot, File snapshotFile, UIInformation info) {
+        SwingUtilities.invokeLater(() -> {
+            UIMusicPlayer window = new UIMusicPlayer(new ArrayList<>(), info);
+            window.addSongs(snapshot.getTracks());
+            window.setVisible(true);
+
+            //Cuando este aviso se atiende la ventana ya se pintó y responde
+            SwingUtilities.invokeLater(() -> System.out.printf("Listo para usar en %d ms desde el inicio (%d canciones de la biblioteca guardada)%n",
+                    ManagementFactory.getRuntimeMXBean().getUptime(), snapshot.getTrackCount()));
+
+            new Thread(() -> {
+                LibraryScanner.Report report = new LibraryScanner().revalidate(snapshot, new LibraryScanner.Listener() {
+                    @Override
+                    public void tracksFound(List<File> tracks) {
+                        SwingUtilities.invokeLater(() -> window.addSongs(tracks));
+                    }
+
+                    @Override
+                    public void tracksRemoved(List<File> tracks) {
+                        SwingUtilities.invokeLater(() -> window.removeSongs(tracks));
+                    }
+
+                    @Override
+                    public void progress(int tracks, int directories, double filesPerSecond, File lastTrack) {
+                        //La revisión es silenciosa, el reproductor ya se puede usar
+                    }
+                });
+                System.out.println(report);
+                //Solo se reescribe si alguna carpeta cambió
+                if (report.hasChanges()) {
+                    saveSnapshot(report.getSnapshot(), snapshotFile);
+                }
+                SwingUtilities.invokeLater(() -> window.analyzeLibrary().thenAccept(System.out::println));
+                watchLibrary(report.getSnapshot(), snapshotFile, window);
+            }, "library-revalidation").start();
+        });
+    }
+
+    //Desde aquí los cambios en la carpeta llegan solos: se aplican al selector, a la playlist y a la foto guardada
+    private static void watchLibrary(LibrarySnapshot snapshot, File snapshotFile, UIMusicPlayer window) {
+        try {
+            new LibraryWatcher(snapshot, new LibraryScanner(), new LibraryWatcher.Listener() {
+                @Override
+                public void tracksFound(List<File> tracks) {
+                    SwingUtilities.invokeLater(() -> {
+                        window.addSongs(tracks);
+                        window.analyzeSongs(tracks).thenAccept(System.out::println);
+                    });
+                }
+
+                @Override
+                public void tracksRemoved(List<File> tracks) {
+                    SwingUtilities.invokeLater(() -> window.removeSongs(tracks));
+                }
+
+                @Override
+                public void tracksModified(List<File> tracks) {
+                    SwingUtilities.invokeLater(() -> window.analyzeSongs(tracks).thenAccept(System.out::println));
+                }
+
+                @Override
+                public void progress(int tracks, int directories, double filesPerSecond, File lastTrack) {
+                    //Los cambios suelen ser pocas carpetas, no hace falta mostrar avance
+                }
+
+                @Override
+                public void snapshotUpdated(LibrarySnapshot updated) {
+                    saveSnapshot(updated, snapshotFile);
+                }
             });
-        }).start();
+        } catch (IOException e) {
+            //Sin vigilancia los cambios se ven en el próximo inicio, con la revisión de la biblioteca guardada
+            System.err.println("No se pudo vigilar la biblioteca: " + e.getMessage());
+        }
+    }
+
+    private static void saveSnapshot(LibrarySnapshot snapshot, File snapshotFile) {
+        try {
+            snapshot.save(snapshotFile);
+        } catch (IOException e) {
+            //Sin biblioteca guardada el próximo inicio simplemente vuelve a preguntar y escanear
+            System.err.println("No se pudo guardar la biblioteca: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
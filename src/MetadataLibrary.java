@@ -0,0 +1,222 @@
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Datos de cada canción de la biblioteca (formato, duración, etiquetas), guardados en disco entre ejecuciones
+//Una pista se vuelve a leer solo si cambió su tamaño o su fecha de modificación
+public class MetadataLibrary {
+    //Atributos
+
+    //Cabecera del archivo de caché, si cambia el formato se ignora el archivo viejo
+    private static final int MAGIC = 0x4D455441;
+    private static final int VERSION = 1;
+    
+    private final File cacheFile;
+    private final TrackTable table = TrackTable.shared();
+    //Última lectura conocida de cada archivo, por id de TrackTable (null si nunca se leyó); las consultas no tocan el disco
+    //Lo protege tracksLock, no this: save() escribe el disco sin frenar las consultas del selector
+    private final Object tracksLock = new Object();
+    private Track[] tracks = new Track[1024];
+    private int trackCount = 0;
+    //Artistas y álbumes se repiten en cada canción del disco; se guarda una sola copia de cada texto
+    private final Map<String, String> tags = new HashMap<>();
+    //Cuánto tardó en cargarse la caché al crear la biblioteca
+    private long loadNanos;
+
+    //Avisos de progreso de la lectura, llegan desde los hilos de lectura
+    public interface ProgressListener {
+        void progress(int done, int total, Track track);
+    }
+
+    //Constructor, carga lo que se haya leído en ejecuciones anteriores
+    public MetadataLibrary(File cacheFile) {
+        this.cacheFile = cacheFile;
+        long start = System.nanoTime();
+        load();
+        loadNanos = System.nanoTime() - start;
+    }
+
+    //Datos guardados de la canción, sin comprobar si el archivo cambió; null si nunca se leyó
+    public Track get(File file) {
+        int id = file == null ? -1 : table.find(file);
+        return id < 0 ? null : get(id);
+    }
+
+    public Track get(int id) {
+        synchronized (tracksLock) {
+            return id < tracks.length ? tracks[id] : null;
+        }
+    }
+
+    //Igual que get(), pero si no se leyó devuelve una pista que solo conoce el archivo
+    public Track getOrUnknown(File file) {
+        int id = table.intern(file);
+        Track track = get(id);
+        return track != null ? track : Track.unknown(id);
+    }
+
+    //Lee en paralelo, con un hilo por núcleo, solo las canciones nuevas o modificadas
+    public Report extractAll(List<File> files, ProgressListener listener) {
+        long start = System.nanoTime();
+        List<File> missing = new ArrayList<>();
+        for (File file : files) {
+            Track known = get(file);
+            if (known == null || !known.matches(file.length(), file.lastModified())) {
+                missing.add(file.getAbsoluteFile());
+            }
+        }
+
+        ParallelJob job = ParallelJob.run("metadata-reader", Thread.NORM_PRIORITY, missing, file -> {
+            try {
+                store(MetadataReader.read(file));
+                return true;
+            } catch (IOException | UnsupportedAudioFileException e) {
+                //Se recuerda igual con su tamaño y fecha, así no se reintenta en cada inicio
+                store(new Track(file, file.length(), file.lastModified(), "", "", "", -1, 0, 0, 0));
+                return false;
+            }
+        }, listener == null ? null : (done, total, file) -> listener.progress(done, total, get(file)));
+
+        if (!missing.isEmpty()) {
+            save();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Report(files.size(), missing.size() - job.getFailed(), job.getFailed(), elapsed, job.getThreads(), loadNanos);
+    }
+
+    public int size() {
+        synchronized (tracksLock) {
+            return trackCount;
+        }
+    }
+
+    //Segundos que tardó en cargarse la caché del disco
+    public double getLoadSeconds() {
+        return loadNanos / 1e9;
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Agrega una pista ya leída, lo usa el benchmark para armar cachés grandes sin archivos reales
+    void put(Track track) {
+        store(track);
+    }
+
+    //Guarda la pista con los textos de artista y álbum compartidos con las demás
+    private void store(Track track) {
+        synchronized (tracksLock) {
+            String artist = share(track.getArtist());
+            String album = share(track.getAlbum());
+            if (artist != track.getArtist() || album != track.getAlbum()) {
+                track = new Track(track.getId(), track.getSize(), track.getModified(), track.getTitle(), artist, album,
+                        track.getDurationMicros(), track.getSampleRate(), track.getChannels(), track.getBits());
+            }
+            int id = track.getId();
+            if (id >= tracks.length) {
+                tracks = Arrays.copyOf(tracks, Math.max(id + 1, tracks.length + (tracks.length >> 1)));
+            }
+            if (tracks[id] == null) {
+                trackCount++;
+            }
+            tracks[id] = track;
+        }
+    }
+
+    private String share(String text) {
+        String shared = tags.putIfAbsent(text, text);
+        return shared != null ? shared : text;
+    }
+
+    //Copia de las pistas leídas, para recorrerlas sin tener el lock
+    private List<Track> knownTracks() {
+        synchronized (tracksLock) {
+            List<Track> known = new ArrayList<>(trackCount);
+            for (Track track : tracks) {
+                if (track != null) {
+                    known.add(track);
+                }
+            }
+            return known;
+        }
+    }
+
+    private void load() {
+        try {
+            CacheFile.read(cacheFile, MAGIC, VERSION, in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int id = table.intern(in.readUTF());
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    String title = in.readUTF();
+                    String artist = in.readUTF();
+                    String album = in.readUTF();
+                    long duration = in.readLong();
+                    float sampleRate = in.readFloat();
+                    int channels = in.readShort();
+                    int bits = in.readShort();
+                    store(new Track(id, size, modified, title, artist, album, duration, sampleRate, channels, bits));
+                }
+            });
+        } catch (IOException e) {
+            //Caché dañada o de otra versión: se empieza de cero y se reescribe en la próxima lectura
+            synchronized (tracksLock) {
+                Arrays.fill(tracks, null);
+                trackCount = 0;
+            }
+        }
+    }
+
+    synchronized void save() {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            CacheFile.write(cacheFile, MAGIC, VERSION, out -> {
+                List<Track> entries = knownTracks();
+                out.writeInt(entries.size());
+                for (Track track : entries) {
+                    out.writeUTF(table.path(track.getId()));
+                    out.writeLong(track.getSize());
+                    out.writeLong(track.getModified());
+                    out.writeUTF(track.getTitle());
+                    out.writeUTF(track.getArtist());
+                    out.writeUTF(track.getAlbum());
+                    out.writeLong(track.getDurationMicros());
+                    out.writeFloat(track.getSampleRate());
+                    out.writeShort(track.getChannels());
+                    out.writeShort(track.getBits());
+                }
+            });
+        } catch (IOException e) {
+            //Sin caché en disco los datos simplemente se vuelven a leer en la próxima ejecución
+        }
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Resumen de una lectura de la biblioteca, con lo que tardó en cargarse la caché
+    public static final class Report extends BatchReport {
+        private final long cacheLoadNanos;
+
+        Report(int totalFiles, int readFiles, int failedFiles, long elapsedNanos, int threads, long cacheLoadNanos) {
+            super(totalFiles, readFiles, failedFiles, elapsedNanos, threads);
+            this.cacheLoadNanos = cacheLoadNanos;
+        }
+
+        public int getReadFiles() {
+            return getProcessedFiles();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Metadatos: %d leídos, %d en caché (cargada en %.0f ms), %d con error en %.2f s (%d hilos) - %.1f archivos/s",
+                    getReadFiles(), getCachedFiles(), cacheLoadNanos / 1e6, getFailedFiles(), getSeconds(), getThreads(), getFilesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+//Lee los datos de una canción sin tocar el audio: en un WAV recorre los chunks y salta "data" sin leerlo
+//Etiquetas: LIST/INFO (INAM, IART, IPRD) e ID3v2 dentro de un chunk "id3 " (TIT2, TPE1, TALB); si el archivo
+//trae las dos, manda ID3 porque admite Unicode
+public final class MetadataReader {
+    //Atributos
+
+    //Límites para no leer de más si un chunk viene con un tamaño absurdo
+    private static final int MAX_INFO_BYTES = 64 * 1024;
+    private static final int MAX_TEXT_FRAME_BYTES = 4 * 1024;
+    //Largo máximo de una etiqueta; el caché de metadatos las guarda con writeUTF, que no acepta más de 64 KB
+    private static final int MAX_TAG_CHARS = 2 * 1024;
+
+    private MetadataReader() {
+    }
+
+    //Lee la cabecera del archivo y arma la pista; los formatos que no son WAV se consultan a AudioSystem
+    public static Track read(File file) throws IOException, UnsupportedAudioFileException {
+        Track track = readWav(file);
+        return track != null ? track : readOther(file);
+    }
+
+    // ============ WAV ============
+
+    private static Track readWav(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 12) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            WavFile.readFully(channel, header, 0);
+            if (header.getInt(0) != WavFile.fourCC("RIFF") || header.getInt(8) != WavFile.fourCC("WAVE")) {
+                return null;
+            }
+
+            AudioFormat format = null;
+            long dataLength = -1;
+            Tags info = new Tags();
+            Tags id3 = new Tags();
+            long position = 12;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+            //Las etiquetas pueden estar antes o después del audio, se recorren todos los chunks
+            while (position + 8 <= fileSize) {
+                chunkHeader.clear();
+                WavFile.readFully(channel, chunkHeader, position);
+                int id = chunkHeader.getInt(0);
+                long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+                long body = position + 8;
+
+                if (id == WavFile.fourCC("fmt ")) {
+                    ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 64)).order(ByteOrder.LITTLE_ENDIAN);
+                    WavFile.readFully(channel, fmt, body);
+                    format = WavFile.parseFormat(fmt);
+                } else if (id == WavFile.fourCC("data")) {
+                    dataLength = Math.min(size, fileSize - body);
+                } else if (id == WavFile.fourCC("LIST") && size >= 4) {
+                    ByteBuffer list = ByteBuffer.allocate((int) Math.min(size, Math.min(MAX_INFO_BYTES, fileSize - body)))
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                    WavFile.readFully(channel, list, body);
+                    if (list.limit() >= 4 && list.getInt(0) == WavFile.fourCC("INFO")) {
+                        parseInfo(list, info);
+                    }
+                } else if (id == WavFile.fourCC("id3 ") || id == WavFile.fourCC("ID3 ")) {
+                    parseId3(channel, body, Math.min(size, fileSize - body), id3);
+                }
+
+                //Los chunks de tamaño impar llevan un byte de relleno
+                position = body + size + (size & 1);
+            }
+
+            if (format == null) {
+                return null;
+            }
+            long frames = dataLength < 0 ? -1 : dataLength / format.getFrameSize();
+            long duration = frames < 0 ? -1 : (long) (frames * 1_000_000L / (double) format.getSampleRate());
+            return new Track(file, fileSize, file.lastModified(),
+                    id3.title != null ? id3.title : info.title,
+                    id3.artist != null ? id3.artist : info.artist,
+                    id3.album != null ? id3.album : info.album,
+                    duration, format.getSampleRate(), format.getChannels(), format.getSampleSizeInBits());
+        }
+    }
+
+    //Subchunks de LIST/INFO: id de 4 letras, tamaño y texto terminado en cero
+    private static void parseInfo(ByteBuffer list, Tags tags) {
+        int position = 4;
+        while (position + 8 <= list.limit()) {
+            int id = list.getInt(position);
+            int size = list.getInt(position + 4);
+            int body = position + 8;
+            if (size < 0 || body + size > list.limit()) {
+                break;
+            }
+            if (id == WavFile.fourCC("INAM")) {
+                tags.title = decodeLegacy(list, body, size);
+            } else if (id == WavFile.fourCC("IART")) {
+                tags.artist = decodeLegacy(list, body, size);
+            } else if (id == WavFile.fourCC("IPRD")) {
+                tags.album = decodeLegacy(list, body, size);
+            }
+            position = body + size + (size & 1);
+        }
+    }
+
+    // ============ ID3v2 ============
+
+    //Solo se leen las cabeceras de los frames y el texto de los que interesan; las imágenes se saltan
+    private static void parseId3(FileChannel channel, long start, long length, Tags tags) throws IOException {
+        if (length < 10) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(10).order(ByteOrder.BIG_ENDIAN);
+        WavFile.readFully(channel, header, start);
+        if (header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return;
+        }
+        int version = header.get(3);
+        int flags = header.get(5) & 0xFF;
+        long end = start + 10 + Math.min(syncSafe(header.getInt(6)), length - 10);
+        long position = start + 10;
+
+        //Cabecera extendida (bit 6): en 2.3 su tamaño no se cuenta a sí mismo, en 2.4 sí y es syncsafe
+        if ((flags & 0x40) != 0 && version >= 3) {
+            ByteBuffer extended = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            WavFile.readFully(channel, extended, position);
+            position += version == 3 ? 4 + extended.getInt(0) : syncSafe(extended.getInt(0));
+        }
+
+        int headerSize = version == 2 ? 6 : 10;
+        ByteBuffer frameHeader = ByteBuffer.allocate(headerSize).order(ByteOrder.BIG_ENDIAN);
+        while (position + headerSize <= end) {
+            frameHeader.clear();
+            WavFile.readFully(channel, frameHeader, position);
+            if (frameHeader.get(0) == 0) {
+                //Relleno, no hay más frames
+                break;
+            }
+            String id;
+            long size;
+            if (version == 2) {
+                id = new String(frameHeader.array(), 0, 3, StandardCharsets.ISO_8859_1);
+                size = ((frameHeader.get(3) & 0xFF) << 16) | ((frameHeader.get(4) & 0xFF) << 8) | (frameHeader.get(5) & 0xFF);
+            } else {
+                id = new String(frameHeader.array(), 0, 4, StandardCharsets.ISO_8859_1);
+                int raw = frameHeader.getInt(4);
+                size = version == 4 ? syncSafe(raw) : raw & 0xFFFFFFFFL;
+            }
+            long body = position + headerSize;
+            if (size <= 0 || body + size > end) {
+                break;
+            }
+
+            if (id.equals("TIT2") || id.equals("TT2")) {
+                tags.title = readTextFrame(channel, body, size);
+            } else if (id.equals("TPE1") || id.equals("TP1")) {
+                tags.artist = readTextFrame(channel, body, size);
+            } else if (id.equals("TALB") || id.equals("TAL")) {
+                tags.album = readTextFrame(channel, body, size);
+            }
+            position = body + size;
+        }
+    }
+
+    //Primer byte: codificación (0 Latin-1, 1 UTF-16 con BOM, 2 UTF-16BE, 3 UTF-8); con varios valores se toma el primero
+    private static String readTextFrame(FileChannel channel, long body, long size) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate((int) Math.min(size, MAX_TEXT_FRAME_BYTES));
+        WavFile.readFully(channel, frame, body);
+        int encoding = frame.get(0);
+        Charset charset;
+        switch (encoding) {
+            case 1:
+                charset = StandardCharsets.UTF_16;
+                break;
+            case 2:
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+                charset = StandardCharsets.UTF_8;
+                break;
+            default:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+        }
+        String text = new String(frame.array(), 1, frame.limit() - 1, charset);
+        int nul = text.indexOf('\0');
+        return clip(nul >= 0 ? text.substring(0, nul) : text);
+    }
+
+    private static long syncSafe(int value) {
+        return ((value & 0x7F000000) >> 3) | ((value & 0x7F0000) >> 2) | ((value & 0x7F00) >> 1) | (value & 0x7F);
+    }
+
+    // ============ OTROS FORMATOS ============
+
+    //AudioSystem también lee solo la cabecera; algunos lectores instalados traen etiquetas en las propiedades
+    private static Track readOther(File file) throws IOException, UnsupportedAudioFileException {
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+        AudioFormat format = fileFormat.getFormat();
+        long duration = -1;
+        Object micros = fileFormat.getProperty("duration");
+        if (micros instanceof Long) {
+            duration = (Long) micros;
+        } else if (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED && format.getFrameRate() > 0) {
+            duration = (long) (fileFormat.getFrameLength() * 1_000_000L / (double) format.getFrameRate());
+        }
+        return new Track(file, file.length(), file.lastModified(),
+                property(fileFormat, "title"), property(fileFormat, "author"), property(fileFormat, "album"),
+                duration, format.getSampleRate(), format.getChannels(), format.getSampleSizeInBits());
+    }
+
+    private static String property(AudioFileFormat format, String key) {
+        Object value = format.getProperty(key);
+        return value == null ? "" : clip(value.toString());
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Los textos de INFO no declaran codificación: se prueba UTF-8 y si no es válido se toma Latin-1
+    private static String decodeLegacy(ByteBuffer buffer, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && buffer.get(end) != 0) {
+            end++;
+        }
+        ByteBuffer text = buffer.duplicate();
+        text.limit(end).position(offset);
+        try {
+            CharBuffer decoded = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(text);
+            return clip(decoded.toString());
+        } catch (CharacterCodingException e) {
+            text.position(offset);
+            return clip(StandardCharsets.ISO_8859_1.decode(text).toString());
+        }
+    }
+
+    //Recorta espacios y deja la etiqueta en MAX_TAG_CHARS sin partir un par de surrogates
+    private static String clip(String text) {
+        String trimmed = text.trim();
+        if (trimmed.length() <= MAX_TAG_CHARS) {
+            return trimmed;
+        }
+        int end = Character.isHighSurrogate(trimmed.charAt(MAX_TAG_CHARS - 1)) ? MAX_TAG_CHARS - 1 : MAX_TAG_CHARS;
+        return trimmed.substring(0, end).trim();
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Etiquetas encontradas en una fuente, null si no venía
+    private static final class Tags {
+        String title;
+        String artist;
+        String album;
+    }
+}
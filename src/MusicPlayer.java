@@ -3,21 +3,55 @@ import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MusicPlayer {
     //Atributos
 
-    private  Clip clip;
+    //Presupuesto de la caché de PCM en megabytes, se puede cambiar con -Dmusicplayer.cache.mb
+    private static final long PCM_CACHE_MB = Long.getLong("musicplayer.cache.mb", 512);
+    //Fundido cruzado entre canciones en milisegundos, 0 lo desactiva; se puede cambiar con -Dmusicplayer.crossfade.ms
+    private static final int CROSSFADE_MS = Integer.getInteger("musicplayer.crossfade.ms", 0);
+    //Formato fijo de la salida; con -Dmusicplayer.output.rate=0 la línea usa el formato de cada canción
+    private static final int OUTPUT_RATE = Integer.getInteger("musicplayer.output.rate", 48000);
+    private static final int OUTPUT_BITS = Integer.getInteger("musicplayer.output.bits", 16);
+    private static final int OUTPUT_CHANNELS = Integer.getInteger("musicplayer.output.channels", 2);
+    //Salida del audio: line (tarjeta de sonido), null, null-realtime o wav:<archivo>; se cambia con -Dmusicplayer.sink
+    private static final String SINK = System.getProperty("musicplayer.sink", "line");
+    //Semilla del modo aleatorio; con -Dmusicplayer.shuffle.seed el orden se repite entre ejecuciones
+    private static final long SHUFFLE_SEED = Long.getLong("musicplayer.shuffle.seed", System.nanoTime());
+    //Canciones que recuerda el historial para ir hacia atrás, se puede cambiar con -Dmusicplayer.history.size
+    private static final int HISTORY_SIZE = Integer.getInteger("musicplayer.history.size", 1000);
+    //Archivo donde se guarda el volumen medido de cada canción, se puede cambiar con -Dmusicplayer.loudness.cache
+    private static final String LOUDNESS_CACHE = System.getProperty("musicplayer.loudness.cache",
+            System.getProperty("user.home") + File.separator + ".musicplayer" + File.separator + "loudness.cache");
+    private static final String METADATA_CACHE = System.getProperty("musicplayer.metadata.cache",
+            System.getProperty("user.home") + File.separator + ".musicplayer" + File.separator + "metadata.cache");
+
+    //Motor de reproducción por bloques, reemplaza al Clip que decodificaba todo el archivo en memoria
+    private final PlaybackEngine engine;
+    //Caché fuera del heap con el audio ya decodificado de las canciones recientes y próximas
+    private final PcmCache pcmCache;
+    //Volumen medido de la biblioteca, cada canción suena normalizada a un mismo nivel
+    private final LoudnessLibrary loudness;
+    //Formato, duración y etiquetas de cada canción, leídos de la cabecera
+    private final MetadataLibrary metadata;
     //Indica si la reproducción está en pausa
     private boolean paused = false;
     //Microsegundo donde se pausó
     private long pausePosition = 0;
-    //Número de canciones en la cola de reproducción
-    private int queuedCount = 0;
-    //Evita eventos duplicados al detener
-    private boolean ignoreStopEvent = false;
+    //Canciones pedidas que suenan antes de seguir con la playlist
+    private final UpNextQueue upNext = new UpNextQueue();
+    //La canción actual salió de la cola; currentIndex sigue en la canción de la playlist donde se quedó
+    private boolean playingQueued = false;
     private final UIInformation info;
     // Archivo actual de audio cargado
     private File currentFile;
@@ -27,48 +61,135 @@ public class MusicPlayer {
     private boolean shuffleMode = false;
 
     //Playlist principal - Lista de archivos de audio disponibles
-    private List <File> playlist;
-    // Busca el índice de la canción actual en nuestro ArrayList playlist
+    private Playlist playlist;
+    // Busca el índice de la canción actual en nuestra playlist; -1 solo si se quitó de la lista estando primera
     private  int currentIndex = 0;
 
-    //Copia de seguridad de la playlist, usada para restaurar al desactivar modo aleatorio
-    private List<File> originalPlaylistOrder;
-    private int originalCurrentIndex;
+    //Orden del modo aleatorio, se calcula sobre la marcha sin tocar el orden de la playlist
+    private ShuffleOrder shuffle = new ShuffleOrder(SHUFFLE_SEED);
+
+    //Índice de la canción que quedó precargada en el motor, -1 si no hay ninguna
+    private int preloadedIndex = -1;
+    //La canción precargada es la primera de la cola y no una de la playlist
+    private boolean preloadedQueued = false;
+    //La canción precargada es la siguiente del historial, después de haber ido hacia atrás
+    private boolean preloadedFromHistory = false;
+    //Lo que realmente sonó, anterior/siguiente lo recorren en lugar de calcular índices
+    private final PlaybackHistory history = new PlaybackHistory(HISTORY_SIZE);
+    //Carga que viene de recorrer el historial, no se vuelve a registrar al terminar
+    private long navigationSequence = -1;
+
+    //Hilo de carga: abrir archivos (lentos o en red) nunca bloquea la interfaz
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "track-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Hilo que coordina el análisis de volumen de la biblioteca, el trabajo pesado lo reparte entre todos los núcleos
+    private final ExecutorService analyzer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "loudness-library");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Cada carga nueva deja obsoletas las anteriores, solo la última llega a abrir el archivo
+    private final AtomicLong loadSequence = new AtomicLong();
+    //Número de secuencia del último close(), para cerrar lo que una carga obsoleta alcanzó a abrir
+    private volatile long closedSequence = -1;
+    private CompletableFuture<File> pendingLoad;
+    //Canción que se está cargando en segundo plano, null si no hay carga en curso
+    private File loadingFile;
+    //Si se pidió reproducir mientras la canción todavía se cargaba
+    private boolean playWhenLoaded = false;
+    //Última foto del estado; solo se escribe en el hilo de la interfaz, cualquier hilo la puede leer
+    private volatile PlayerState state = PlayerState.EMPTY;
+    //Avisos de estado y de posición para la ventana, sin que tenga que preguntar cada tanto
+    private final PlayerEvents events;
+
+    //Avisos del reproductor, llegan en el hilo de la interfaz después de publicar un estado nuevo;
+    //varias publicaciones seguidas llegan en un solo aviso
+    public interface Listener {
+        //changes son los cambios de la playlist entre previous y state, en orden; vacío si la playlist no cambió
+        void stateChanged(PlayerState previous, PlayerState state, List<PlaylistChange> changes);
+    }
+
+    //Posición de la canción actual en microsegundos; mientras suena llega a la frecuencia de la pantalla,
+    //y una vez más al cambiar de canción, pausar, detener o mover la posición
+    public interface PositionListener {
+        void positionChanged(long positionMicros, long lengthMicros);
+    }
 
-    //Constructor
+    //Constructor, la salida se elige con -Dmusicplayer.sink
     public MusicPlayer(UIInformation info){
+        this(info, sinkFromProperty());
+    }
+
+    //Constructor con una salida propia, por ejemplo NullSink para medir el reproductor sin tarjeta de sonido
+    public MusicPlayer(UIInformation info, AudioSink.Factory sinks){
         this.info = info;
-        this.playlist = new ArrayList<>();
+        this.playlist = new Playlist();
+        this.pcmCache = new PcmCache(PCM_CACHE_MB * 1024 * 1024);
+        this.loudness = new LoudnessLibrary(new File(LOUDNESS_CACHE));
+        this.metadata = new MetadataLibrary(new File(METADATA_CACHE));
+        //Los avisos llegan desde los hilos de audio; el estado del reproductor (paused, currentIndex, cola...)
+        //solo se modifica en el hilo de la interfaz, por eso cada aviso se reenvía con invokeLater
+        this.engine = new PlaybackEngine(new PlaybackEngine.Listener() {
+            //Detector automático de fin de canción, solo se dispara cuando la pista termina sola
+            @Override
+            public void trackFinished() {
+                SwingUtilities.invokeLater(() -> {
+                    if (!paused) {
+                        next();
+                    }
+                });
+            }
+
+            //El motor ya encadenó la siguiente canción, aquí solo se actualiza el estado
+            @Override
+            public void trackAdvanced(File file) {
+                SwingUtilities.invokeLater(() -> onTrackAdvanced(file));
+            }
+        }, pcmCache, loudness, sinks);
+        this.events = new PlayerEvents(state, this::getCurrentTime, this::getTotalTime);
+        engine.setCrossfade(CROSSFADE_MS, PlaybackEngine.FadeCurve.EQUAL_POWER);
+        if (OUTPUT_RATE > 0) {
+            //Todas las canciones suenan por una misma línea, sin reabrirla entre formatos distintos
+            engine.setOutputFormat(new AudioFormat(OUTPUT_RATE, OUTPUT_BITS, OUTPUT_CHANNELS, true, false));
+        }
+    }
+
+    //Salida elegida con -Dmusicplayer.sink; null deja la tarjeta de sonido del motor
+    private static AudioSink.Factory sinkFromProperty() {
+        if (SINK.equals("null")) {
+            return NullSink.maxSpeed();
+        }
+        if (SINK.equals("null-realtime")) {
+            return NullSink.realtime();
+        }
+        if (SINK.startsWith("wav:")) {
+            return new WavFileSink.Recorder(new File(SINK.substring(4)));
+        }
+        return null;
     }
 
     // Método para asignar la posición de la canción según la barra de progreso
     public void setPosition(long microseconds) {
-        if (clip != null && clip.isOpen()) {
+        if (engine.isOpen()) {
             try {
                 //Obtenemos la posición actual de reproducción en microsegundos
-                long currentPos = clip.getMicrosecondPosition();
+                long currentPos = engine.getPositionMicros();
                 // Cambiamos si hay diferencia mayor a 0.1 segundos
                 if (Math.abs(currentPos - microseconds) > 100000) {
 
-                    boolean wasPlaying = clip.isRunning();
-
-                    //Si se estaba reproduciendo lo detenemos temporalmente
-                    if (wasPlaying) {
-                        clip.stop();
-                    }
-
-                    //Aquí ocurre la magia, cambiamos la posición del clip
-                    clip.setMicrosecondPosition(microseconds);
+                    //Aquí ocurre la magia, el motor relee el archivo desde la nueva posición
+                    //y reanuda solo si se estaba reproduciendo
+                    engine.seek(microseconds);
+                    //En pausa no corre el Timer de posición, la barra se actualiza con este aviso
+                    events.publishPosition();
 
                     //Si estaba pausada, actualizamos la posición de pausa
                     if (paused) {
                         pausePosition = microseconds;
                     }
-
-                    // Reanudar solo si estaba reproduciendo y no está en pausa
-                    if (wasPlaying && !paused) {
-                        clip.start();
-                    }
                 }
 
             } catch (Exception e) {
@@ -80,16 +201,16 @@ public class MusicPlayer {
 
     // Obtener los segundos actuales, usado para actualizar la interfaz, actualizar la barra de progreso e.t.c
     public long getCurrentTime(){
-        if (clip != null && clip.isOpen()){
-            return clip.getMicrosecondPosition();
+        if (engine.isOpen()){
+            return engine.getPositionMicros();
         }
         return 0;
     }
 
     //Similar a la anterior, pero con el tiempo total en vez del tiempo actual
     public long getTotalTime(){
-        if (clip != null && clip.isOpen()){
-            return clip.getMicrosecondLength();
+        if (engine.isOpen()){
+            return engine.getLengthMicros();
         }
         return 0;
     }
@@ -107,59 +228,39 @@ public class MusicPlayer {
     public void toggleShuffleMode() {
         this.shuffleMode = !this.shuffleMode;
 
+        //La playlist no se reordena ni se copia: el orden aleatorio se calcula canción por canción
         if (shuffleMode) {
-            // Al activar shuffle: guardar orden actual
-            originalPlaylistOrder = new ArrayList<>(playlist);
-            originalCurrentIndex = currentIndex;
-
-            // Mezclar la playlist (excepto la canción actual)
-            if (playlist.size() > 1) {
-                List<File> remainingSongs = new ArrayList<>();
-                File currentSong = playlist.get(currentIndex);
-
-                // Separar la canción actual del resto
-                for (int i = 0; i < playlist.size(); i++) {
-                    if (i != currentIndex) {
-                        remainingSongs.add(playlist.get(i));
-                    }
-                }
-
-                // Mezclar las demás canciones
-                Collections.shuffle(remainingSongs);
-
-                // Reconstruir playlist: canción actual + resto mezclado
-                playlist.clear();
-                playlist.add(currentSong);
-                playlist.addAll(remainingSongs);
-                currentIndex = 0; // La canción actual queda en posición 0
-            }
-        } else {
-            // Al desactivar shuffle: restaurar orden original
-            if (originalPlaylistOrder != null && !originalPlaylistOrder.isEmpty()) {
-                playlist.clear();
-                playlist.addAll(originalPlaylistOrder);
-
-                // Encontrar la posición de la canción actual en el orden original
-                File currentSong = getCurrentFile();
-                if (currentSong != null) {
-                    currentIndex = playlist.indexOf(currentSong);
-                    if (currentIndex == -1) currentIndex = originalCurrentIndex;
-                }
-            }
+            //Un ciclo nuevo que empieza después de la canción actual, sin repetir ninguna hasta escucharlas todas
+            shuffle.start(playlist, currentIndex);
         }
+
+        //El orden cambió, la siguiente canción también
+        schedulePreload();
+        publishState();
     }
 
-    //Carga de archivos
+    //Carga de archivos, la apertura ocurre en segundo plano
     public  void load(File audioFile){
+        loadAsync(audioFile, false);
+    }
+
+    //Igual que loadAsync(File, boolean), a partir de una pista de la biblioteca
+    public CompletableFuture<File> loadAsync(Track track, boolean autoPlay){
+        return loadAsync(track == null ? null : track.getFile(), autoPlay);
+    }
+
+    //Carga asíncrona: devuelve un future que se completa en el hilo de la interfaz cuando la canción está lista,
+    //o se cancela si otra carga la reemplazó antes de terminar
+    public CompletableFuture<File> loadAsync(File audioFile, boolean autoPlay){
         if (audioFile == null) {
             info.showException("Archivo no válido",
                     "No se proporcionó ningún archivo de audio");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         // Si la playlist está vacía inicializamos una nueva
         if (playlist == null){
-            playlist = new ArrayList<>();
+            playlist = new Playlist();
         }
 
         // ============ GESTIÓN DE PLAYLIST INTELIGENTE ============
@@ -176,70 +277,118 @@ public class MusicPlayer {
         }else{
             currentIndex = idx;
         }
+        playingQueued = false;
 
-        // ============ CARGA DEL AUDIO ============
+        return startLoad(audioFile, autoPlay);
+    }
 
-        try (AudioInputStream audioStream = AudioSystem.getAudioInputStream(audioFile)) {
+    // ============ CARGA DEL AUDIO ============
 
-            //Libera los recursos anteriores
-            if (clip != null && clip.isOpen()){
-                clip.close();
-                clip = null;
+    //Abre la canción en el hilo de carga sin tocar la playlist
+    private CompletableFuture<File> startLoad(File audioFile, boolean autoPlay){
+        //La carga anterior que aún no terminó ya no sirve
+        long sequence = loadSequence.incrementAndGet();
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+        }
+        CompletableFuture<File> result = new CompletableFuture<>();
+        pendingLoad = result;
+        loadingFile = audioFile;
+        playWhenLoaded = autoPlay;
+        publishState();
+
+        loader.execute(() -> {
+            //Si mientras esperaba en la fila llegó otra carga, esta ni siquiera abre el archivo
+            if (sequence != loadSequence.get()) {
+                return;
             }
+            try {
+                //Libera los recursos anteriores y abre la nueva pista sin decodificarla completa,
+                //el audio se va leyendo por bloques mientras suena
+                engine.open(audioFile);
 
-            //Crea un nuevo clip y carga el audio
-            clip = AudioSystem.getClip();
-            clip.open(audioStream);
+                //Si se cerró el reproductor mientras se abría, no dejamos la línea abierta
+                if (closedSequence == loadSequence.get()) {
+                    engine.close();
+                }
+                SwingUtilities.invokeLater(() -> finishLoad(sequence, audioFile, result));
+            } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
+                SwingUtilities.invokeLater(() -> failLoad(sequence, audioFile, e, result));
+            }
+        });
+        return result;
+    }
 
-            //Actualiza el estado
-            currentFile = audioFile;
-            paused = false;
-            pausePosition = 0;
+    //La canción quedó abierta, se actualiza el estado en el hilo de la interfaz
+    private void finishLoad(long sequence, File audioFile, CompletableFuture<File> result){
+        if (sequence != loadSequence.get()) {
+            result.cancel(false);
+            return;
+        }
+        pendingLoad = null;
+        loadingFile = null;
 
-            //Detector automático de fin de canción
-            clip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP) {
-                    if (ignoreStopEvent) {
-                        ignoreStopEvent = false; // Limpia la bandera para evitar stops duplicados
-                        return;
-                    }
+        //Actualiza el estado
+        currentFile = audioFile;
+        paused = false;
+        pausePosition = 0;
 
-                    //Verifica si llegó al final (ultimo segundo en este caso)
-                    long clipLength = clip.getMicrosecondLength();
-                    long currentPos = clip.getMicrosecondPosition();
-                    boolean finished = Math.abs(clipLength - currentPos) < 1_000_000; // 1 segundo
+        if (sequence != navigationSequence) {
+            recordPlay(audioFile);
+        }
 
-                    //Si terminó naturalmente pasa a la siguiente
-                    if (!paused && finished) {
-                        SwingUtilities.invokeLater(() -> next());
-                    }
-                }
-            });
+        //Dejamos lista la siguiente canción para que el cambio sea sin silencio
+        schedulePreload();
 
-        } catch (UnsupportedAudioFileException e) {
+        if (playWhenLoaded) {
+            playWhenLoaded = false;
+            play();
+        }
+        publishState();
+        result.complete(audioFile);
+    }
+
+    private void failLoad(long sequence, File audioFile, Exception e, CompletableFuture<File> result){
+        if (sequence != loadSequence.get()) {
+            result.cancel(false);
+            return;
+        }
+        pendingLoad = null;
+        loadingFile = null;
+        playWhenLoaded = false;
+        publishState();
+
+        if (e instanceof UnsupportedAudioFileException) {
             info.showException(
                     "Archivo no soportado",
                     "El formato del archivo " + audioFile.getName() + " no es compatible",
                     "Error de audio"
             );
-        } catch (IOException e) {
+        } else if (e instanceof LineUnavailableException) {
             info.showException(
-                    "Error de lectura",
-                    "Ocurrió un problema al leer el archivo",
+                    "Error de audio",
+                    "No se pudo acceder al dispositivo de sonido",
                     "Error del sistema"
             );
-        } catch (LineUnavailableException e) {
+        } else {
             info.showException(
-                    "Error de audio",
-                    "No se pudo acceder al dispositivo de sonido",
+                    "Error de lectura",
+                    "Ocurrió un problema al leer el archivo",
                     "Error del sistema"
             );
         }
+        result.completeExceptionally(e);
     }
 
     //Reproducir o reanudar una canción
     public void play(){
-        if (clip == null){
+        //Si la canción aún se está cargando, se reproducirá apenas termine
+        if (loadingFile != null){
+            playWhenLoaded = true;
+            return;
+        }
+
+        if (!engine.isOpen()){
             info.showException(
                     "No hay ninguna canción cargada",
                     "Cargue una canción antes de reproducir"
@@ -247,23 +396,16 @@ public class MusicPlayer {
             return;
         }
 
-        if (clip.isRunning()){
+        if (engine.isRunning()){
             return;
         }
 
         try {
-            //Bandera de seguridad, indica que el próximo stop debe ser ignorado, así las pausas no se confunden con fin de canción
-            ignoreStopEvent = true;
-
-            //Si estaba pausado se reanuda desde donde iba la canción
-            if (paused){
-                clip.setMicrosecondPosition(pausePosition);
-            }
-
-            //Inicia la canción
-            clip.start();
+            //Inicia la canción, si estaba pausada se reanuda desde donde iba porque la línea conserva su posición
+            engine.play();
             //Ya no está en pausa
             paused = false;
+            publishState();
 
         }catch (Exception e){
             info.showException(
@@ -276,7 +418,12 @@ public class MusicPlayer {
 
     //Pausar canciones
     public void pause(){
-        if (clip == null){
+        if (loadingFile != null){
+            playWhenLoaded = false;
+            return;
+        }
+
+        if (!engine.isOpen()){
             info.showException(
                     "No se puede pausar",
                     "No hay ninguna canción cargada"
@@ -285,14 +432,11 @@ public class MusicPlayer {
         }
 
         //Solo pausamos si se está reproduciendo algo
-        if (clip.isRunning()){
-            //La bandera pasa a true porque el próximo stop es intencional (debido a que pausamos)
-            ignoreStopEvent = true;
-
+        if (engine.isRunning()){
             //Guardamos la posición donde quedó la pausa
-            pausePosition = clip.getMicrosecondPosition();
-            //Detenemos el clip
-            clip.stop();
+            pausePosition = engine.getPositionMicros();
+            //Detenemos el motor, una pausa nunca se confunde con fin de canción
+            engine.pause();
             // Cambiamos a modo pausado
             paused = true;
 
@@ -302,83 +446,79 @@ public class MusicPlayer {
             long seconds = totalSeconds % 60;
 
             pausedTimeText = String.format("%02d:%02d", minutes, seconds);
+            publishState();
         }
     }
 
     //Detener canciones
     public void stop (){
-        if (clip == null || !clip.isOpen()){
+        playWhenLoaded = false;
+        if (!engine.isOpen()){
             return;
         }
 
-        if (clip !=null){
-            //Aquí es, false debido a que stop si dispara el evento final de la canción
-            ignoreStopEvent = false;
-            //Se detiene la canción
-            clip.stop();
-            //La posición de reproducción es 0, o sea el inicio
-            clip.setMicrosecondPosition(0);
-            //No pausamos, está detenido realmente
-            paused = false;
-            //La posición de pausa es 0 por el mismo motivo
-            pausePosition = 0;
-        }
+        //Se detiene la canción y la posición de reproducción vuelve a 0, o sea el inicio
+        engine.stop();
+        //No pausamos, está detenido realmente
+        paused = false;
+        //La posición de pausa es 0 por el mismo motivo
+        pausePosition = 0;
+        publishState();
     }
 
     //Reiniciar canción
     public void restart(){
-        if (clip == null || !clip.isOpen()){
+        if (!engine.isOpen()){
             return;
         }
 
-        if (clip != null){
-            //Aquí es, false debido a que stop si dispara el evento final de la canción
-            ignoreStopEvent = false;
-            //Se detiene la canción
-            clip.stop();
-            //La posición de reproducción es 0, o sea el inicio
-            clip.setMicrosecondPosition(0);
-            //La posición de pausa es 0 por el mismo motivo
-            pausePosition = 0;
-            //La canción no se pausa (se reproduce automáticamente de hecho)
-            paused = false;
-            //Aquí se reproduce automáticamente
-            clip.start();
-        }
+        //Se detiene la canción y la posición de reproducción vuelve a 0, o sea el inicio
+        engine.stop();
+        //La posición de pausa es 0 por el mismo motivo
+        pausePosition = 0;
+        //La canción no se pausa (se reproduce automáticamente de hecho)
+        paused = false;
+        //Aquí se reproduce automáticamente
+        engine.play();
+        publishState();
     }
 
-    //Agregar a la cola (al inicio)
+    //Agregar a la cola, suena después de la actual y de lo que ya estaba pedido
     public void addToQueue(File file){
         if (file == null){
             return;
         }
 
-        //Creamos una nueva playlist si no existe ninguna
-        if (playlist == null){
-            playlist = new ArrayList<>();
-        }
-
-        //Guardamos la posición de la próxima canción
-        int insertIndex = currentIndex + 1;
-
-        //Validamos los límites
-        if (insertIndex > playlist.size()){
-            //Si excede ponemos al final
-            insertIndex = playlist.size();
-        }
-
-        //Método add para agregar el archivo a la queue en la posición calculada
-        playlist.add(insertIndex, file);
-        //Llevamos la cuenta de cuantas canciones hay en la cola
-        queuedCount++;
+        upNext.playLast(file);
+        schedulePreload();
+        publishState();
 
         info.showSuccess(
                 "Agregada a la cola",
-                file.getName() + " se reproducirá después de la actual",
+                getTrack(file).getDisplayName() + " se reproducirá después de la actual",
                 "Cola de reproducción"
         );
     }
 
+    public void addToQueue(Track track){
+        addToQueue(track == null ? null : track.getFile());
+    }
+
+    //Agregar al frente de la cola, suena apenas termine la actual
+    public void playNext(File file){
+        if (file == null){
+            return;
+        }
+
+        upNext.playNext(file);
+        schedulePreload();
+        publishState();
+    }
+
+    public void playNext(Track track){
+        playNext(track == null ? null : track.getFile());
+    }
+
     //Agregar a la pila (al final)
     public  void addToPlaylist(File file){
         if (file == null){
@@ -387,22 +527,91 @@ public class MusicPlayer {
 
         //Creamos una playlist si no hay ninguna
         if (playlist == null){
-            playlist = new ArrayList<>();
+            playlist = new Playlist();
         }
 
         //Agregamos al final
         playlist.add(file);
+        schedulePreload();
+        publishState();
 
         info.showSuccess(
                 "Agregada a la playlist",
-                file.getName() + " se añadió al final de la fila",
+                getTrack(file).getDisplayName() + " se añadió al final de la fila",
                 "Fila de reproducción"
         );
     }
 
-    //Eliminar siguiente canción
+    public void addToPlaylist(Track track){
+        addToPlaylist(track == null ? null : track.getFile());
+    }
+
+    //Agrega varias canciones al final de una sola vez, sin avisos
+    public void addAllToPlaylist(List<File> files){
+        if (files == null || files.isEmpty()){
+            return;
+        }
+        playlist.addAll(files);
+        schedulePreload();
+        publishState();
+    }
+
+    //Saca de la playlist y de la cola las canciones que se borraron de la biblioteca, sin avisos
+    //La que está sonando sigue hasta terminar; después se continúa desde donde estaba en la lista
+    //Su volumen medido también se olvida, en el hilo del análisis porque reescribe la caché
+    public void removeFromLibrary(Collection<File> files){
+        if (files == null || files.isEmpty()){
+            return;
+        }
+        List<File> gone = new ArrayList<>(files);
+        analyzer.execute(() -> loudness.forget(gone));
+        //Las posiciones se buscan por el índice de pistas de la playlist, sin recorrerla entera
+        Set<Integer> removed = new HashSet<>();
+        int[] positions = new int[16];
+        int count = 0;
+        for (File file : files){
+            int id = playlist.trackId(file);
+            if (id >= 0 && removed.add(id)){
+                int[] found = playlist.indexesOf(id);
+                if (count + found.length > positions.length){
+                    positions = Arrays.copyOf(positions, Math.max(count + found.length, positions.length * 2));
+                }
+                System.arraycopy(found, 0, positions, count, found.length);
+                count += found.length;
+            }
+        }
+        Arrays.sort(positions, 0, count);
+        boolean changed = upNext.removeAll(files) || count > 0;
+        //De atrás hacia adelante, así las posiciones que faltan quitar no se corren
+        for (int k = count - 1; k >= 0; k--){
+            int i = positions[k];
+            playlist.remove(i);
+            if (i == currentIndex && !playingQueued){
+                //La actual ya no está en la lista: suena como si viniera de la cola y next() sigue con la de después
+                playingQueued = true;
+            }
+            //currentIndex queda en la anterior a la quitada (-1 si era la primera), así currentIndex + 1 es la que sigue
+            if (i <= currentIndex){
+                currentIndex--;
+            }
+        }
+        if (!changed){
+            return;
+        }
+        //-1 solo si la actual era la primera o la lista quedó vacía; siempre con playingQueued, así nadie la marca
+        //y next() sigue con la 0
+        currentIndex = Math.min(currentIndex, playlist.size() - 1);
+        if (currentIndex < 0){
+            playingQueued = true;
+        }
+        //El ciclo aleatorio no se reinicia: ShuffleOrder ve el cambio y sigue sin repetir las que ya sonaron
+        schedulePreload();
+        publishState();
+    }
+
+    //Eliminar siguiente canción de la cola
     public void clearQueue() {
-        if (queuedCount <= 0 || playlist == null) {
+        if (upNext.isEmpty()) {
             info.showException(
                     "Cola vacía",
                     "No hay canciones en la cola para eliminar",
@@ -411,20 +620,16 @@ public class MusicPlayer {
             return;
         }
 
-        //Calculamos la posición de la siguiente canción a eliminar
-        int removeIndex = currentIndex + 1;
-        //verificamos que el índice esté dentro de los límites
-        if (removeIndex < playlist.size()){
-            //Removemos el archivo que se encuentre en el índice calculado y decrementamos la cantidad de canciones en la cola
-            File removed = playlist.remove(removeIndex);
-            queuedCount--;
+        //Quitamos la primera canción pedida
+        File removed = upNext.poll();
+        schedulePreload();
+        publishState();
 
-            info.showSuccess(
-                    "Canción removida de la cola",
-                    removed.getName() + " fue eliminada de la parte superior de la cola",
-                    "Cola de reproducción"
-            );
-        }
+        info.showSuccess(
+                "Canción removida de la cola",
+                getTrack(removed).getDisplayName() + " fue eliminada de la parte superior de la cola",
+                "Cola de reproducción"
+        );
     }
 
     //Eliminar toda la playlist
@@ -437,21 +642,22 @@ public class MusicPlayer {
             return;
         }
 
-        //Primero que todo se detiene el clip
+        //Primero que todo se detiene la reproducción
         stop();
-        //Cerramos el clip
+        //Cerramos el motor
         close();
-        //Quitamos todos los elementos de la playlist
+        //Quitamos todos los elementos de la playlist y de la cola
         playlist.clear();
+        upNext.clear();
+        history.clear();
+        //Con la lista vacía termina también el ciclo aleatorio
+        shuffle.start(playlist, -1);
+        playingQueued = false;
         //Asignamos current index a 0 porque no hay elementos
         currentIndex = 0;
         //El archivo actual es nulo por la misma razón
         currentFile = null;
-
-        //Si la copia de seguridad no está vacía la limpiamos también
-        if (originalPlaylistOrder != null) {
-            originalPlaylistOrder.clear();
-        }
+        publishState();
 
         info.showSuccess(
                 "Playlist eliminada",
@@ -462,107 +668,240 @@ public class MusicPlayer {
 
     //Pasar a la siguiente canción
     public void next(){
+        nextAsync();
+    }
+
+    //Igual que next(), pero devuelve el future de la carga; pulsaciones rápidas cancelan las cargas intermedias
+    public CompletableFuture<File> nextAsync(){
+
+        //Si se volvió atrás, primero se rehace el camino que ya se había escuchado
+        if (history.canGoForward()){
+            return playFromHistory(history.forward());
+        }
+
+        //Lo pedido en la cola tiene prioridad sobre la playlist, aleatoria o no
+        if (!upNext.isEmpty()){
+            File queued = upNext.poll();
+            playingQueued = true;
+            paused = false;
+            pausePosition = 0;
+            return startLoad(queued, true);
+        }
 
         if (playlist == null || playlist.isEmpty()){
             info.showException(
                     "Sin canciones",
                     "No hay una lista cargada"
             );
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        //Primer caso, modo aleatorio activado
+        //Calculamos cuál sigue, el mismo índice que se usó para precargar; en modo aleatorio además avanza el ciclo
+        int nextIndex = shuffleMode && playlist.size() > 1 ? shuffle.next(playlist, currentIndex) : peekNextIndex();
+
+        //Sí se llega al final de la lista detener la canción
+        if (nextIndex < 0){
+            stop();
+            //Mantenemos el último índice válido
+            currentIndex = Math.max(0, playlist.size() - 1);
+            publishState();
+            return CompletableFuture.completedFuture(null);
+        }
+        currentIndex = nextIndex;
+        playingQueued = false;
+
+        //Salimos del modo de pausa
+        paused = false;
+        //Posición de pausa al inicio
+        pausePosition = 0;
+        //Cargamos el archivo de audio del current index y se reproduce apenas esté listo
+        return startLoad(playlist.get(currentIndex), true);
+    }
+
+    //Calcula el índice que elegirá next() sin cambiar de canción, -1 si se llegó al final de la lista
+    private int peekNextIndex(){
+        if (playlist == null || playlist.isEmpty()){
+            return -1;
+        }
+
+        //Primer caso, modo aleatorio activado: la siguiente del ciclo, sin sacarla todavía
         if (shuffleMode) {
-            // Modo aleatorio: seleccionar canción random
-            if (playlist.size() > 1) {
-                //Variable para calcular un índice aleatorio
-                int randomIndex;
-                do {
-                    //Calculamos un índice aleatorio
-                    randomIndex = (int) (Math.random() * playlist.size());
-                    //Verificamos que la variable randomIndex no sea mayor a currentIndex ni al tamaño de la playlist
-                } while (randomIndex == currentIndex && playlist.size() > 1);
-                //El índice actual se cambia por el índice aleatorio previamente calculado
-                currentIndex = randomIndex;
-            } else {
-                currentIndex = 0;
-            }
+            return playlist.size() > 1 ? shuffle.peek(playlist, currentIndex) : 0;
         }
         //Segundo caso si el modo bucle está activado
-        else if (repeatMode) {
+        if (repeatMode) {
             //Al llegar al final volvemos al inicio, ejemplo si size = 3 y current = 2 (2 + 1) % 3 = 0
-            currentIndex = (currentIndex + 1) % playlist.size();
+            return (currentIndex + 1) % playlist.size();
+        }
+        //Tercer caso flujo normal, la siguiente canción si existe
+        return currentIndex + 1 < playlist.size() ? currentIndex + 1 : -1;
+    }
 
-            //Tercer caso flujo normal
+    //Precarga en el motor la canción que sigue, o la descarta si ya no hay siguiente
+    private void schedulePreload(){
+        if (!engine.isOpen()){
+            preloadedIndex = -1;
+            preloadedQueued = false;
+            preloadedFromHistory = false;
+            return;
+        }
+        File upcoming;
+        preloadedFromHistory = history.canGoForward();
+        preloadedQueued = !preloadedFromHistory && !upNext.isEmpty();
+        if (preloadedFromHistory){
+            preloadedIndex = -1;
+            upcoming = history.getFile(history.getCursor() - 1);
+        } else if (preloadedQueued){
+            preloadedIndex = -1;
+            upcoming = upNext.peek();
         } else {
-            //Avanzamos a la canción con el siguiente índice
-            currentIndex++;
-
-            //Sí se llega al final de la lista detener la canción
-            if (currentIndex >= playlist.size()){
-                stop();
-                //Mantenemos el último índice válido
-                currentIndex = Math.max(0, playlist.size() - 1);
-                return;
+            preloadedIndex = peekNextIndex();
+            upcoming = preloadedIndex >= 0 ? playlist.get(preloadedIndex) : null;
+        }
+        //Abrir la siguiente también lee del disco, se hace en el hilo de carga detrás de la carga actual
+        loader.execute(() -> engine.preload(upcoming));
+    }
+
+    //La canción precargada empezó a sonar, replicamos lo que haría next() pero sin tocar el audio
+    private void onTrackAdvanced(File file){
+        if (preloadedFromHistory && history.canGoForward() && file.equals(history.getFile(history.getCursor() - 1))){
+            //Siguió el camino del historial, no es una reproducción nueva
+            restoreHistoryPosition(history.forward());
+            currentFile = file;
+            paused = false;
+            pausePosition = 0;
+            schedulePreload();
+            publishState();
+            return;
+        }
+        if (preloadedQueued && file.equals(upNext.peek())){
+            //Sonó la primera de la cola, la playlist se queda donde estaba
+            upNext.poll();
+            playingQueued = true;
+        } else {
+            int idx = preloadedIndex;
+            //Si la playlist cambió entre medio, buscamos la canción por su archivo
+            if (idx < 0 || idx >= playlist.size() || !playlist.get(idx).equals(file)){
+                idx = playlist.indexOf(file);
+            } else if (shuffleMode && playlist.size() > 1){
+                //Sonó la que se había visto por adelantado, ahora sí avanza el ciclo aleatorio
+                shuffle.next(playlist, currentIndex);
             }
+            if (idx >= 0){
+                currentIndex = idx;
+            }
+            playingQueued = false;
         }
 
-        //Si hay canciones en la cola decrementamos el contador de esta
-        if (queuedCount > 0) {
-            queuedCount--;
+        currentFile = file;
+        paused = false;
+        pausePosition = 0;
+        recordPlay(file);
+        schedulePreload();
+        publishState();
+    }
+
+    //Guarda en el historial la canción que empezó a sonar, con su entrada de la playlist si salió de ella
+    private void recordPlay(File file){
+        history.record(file, currentEntry(file), System.currentTimeMillis());
+    }
+
+    private int currentEntry(File file){
+        if (playingQueued || currentIndex < 0 || currentIndex >= playlist.size() || !playlist.get(currentIndex).equals(file)){
+            return PlaybackHistory.NO_ENTRY;
         }
+        return playlist.entryAt(currentIndex);
+    }
 
-        //Salimos del modo de pausa
+    //Vuelve a una canción del historial sin registrarla otra vez
+    private CompletableFuture<File> playFromHistory(int age){
+        restoreHistoryPosition(age);
         paused = false;
-        //Posición de pausa al inicio
         pausePosition = 0;
-        //Cargamos el archivo de audio del current index
-        load(playlist.get(currentIndex));
-        //Reproducimos esa canción cargada previamente
-        play();
+        CompletableFuture<File> result = startLoad(history.getFile(age), true);
+        navigationSequence = loadSequence.get();
+        return result;
+    }
+
+    //La posición en la playlist vuelve a la entrada que sonó; las de la cola, o las que ya no están, suenan fuera de la lista
+    private void restoreHistoryPosition(int age){
+        File file = history.getFile(age);
+        int entry = history.getEntry(age);
+        int idx = playlist.indexOfEntry(entry);
+        if (entry != PlaybackHistory.NO_ENTRY && (idx < 0 || !playlist.get(idx).equals(file))){
+            idx = playlist.indexOf(file);
+        }
+        if (idx >= 0){
+            currentIndex = idx;
+            playingQueued = false;
+        } else {
+            playingQueued = true;
+        }
+    }
+
+    //Publica una foto nueva del estado y la pasa a PlayerEvents, que la entrega a la interfaz
+    //La playlist y la cola ya guardan sus copias, aquí no se copia ninguna lista
+    private void publishState(){
+        state = new PlayerState(state.getVersion() + 1, playlist.snapshot(), currentIndex, playingQueued,
+                currentFile, loadingFile, peekNext(), upNext.snapshot(), engine.isRunning(), paused,
+                repeatMode, shuffleMode);
+        events.publish(state, playlist.drainChanges());
     }
 
     //Ir a canción anterior
     public void previous(){
+        previousAsync();
+    }
+
+    //Igual que previous(), pero devuelve el future de la carga
+    public CompletableFuture<File> previousAsync(){
         if (playlist == null || playlist.isEmpty()){
             info.showException(
                     "Sin canciones",
                     "No hay una lista cargada"
             );
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        //Con historial volvemos a lo que realmente sonó antes, aunque haya modo aleatorio o cola
+        if (history.canGoBack()){
+            return playFromHistory(history.back());
+        }
+
+        //Sin nada anterior en el historial: si sonaba una canción de la cola, volvemos a la de la playlist
+        if (playingQueued){
+            playingQueued = false;
+            //Si la de la playlist se quitó de la lista estando primera, currentIndex quedó en -1
+            currentIndex = Math.max(0, currentIndex);
+            return loadPrevious(playlist.get(currentIndex), true);
         }
 
         //Caso primera canción, se reproduce nuevamente, pues no hay a donde retroceder
         if (currentIndex <= 0){
-            //Pausado igual a falso
-            paused = false;
-            //Posición pausa desde el inicio
-            pausePosition = 0;
-            //Cargamos la primera canción
-            load(playlist.get(currentIndex));
-            //La reproducimos
-            play();
-            return;
+            return loadPrevious(playlist.get(currentIndex), false);
         }
 
-        //Flujo normal
-
-        //El index actual se decrementa debido a que estamos una canción atrás
+        //Flujo normal, el index actual se decrementa debido a que estamos una canción atrás
         currentIndex--;
+        return loadPrevious(playlist.get(currentIndex), true);
+    }
 
-        //Pausado igual a falso
+    //Carga la canción anterior de la playlist; se guarda como la más vieja del historial para poder volver adelante
+    private CompletableFuture<File> loadPrevious(File file, boolean remember){
+        //Pausado igual a falso y posición de pausa desde el inicio
         paused = false;
-        //Posición pausa desde el inicio
         pausePosition = 0;
-        //Cargamos la canción con el índice calculado
-        load(playlist.get(currentIndex));
-        //Se reproduce la misma
-        play();
+        boolean remembered = remember && history.recordOlder(file, currentEntry(file), System.currentTimeMillis());
+        CompletableFuture<File> result = startLoad(file, true);
+        if (!remember || remembered) {
+            navigationSequence = loadSequence.get();
+        }
+        return result;
     }
 
     //Verificar que se esté reproduciendo alguna canción
     public boolean isPlaying(){
-        return clip != null && clip.isRunning();
+        return engine.isRunning();
     }
 
     //Verificar si está pausada
@@ -572,27 +911,110 @@ public class MusicPlayer {
 
     //Cerrar recursos
     public void close(){
-        if (clip != null){
-            clip.close();
-            clip = null;
+        //Cualquier carga en curso queda cancelada
+        closedSequence = loadSequence.incrementAndGet();
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+            pendingLoad = null;
+        }
+        loadingFile = null;
+        playWhenLoaded = false;
+
+        if (engine.isOpen()){
+            engine.close();
             currentFile = null;
+            preloadedIndex = -1;
         }
+        publishState();
     }
     //Getters
     public File getCurrentFile() {
         return currentFile;
     }
 
+    //Datos de la canción actual, null si no hay ninguna cargada
+    public Track getCurrentTrack() {
+        return currentFile == null ? null : metadata.getOrUnknown(currentFile);
+    }
+
+    //Verificar si hay una canción cargándose en segundo plano
+    public boolean isLoading() {
+        return loadingFile != null;
+    }
+
+    public File getLoadingFile() {
+        return loadingFile;
+    }
+
+    //-1 si la que sonaba se quitó de la lista estando primera, ver PlayerState.getCurrentIndex()
     public int getCurrentIndex() {
         return currentIndex;
     }
 
     public int getQueuedCount() {
-        return queuedCount;
+        return upNext.size();
+    }
+
+    //Canciones pedidas, en el orden en que van a sonar
+    public UpNextQueue getUpNext() {
+        return upNext;
+    }
+
+    //Canciones que sonaron, de la más reciente a la más vieja, con la hora en que empezaron
+    public PlaybackHistory getHistory() {
+        return history;
+    }
+
+    //Si la canción actual salió de la cola y no de la playlist
+    public boolean isPlayingQueued() {
+        return playingQueued;
+    }
+
+    //Qué sonará después: la primera de la cola o la siguiente de la playlist; null si no hay ninguna
+    public File peekNext() {
+        if (history.canGoForward()) {
+            return history.getFile(history.getCursor() - 1);
+        }
+        if (!upNext.isEmpty()) {
+            return upNext.peek();
+        }
+        int nextIndex = peekNextIndex();
+        return nextIndex >= 0 ? playlist.get(nextIndex) : null;
+    }
+
+    //Copia inmutable de la playlist, se puede recorrer desde cualquier hilo mientras la lista sigue cambiando
+    public PlaylistSnapshot getPlaylist() {
+        return playlist.snapshot();
+    }
+
+    //Foto del estado completo (playlist, canción actual, cola y modos) tomada en un mismo momento
+    public PlayerState getState() {
+        return state;
     }
 
-    public List<File> getPlaylist() {
-        return playlist;
+    //El listener recibe cada estado nuevo desde ahora; se llama en el hilo de la interfaz
+    public void addListener(Listener listener) {
+        events.addListener(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        events.removeListener(listener);
+    }
+
+    public void addPositionListener(PositionListener listener) {
+        events.addPositionListener(listener);
+    }
+
+    public void removePositionListener(PositionListener listener) {
+        events.removePositionListener(listener);
+    }
+
+    public PlayerEvents getEvents() {
+        return events;
+    }
+
+    public PcmCache getPcmCache() {
+        return pcmCache;
     }
 
     public String getPausedTimeText() {
@@ -611,6 +1033,20 @@ public class MusicPlayer {
         return formatTime(getTotalTime());
     }
 
+    //Reinicia el modo aleatorio con una semilla fija, la misma semilla repite el mismo orden
+    public void setShuffleSeed(long seed) {
+        shuffle = new ShuffleOrder(seed);
+        if (shuffleMode) {
+            shuffle.start(playlist, currentIndex);
+        }
+        schedulePreload();
+        publishState();
+    }
+
+    public long getShuffleSeed() {
+        return shuffle.getSeed();
+    }
+
     public boolean isShuffleMode() {
         return shuffleMode;
     }
@@ -618,5 +1054,88 @@ public class MusicPlayer {
     // Setters
     public void toggleRepeatMode(){
         this.repeatMode = !this.repeatMode;
+        //La canción que sigue puede cambiar (por ejemplo al final de la lista), el fundido usa la precargada
+        schedulePreload();
+        publishState();
+    }
+
+    //Mezcla el final de cada canción con la siguiente que elegiría next(), 0 ms lo desactiva
+    public void setCrossfade(int milliseconds, PlaybackEngine.FadeCurve curve){
+        engine.setCrossfade(milliseconds, curve);
+    }
+
+    public long getCrossfadeMillis(){
+        return engine.getCrossfadeMillis();
+    }
+
+    public PlaybackEngine.FadeCurve getFadeCurve(){
+        return engine.getFadeCurve();
+    }
+
+    //Volumen de 0 a 100 en escala de dB: cada paso cambia lo mismo al oído, 100 = volumen original, 0 = silencio
+    public void setVolume(int percent){
+        int clamped = Math.max(0, Math.min(100, percent));
+        engine.setVolumeDb(GainStage.MIN_DB * (1 - clamped / 100.0));
+    }
+
+    public int getVolume(){
+        double db = Math.min(0, engine.getVolumeDb());
+        return (int) Math.round(100 * (1 - db / GainStage.MIN_DB));
+    }
+
+    //Volumen directo en dB, por ejemplo -6 para bajarlo a la mitad de amplitud
+    public void setVolumeDb(double db){
+        engine.setVolumeDb(db);
+    }
+
+    public double getVolumeDb(){
+        return engine.getVolumeDb();
+    }
+
+    public void setMuted(boolean muted){
+        engine.setMuted(muted);
+    }
+
+    public boolean isMuted(){
+        return engine.isMuted();
+    }
+
+    //Lee la cabecera de las canciones nuevas o modificadas en segundo plano, antes del análisis de volumen
+    public CompletableFuture<MetadataLibrary.Report> extractMetadata(List<File> files){
+        List<File> snapshot = new ArrayList<>(files);
+        return CompletableFuture.supplyAsync(() -> metadata.extractAll(snapshot, null), analyzer);
+    }
+
+    //Datos conocidos de la canción sin tocar el disco; si todavía no se leyó solo trae el archivo
+    public Track getTrack(File file){
+        return metadata.getOrUnknown(file);
+    }
+
+    public MetadataLibrary getMetadataLibrary(){
+        return metadata;
+    }
+
+    //Mide el volumen de todas las canciones en segundo plano, solo las nuevas o modificadas se vuelven a leer
+    public CompletableFuture<LoudnessLibrary.Report> analyzeLibrary(List<File> files){
+        List<File> snapshot = new ArrayList<>(files);
+        return CompletableFuture.supplyAsync(() -> loudness.analyzeAll(snapshot, null), analyzer);
+    }
+
+    //Normalización de volumen entre canciones; el cambio se nota desde el audio que todavía no se decodificó
+    public void setNormalization(boolean enabled){
+        loudness.setNormalization(enabled);
+    }
+
+    public boolean isNormalization(){
+        return loudness.isNormalization();
+    }
+
+    public LoudnessLibrary getLoudnessLibrary(){
+        return loudness;
+    }
+
+    //Ecualizador del audio de salida, por ejemplo la corrección de cada sala
+    public Equalizer getEqualizer(){
+        return engine.getEqualizer();
     }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+import javax.sound.sampled.AudioFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Salida que descarta el audio, para probar y medir el reproductor en máquinas sin tarjeta de sonido
+//En tiempo real consume los frames al ritmo del reloj, como una tarjeta; si no, los consume apenas llegan
+public class NullSink implements AudioSink {
+    //Atributos
+
+    private final AudioFormat format;
+    private final int bufferBytes;
+    private final int frameSize;
+    private final boolean realtime;
+    private final Device device;
+
+    //Frames recibidos y frames ya "reproducidos" hasta el último start/stop
+    private long writtenFrames;
+    private long playedFrames;
+    //Momento del último start, el reloj solo avanza mientras la salida está iniciada
+    private long startNanos;
+    private boolean started;
+    private boolean closed;
+
+    private NullSink(AudioFormat format, int bufferBytes, boolean realtime, Device device) {
+        this.format = format;
+        this.frameSize = Math.max(1, format.getFrameSize());
+        this.bufferBytes = Math.max(frameSize, bufferBytes / frameSize * frameSize);
+        this.realtime = realtime;
+        this.device = device;
+    }
+
+    //Salida nula que consume al ritmo del reloj, el reproductor se comporta igual que con una tarjeta
+    public static Device realtime() {
+        return new Device(true);
+    }
+
+    //Salida nula sin espera: mide cuánto audio por segundo puede entregar el reproductor
+    public static Device maxSpeed() {
+        return new Device(false);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            startNanos = System.nanoTime();
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (started) {
+            playedFrames = position();
+            started = false;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        playedFrames = position();
+        writtenFrames = playedFrames;
+        startNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void drain() {
+        //Igual que una línea real, vuelve enseguida si está detenida
+        while (started && !closed && position() < writtenFrames) {
+            waitFor(writtenFrames - position());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        started = false;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized int write(byte[] data, int offset, int length) {
+        int frames = length / frameSize;
+        int done = 0;
+        while (done < frames && !closed) {
+            int free = available() / frameSize;
+            if (free == 0) {
+                //Búfer lleno: se espera a que el reloj consuma lo necesario, o a un flush/stop/close
+                waitFor(started ? Math.min(frames - done, bufferBytes / frameSize) : 0);
+                continue;
+            }
+            int n = Math.min(free, frames - done);
+            writtenFrames += n;
+            done += n;
+        }
+        device.consumed(done, format);
+        return done * frameSize;
+    }
+
+    @Override
+    public synchronized long getLongFramePosition() {
+        return position();
+    }
+
+    @Override
+    public synchronized int available() {
+        long queued = (writtenFrames - position()) * frameSize;
+        return (int) (bufferBytes - queued);
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferBytes;
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Frames reproducidos: sin tiempo real todo lo escrito ya se consumió
+    private long position() {
+        if (!realtime) {
+            return writtenFrames;
+        }
+        if (!started) {
+            return playedFrames;
+        }
+        long elapsed = (long) ((System.nanoTime() - startNanos) * (double) format.getFrameRate() / 1e9);
+        return Math.min(writtenFrames, playedFrames + elapsed);
+    }
+
+    //Espera lo que tarda en sonar la cantidad de frames pedida; 0 espera hasta que otro hilo avise
+    private void waitFor(long frames) {
+        try {
+            long millis = (long) Math.ceil(frames * 1000.0 / format.getFrameRate());
+            wait(frames > 0 ? Math.max(1, millis) : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Fábrica de salidas nulas; suma lo consumido por todas, aunque el reproductor abra una por formato
+    public static final class Device implements AudioSink.Factory {
+        private final boolean realtime;
+        private final AtomicLong consumedBytes = new AtomicLong();
+        private final AtomicLong consumedNanos = new AtomicLong();
+
+        private Device(boolean realtime) {
+            this.realtime = realtime;
+        }
+
+        @Override
+        public AudioSink open(AudioFormat format, int bufferBytes) {
+            return new NullSink(format, bufferBytes, realtime, this);
+        }
+
+        public boolean isRealtime() {
+            return realtime;
+        }
+
+        public long getConsumedBytes() {
+            return consumedBytes.get();
+        }
+
+        //Duración del audio consumido, sirve para comparar contra el tiempo que tardó
+        public double getConsumedSeconds() {
+            return consumedNanos.get() / 1e9;
+        }
+
+        private void consumed(int frames, AudioFormat format) {
+            consumedBytes.addAndGet((long) frames * Math.max(1, format.getFrameSize()));
+            consumedNanos.addAndGet((long) (frames * 1e9 / format.getFrameRate()));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Reparte un trabajo por elemento entre un hilo por núcleo y espera a que terminen todos
+//Lo usan la lectura de metadatos y el análisis de volumen de la biblioteca
+final class ParallelJob {
+    //Atributos
+
+    private final int threads;
+    private final int failed;
+
+    //Trabajo de un elemento; devuelve false si falló, el resto sigue igual
+    interface Task<T> {
+        boolean process(T item);
+    }
+
+    //Avisos de progreso, llegan desde los hilos del trabajo
+    interface Progress<T> {
+        void progress(int done, int total, T item);
+    }
+
+    private ParallelJob(int threads, int failed) {
+        this.threads = threads;
+        this.failed = failed;
+    }
+
+    //Procesa todos los elementos y vuelve cuando terminaron; progress puede ser null
+    static <T> ParallelJob run(String threadName, int priority, List<T> items, Task<T> task, Progress<T> progress) {
+        int threads = Math.max(1, Math.min(items.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        });
+
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(pool.submit(() -> {
+                if (!task.process(item)) {
+                    failed.incrementAndGet();
+                }
+                int count = done.incrementAndGet();
+                if (progress != null) {
+                    progress.progress(count, items.size(), item);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : tasks) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    //Un error inesperado en un elemento no detiene el resto
+                    failed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ParallelJob(threads, failed.get());
+    }
+
+    //Getters
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+}
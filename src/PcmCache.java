@@ -0,0 +1,176 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PcmCache {
+    //Atributos
+
+    //Presupuesto máximo de bytes de PCM guardados fuera del heap
+    private final long budgetBytes;
+    //Orden de acceso: el primer elemento es el menos usado recientemente (LRU)
+    private final LinkedHashMap<FileKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //Pistas que se están decodificando en segundo plano, para no repetir el trabajo
+    private final Set<FileKey> pending = new HashSet<>();
+    private long usedBytes = 0;
+
+    //Un solo hilo de fondo, la decodificación nunca compite con la reproducción
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pcm-cache");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    //Contadores
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    //Constructor
+    public PcmCache(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+    }
+
+    //Devuelve un stream sobre el PCM guardado, o null si la pista no está en la caché
+    public AudioInputStream open(File file) {
+        FileKey key = FileKey.of(file);
+        Entry entry;
+        synchronized (this) {
+            entry = key == null ? null : entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        //Cada lector usa su propia vista del búfer, así varios pueden leer la misma pista
+        ByteBuffer view = entry.pcm.duplicate();
+        view.clear();
+        return new AudioInputStream(new ByteBufferInputStream(view), entry.format, entry.frames);
+    }
+
+    //Programa la decodificación de la pista en segundo plano si todavía no está guardada
+    public void prefetch(File file) {
+        if (budgetBytes == 0 || file == null) {
+            return;
+        }
+        FileKey key = FileKey.of(file);
+        if (key == null) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key) || !pending.add(key)) {
+                return;
+            }
+        }
+        decoder.execute(() -> {
+            try {
+                decode(file, key);
+            } finally {
+                synchronized (this) {
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    //Vacía la caché, la memoria se libera cuando el recolector descarta los búferes
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private void decode(File file, FileKey key) {
+        try (AudioInputStream stream = PlaybackEngine.openDecodedStream(file)) {
+            AudioFormat format = stream.getFormat();
+            long frames = stream.getFrameLength();
+            long size = frames * format.getFrameSize();
+
+            //Las pistas sin duración conocida o más grandes que el presupuesto no se guardan
+            if (frames <= 0 || size > budgetBytes || size > Integer.MAX_VALUE) {
+                return;
+            }
+
+            ByteBuffer pcm = ByteBuffer.allocateDirect((int) size);
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while (pcm.hasRemaining() && (read = stream.read(chunk, 0, Math.min(chunk.length, pcm.remaining()))) > 0) {
+                pcm.put(chunk, 0, read);
+            }
+            pcm.flip();
+
+            store(key, new Entry(format, pcm.remaining() / format.getFrameSize(), pcm));
+        } catch (IOException | UnsupportedAudioFileException | OutOfMemoryError e) {
+            //Si no se puede decodificar, la pista simplemente se sigue leyendo del disco
+        }
+    }
+
+    private synchronized void store(FileKey key, Entry entry) {
+        long size = entry.pcm.capacity();
+        //Expulsamos las menos usadas hasta que la nueva quepa en el presupuesto
+        Iterator<Map.Entry<FileKey, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes + size > budgetBytes && it.hasNext()) {
+            Entry evicted = it.next().getValue();
+            it.remove();
+            usedBytes -= evicted.pcm.capacity();
+            evictions.incrementAndGet();
+        }
+        if (usedBytes + size <= budgetBytes) {
+            entries.put(key, entry);
+            usedBytes += size;
+        }
+    }
+
+    //Getters
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    private static final class Entry {
+        private final AudioFormat format;
+        private final long frames;
+        //PCM decodificado en memoria directa, fuera del heap
+        private final ByteBuffer pcm;
+
+        private Entry(AudioFormat format, long frames, ByteBuffer pcm) {
+            this.format = format;
+            this.frames = frames;
+            this.pcm = pcm;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+//Búfer circular de bytes para un solo productor (decodificador) y un solo consumidor (salida de audio)
+//No usa locks: cada lado solo mueve su propia posición y lee la del otro
+class PcmRingBuffer {
+    private final byte[] data;
+    private final int mask;
+    //Posiciones absolutas en bytes, siempre crecen; el índice real es posición & mask
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    //La capacidad se redondea a potencia de dos para calcular el índice con una máscara
+    PcmRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.data = new byte[size];
+        this.mask = size - 1;
+    }
+
+    //Solo productor: copia hasta len bytes, devuelve cuántos cupieron
+    int write(byte[] src, int off, int len) {
+        long write = writePosition.get();
+        int free = data.length - (int) (write - readPosition.get());
+        int n = Math.min(len, free);
+        if (n <= 0) {
+            return 0;
+        }
+        int index = (int) (write & mask);
+        int first = Math.min(n, data.length - index);
+        System.arraycopy(src, off, data, index, first);
+        System.arraycopy(src, off + first, data, 0, n - first);
+        //Publica los bytes copiados antes de mover la posición
+        writePosition.lazySet(write + n);
+        return n;
+    }
+
+    //Solo consumidor: copia hasta len bytes, devuelve cuántos había
+    int read(byte[] dst, int off, int len) {
+        long read = readPosition.get();
+        int n = (int) Math.min(len, writePosition.get() - read);
+        if (n <= 0) {
+            return 0;
+        }
+        int index = (int) (read & mask);
+        int first = Math.min(n, data.length - index);
+        System.arraycopy(data, index, dst, off, first);
+        System.arraycopy(data, 0, dst, off + first, n - first);
+        readPosition.lazySet(read + n);
+        return n;
+    }
+
+    //Solo consumidor: descarta todo lo anterior a la posición indicada
+    void skipTo(long position) {
+        long read = readPosition.get();
+        if (position > read) {
+            readPosition.lazySet(Math.min(position, writePosition.get()));
+        }
+    }
+
+    long getWritePosition() {
+        return writePosition.get();
+    }
+
+    long getReadPosition() {
+        return readPosition.get();
+    }
+
+    //Bytes escritos que el consumidor todavía no leyó
+    int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    int capacity() {
+        return data.length;
+    }
+}
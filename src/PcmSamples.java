@@ -0,0 +1,126 @@
+import javax.sound.sampled.AudioFormat;
+
+//Conversión entre bytes PCM y muestras float en [-1, 1], para mezclar o procesar el audio
+//Los métodos no reservan memoria: trabajan sobre arreglos que el llamador ya tiene preparados
+final class PcmSamples {
+
+    private PcmSamples() {
+    }
+
+    //Formatos que se pueden convertir: enteros de 8 a 32 bits y float de 32 o 64 bits
+    static boolean isSupported(AudioFormat format) {
+        if (format == null) {
+            return false;
+        }
+        int bytes = format.getSampleSizeInBits() / 8;
+        if (format.getSampleSizeInBits() % 8 != 0 || format.getFrameSize() != bytes * format.getChannels()) {
+            return false;
+        }
+        AudioFormat.Encoding encoding = format.getEncoding();
+        if (encoding.equals(AudioFormat.Encoding.PCM_FLOAT)) {
+            return bytes == 4 || bytes == 8;
+        }
+        return (encoding.equals(AudioFormat.Encoding.PCM_SIGNED) || encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED))
+                && bytes >= 1 && bytes <= 4;
+    }
+
+    //Bytes a float: lee count muestras empezando en src[offset]
+    static void toFloat(byte[] src, int offset, float[] dst, int count, AudioFormat format) {
+        int bytes = format.getSampleSizeInBits() / 8;
+        boolean bigEndian = format.isBigEndian();
+        AudioFormat.Encoding encoding = format.getEncoding();
+
+        if (encoding.equals(AudioFormat.Encoding.PCM_FLOAT)) {
+            if (bytes == 4) {
+                for (int i = 0, p = offset; i < count; i++, p += 4) {
+                    dst[i] = Float.intBitsToFloat(readInt(src, p, 4, bigEndian));
+                }
+            } else {
+                for (int i = 0, p = offset; i < count; i++, p += 8) {
+                    long bits = bigEndian
+                            ? ((long) readInt(src, p, 4, true) << 32) | (readInt(src, p + 4, 4, true) & 0xFFFFFFFFL)
+                            : ((long) readInt(src, p + 4, 4, false) << 32) | (readInt(src, p, 4, false) & 0xFFFFFFFFL);
+                    dst[i] = (float) Double.longBitsToDouble(bits);
+                }
+            }
+            return;
+        }
+
+        //Los enteros se alinean a 32 bits con signo, así todos los tamaños usan la misma escala
+        int shift = 32 - bytes * 8;
+        int flip = encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED) ? Integer.MIN_VALUE : 0;
+        final float scale = 1.0f / 2147483648.0f;
+        for (int i = 0, p = offset; i < count; i++, p += bytes) {
+            int value = (readInt(src, p, bytes, bigEndian) << shift) ^ flip;
+            dst[i] = value * scale;
+        }
+    }
+
+    //Float a bytes: escribe count muestras empezando en dst[offset], recortando lo que pase de [-1, 1]
+    static void fromFloat(float[] src, int count, byte[] dst, int offset, AudioFormat format) {
+        int bytes = format.getSampleSizeInBits() / 8;
+        boolean bigEndian = format.isBigEndian();
+        AudioFormat.Encoding encoding = format.getEncoding();
+
+        if (encoding.equals(AudioFormat.Encoding.PCM_FLOAT)) {
+            if (bytes == 4) {
+                for (int i = 0, p = offset; i < count; i++, p += 4) {
+                    writeInt(dst, p, 4, bigEndian, Float.floatToRawIntBits(src[i]));
+                }
+            } else {
+                for (int i = 0, p = offset; i < count; i++, p += 8) {
+                    long bits = Double.doubleToRawLongBits(src[i]);
+                    writeInt(dst, bigEndian ? p : p + 4, 4, bigEndian, (int) (bits >>> 32));
+                    writeInt(dst, bigEndian ? p + 4 : p, 4, bigEndian, (int) bits);
+                }
+            }
+            return;
+        }
+
+        int shift = 32 - bytes * 8;
+        int flip = encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED) ? Integer.MIN_VALUE : 0;
+        //Valor máximo del tamaño de muestra, por ejemplo 32767 para 16 bits
+        double full = (double) (1L << (bytes * 8 - 1));
+        double max = full - 1;
+        for (int i = 0, p = offset; i < count; i++, p += bytes) {
+            double scaled = Math.rint(src[i] * full);
+            if (scaled > max) {
+                scaled = max;
+            } else if (scaled < -full) {
+                scaled = -full;
+            }
+            int value = (((int) scaled) << shift) ^ flip;
+            writeInt(dst, p, bytes, bigEndian, value >> shift);
+        }
+    }
+
+    //Lee un entero de 1 a 4 bytes con signo extendido
+    private static int readInt(byte[] b, int p, int bytes, boolean bigEndian) {
+        int value = 0;
+        if (bigEndian) {
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | (b[p + i] & 0xFF);
+            }
+        } else {
+            for (int i = bytes - 1; i >= 0; i--) {
+                value = (value << 8) | (b[p + i] & 0xFF);
+            }
+        }
+        int shift = 32 - bytes * 8;
+        return (value << shift) >> shift;
+    }
+
+    private static void writeInt(byte[] b, int p, int bytes, boolean bigEndian, int value) {
+        if (bigEndian) {
+            for (int i = bytes - 1; i >= 0; i--) {
+                b[p + i] = (byte) value;
+                value >>= 8;
+            }
+        } else {
+            for (int i = 0; i < bytes; i++) {
+                b[p + i] = (byte) value;
+                value >>= 8;
+            }
+        }
+    }
+}
@@ -0,0 +1,1292 @@
+import javax.sound.sampled.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class PlaybackEngine {
+    //Atributos
+
+    //Tamaño aproximado de cada bloque que se lee del archivo y se escribe en la línea
+    private static final int CHUNK_BYTES = 16 * 1024;
+    //Tamaño del búfer interno de la línea de audio, en milisegundos
+    private static final int LINE_BUFFER_MILLIS = 250;
+    //Capacidad del búfer circular entre el hilo decodificador y el hilo de salida
+    private static final int RING_BYTES = 1 << 20;
+    //Espera máxima de un hilo sin trabajo, por si se pierde un aviso del otro hilo
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    //Formato al que se convierte una pista cuando la línea no acepta el suyo (frecuencia o bits raros)
+    private static final AudioFormat FALLBACK_FORMAT = FormatConverter.pcmFormat(48000f, 16, 2);
+
+    //Protege el estado de control (pista, stream, línea); el audio en sí no pasa por este lock
+    //Abrir archivos y leer bloques se hace fuera de él, así play, pause o la interfaz nunca esperan al disco
+    private final Object lock = new Object();
+    //Avisos del hilo de reproducción hacia el reproductor
+    private final Listener listener;
+    //PCM ya decodificado de pistas recientes y próximas, puede ser null
+    private final PcmCache cache;
+    //Volumen medido de cada pista para normalizarlas, puede ser null
+    private final LoudnessLibrary loudness;
+    //Crea la salida de cada formato: tarjeta de sonido, archivo WAV o salida nula
+    private final AudioSink.Factory sinks;
+
+    //Búfer circular preasignado, el decodificador escribe y la salida lee sin locks
+    private final PcmRingBuffer ring = new PcmRingBuffer(RING_BYTES);
+    //Marcas en posiciones del búfer circular: cambio de pista o fin de la reproducción
+    private final ConcurrentLinkedQueue<Marker> markers = new ConcurrentLinkedQueue<>();
+
+    // ---- Lado del decodificador (protegido por lock) ----
+    private File file;
+    private AudioInputStream stream;
+    private AudioFormat format;
+    //Duración total de la pista que se está decodificando, en frames
+    private long frameLength;
+    //Búfer fijo reutilizado para cada bloque, la memoria no depende de la duración de la pista
+    private byte[] buffer;
+    //Parte del bloque actual que todavía no entró en el búfer circular
+    private int chunkOffset;
+    private int chunkLength;
+    //Ya se marcó el final de la pista y no hay nada más que decodificar
+    private boolean endQueued;
+
+    //Siguiente pista abierta por adelantado, con su primer bloque ya leído (doble búfer)
+    private File nextFile;
+    private AudioInputStream nextStream;
+    private byte[] nextBuffer;
+    private int nextPrimedBytes;
+    //Frames de la pista actual que ya se leyeron del stream
+    private long decodedFrames;
+    //Streams que el decodificador está leyendo fuera del lock; si otro hilo los reemplaza mientras tanto,
+    //quedan en retired y los cierra el decodificador al terminar de leer
+    private AudioInputStream readingStream;
+    private AudioInputStream readingFade;
+    private final List<AudioInputStream> retired = new ArrayList<>();
+    //Bloque que el decodificador lee fuera del lock, después se copia a buffer
+    private byte[] readBuffer = new byte[0];
+    //Cada open() y close() deja obsoletos los open() que todavía están abriendo su archivo fuera del lock
+    private long openRequest;
+    //Lo mismo para preload() y clearPreload()
+    private long preloadRequest;
+    //Ganancia de normalización de la pista actual y de la precargada (1 = sin cambios)
+    private float trackGain = 1.0f;
+    private float nextTrackGain = 1.0f;
+    //Muestras float para aplicar la ganancia de pista, crece solo si llega un bloque más grande
+    private float[] gainSamples = new float[0];
+
+    //Formato fijo de la línea, todas las pistas se convierten a él; null usa el formato de cada pista
+    //volatile porque los archivos se abren fuera del lock
+    private volatile AudioFormat outputFormat;
+
+    // ---- Fundido cruzado (protegido por lock) ----
+    //Duración configurada del fundido, 0 lo desactiva y las pistas se encadenan sin pausa
+    private long crossfadeMillis;
+    private FadeCurve fadeCurve = FadeCurve.EQUAL_POWER;
+    //Cola de la pista que se va, se mezcla con el inicio de la que entra
+    private AudioInputStream fadeStream;
+    private float fadeTrackGain = 1.0f;
+    private FadeCurve activeCurve;
+    private long fadeFrames;
+    private long fadePosition;
+    //Búferes del mezclador, se reservan al empezar el fundido y no dentro del bucle
+    private byte[] fadeBuffer;
+    private float[] mixIncoming;
+    private float[] mixOutgoing;
+
+    // ---- Lado de la salida ----
+    private volatile AudioSink line;
+    private volatile AudioFormat lineFormat;
+    //Pista que está sonando en la línea (puede ir detrás de la que se decodifica)
+    private Marker playing;
+    //Frame de la pista que corresponde a lineBaseFrame
+    private long baseFrame;
+    //Posición de la línea donde empezó la pista o el último seek
+    private long lineBaseFrame;
+    //Frames entregados a la línea, solo lo toca el hilo de salida
+    private long lineWrittenFrames;
+    //Parte de outputBuffer que la línea todavía no aceptó (se pausó a mitad del bloque), solo la toca el hilo de salida
+    private int outputOffset;
+    private int outputPending;
+    private long outputGeneration;
+    //Último descarte que ya aplicó el hilo de salida
+    private long appliedDiscardGeneration;
+    //Copia de playing, baseFrame, lineBaseFrame y line que se publica en cada cambio; la posición se lee de aquí sin lock
+    private volatile Clock clock;
+    //Búfer preasignado del hilo de salida, en estado estable no se reserva memoria
+    private final byte[] outputBuffer = new byte[CHUNK_BYTES];
+    //Ecualizador y volumen por software, se aplican a cada bloque justo antes de escribirlo en la línea
+    private final Equalizer equalizer = new Equalizer(CHUNK_BYTES);
+    private final GainStage gain = new GainStage();
+    //Muestras float del bloque actual, en el peor caso (8 bits) una por byte
+    private final float[] effectBuffer = new float[CHUNK_BYTES];
+
+    //Cambia con cada open/seek/close, así los hilos descartan trabajo que ya no sirve
+    private volatile long generation;
+    //Todo lo que esté antes de esta posición del búfer circular se descarta sin sonar
+    private volatile long discardGeneration;
+    private volatile long discardUntil;
+    private volatile boolean running;
+    private Thread decoderThread;
+    private Thread outputThread;
+
+    //Métricas
+    private final AtomicLong underruns = new AtomicLong();
+
+    //Curva del fundido cruzado: potencia constante (seno/coseno) o lineal
+    public enum FadeCurve {
+        LINEAR,
+        EQUAL_POWER
+    }
+
+    //Avisos que el motor envía desde su hilo, nunca desde el hilo de la interfaz
+    public interface Listener {
+        //La pista terminó sola y no había una siguiente precargada
+        void trackFinished();
+
+        //La pista terminó y ya está sonando la pista precargada, sin silencio entre ambas
+        void trackAdvanced(File file);
+    }
+
+    //Constructor, sin fábrica de salidas se usa la tarjeta de sonido
+    public PlaybackEngine(Listener listener, PcmCache cache, LoudnessLibrary loudness, AudioSink.Factory sinks) {
+        this.listener = listener;
+        this.cache = cache;
+        this.loudness = loudness;
+        this.sinks = sinks != null ? sinks : LineSink.factory();
+    }
+
+    //Abre la pista sin decodificarla completa, solo prepara el stream y la línea
+    //El archivo y la línea se abren fuera del lock; si mientras tanto se abre otra pista o se cierra el motor, esta se descarta
+    public void open(File audioFile) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        //Si justo es la pista precargada aprovechamos el stream y el bloque que ya se leyeron
+        AudioInputStream source = null;
+        int primed = 0;
+        byte[] primedBuffer = null;
+        long request;
+        synchronized (lock) {
+            if (nextStream != null && audioFile.equals(nextFile)) {
+                source = nextStream;
+                primed = nextPrimedBytes;
+                primedBuffer = nextBuffer;
+                nextStream = null;
+                nextFile = null;
+                nextBuffer = null;
+            }
+            close();
+            request = openRequest;
+        }
+
+        if (source == null) {
+            source = openStream(audioFile);
+        }
+        AudioFormat sourceFormat = source.getFormat();
+        AudioSink newLine;
+        try {
+            newLine = openLine(sourceFormat);
+        } catch (LineUnavailableException e) {
+            //La línea no acepta el formato de la pista: la convertimos a uno que casi todas aceptan
+            if (primedBuffer != null) {
+                //El bloque precargado quedó en el formato original y ya salió del stream:
+                //se descarta y la pista se vuelve a abrir para convertirla desde el principio
+                source.close();
+                source = openStream(audioFile);
+                primedBuffer = null;
+                primed = 0;
+            }
+            AudioInputStream converted = FormatConverter.convert(source, FALLBACK_FORMAT);
+            if (converted == source) {
+                source.close();
+                throw e;
+            }
+            try {
+                newLine = openLine(FALLBACK_FORMAT);
+            } catch (LineUnavailableException fallbackError) {
+                converted.close();
+                throw e;
+            }
+            source = converted;
+            sourceFormat = FALLBACK_FORMAT;
+        }
+        float sourceGain = gainOf(audioFile);
+
+        synchronized (lock) {
+            if (request != openRequest) {
+                //Otro open() o un close() llegó mientras se abría el archivo: esta pista ya no se quiere
+                newLine.close();
+                closeQuietly(source);
+                return;
+            }
+            file = audioFile;
+            stream = source;
+            format = sourceFormat;
+            frameLength = Math.max(0, source.getFrameLength());
+            trackGain = sourceGain;
+            lineFormat = sourceFormat;
+            line = newLine;
+
+            if (primedBuffer != null && primedBuffer.length == chunkSize(format)) {
+                nextBuffer = buffer;
+                buffer = primedBuffer;
+                chunkOffset = 0;
+                chunkLength = primed;
+                decodedFrames = primed / format.getFrameSize();
+            } else {
+                prepareBuffer();
+                decodedFrames = 0;
+            }
+
+            playing = new Marker(Marker.TRACK, ring.getWritePosition(), generation, audioFile, format, frameLength);
+            baseFrame = 0;
+            lineBaseFrame = newLine.getLongFramePosition();
+            publishClock();
+            ensureThreads();
+            lock.notifyAll();
+        }
+    }
+
+    //Abre la siguiente pista por adelantado y lee su primer bloque, así el cambio de pista es inmediato
+    //La apertura y la lectura se hacen fuera del lock; si mientras tanto se pide otra, esta se descarta
+    public void preload(File audioFile) {
+        if (audioFile == null) {
+            clearPreload();
+            return;
+        }
+        byte[] spare;
+        long request;
+        synchronized (lock) {
+            if (nextStream != null && audioFile.equals(nextFile)) {
+                return;
+            }
+            clearPreload();
+            request = preloadRequest;
+            //El búfer libre se presta mientras se lee, nadie más lo usa hasta que vuelva
+            spare = nextBuffer;
+            nextBuffer = null;
+        }
+
+        AudioInputStream source = null;
+        byte[] primed = spare;
+        int read = 0;
+        float sourceGain = 1.0f;
+        try {
+            source = openStream(audioFile);
+            int chunk = chunkSize(source.getFormat());
+            if (primed == null || primed.length != chunk) {
+                primed = new byte[chunk];
+            }
+            read = source.read(primed, 0, chunk);
+            sourceGain = gainOf(audioFile);
+        } catch (IOException | UnsupportedAudioFileException e) {
+            //Si no se puede precargar, al terminar la pista se usa el camino normal
+            if (source != null) {
+                closeQuietly(source);
+            }
+            source = null;
+        }
+
+        synchronized (lock) {
+            if (source == null || request != preloadRequest) {
+                if (source != null) {
+                    closeQuietly(source);
+                }
+                if (nextBuffer == null) {
+                    nextBuffer = primed;
+                }
+                return;
+            }
+            nextBuffer = primed;
+            nextPrimedBytes = Math.max(0, read);
+            nextStream = source;
+            nextFile = audioFile;
+            nextTrackGain = sourceGain;
+        }
+    }
+
+    //Descarta la pista precargada, por ejemplo cuando cambia el orden de la playlist
+    public void clearPreload() {
+        synchronized (lock) {
+            preloadRequest++;
+            if (nextStream != null) {
+                closeQuietly(nextStream);
+            }
+            nextStream = null;
+            nextFile = null;
+            nextPrimedBytes = 0;
+        }
+    }
+
+    //Formato fijo de salida (por ejemplo 48 kHz): cada pista se remuestrea y convierte al abrirla, null lo desactiva
+    //Se aplica desde la próxima pista que se abra
+    public void setOutputFormat(AudioFormat format) {
+        outputFormat = format;
+    }
+
+    public AudioFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    //Mezcla el final de cada pista con el inicio de la precargada; 0 ms vuelve al encadenado sin pausa
+    public void setCrossfade(long milliseconds, FadeCurve curve) {
+        synchronized (lock) {
+            crossfadeMillis = Math.max(0, milliseconds);
+            if (curve != null) {
+                fadeCurve = curve;
+            }
+        }
+    }
+
+    public long getCrossfadeMillis() {
+        synchronized (lock) {
+            return crossfadeMillis;
+        }
+    }
+
+    public FadeCurve getFadeCurve() {
+        synchronized (lock) {
+            return fadeCurve;
+        }
+    }
+
+    //Volumen en dB (0 dB = sin cambios), con rampa suave en el hilo de salida
+    public void setVolumeDb(double db) {
+        gain.setVolumeDb(db);
+    }
+
+    public double getVolumeDb() {
+        return gain.getVolumeDb();
+    }
+
+    public void setMuted(boolean muted) {
+        gain.setMuted(muted);
+    }
+
+    public boolean isMuted() {
+        return gain.isMuted();
+    }
+
+    //Las bandas se pueden cambiar en cualquier momento, el hilo de salida las toma sin locks
+    public Equalizer getEqualizer() {
+        return equalizer;
+    }
+
+    //Reproducir o reanudar
+    public void play() {
+        synchronized (lock) {
+            if (line == null || running) {
+                return;
+            }
+            running = true;
+            line.start();
+            lock.notifyAll();
+        }
+        LockSupport.unpark(outputThread);
+    }
+
+    //Pausar, la línea y el búfer circular conservan lo que tenían para reanudar sin saltos
+    public void pause() {
+        synchronized (lock) {
+            if (line == null || !running) {
+                return;
+            }
+            running = false;
+            line.stop();
+        }
+    }
+
+    //Detener y volver al inicio
+    public void stop() {
+        try {
+            reopenAt(0, true);
+        } catch (IOException | UnsupportedAudioFileException e) {
+            //La pista ya no se puede abrir: queda detenida sin nada que decodificar
+        }
+    }
+
+    //Cambiar la posición de reproducción, solo se relee desde el punto pedido
+    public void seek(long microseconds) throws IOException, UnsupportedAudioFileException {
+        reopenAt(microseconds, false);
+    }
+
+    //Sin lock: la interfaz la consulta en cada cuadro mientras suena
+    public long getPositionMicros() {
+        Clock current = clock;
+        if (current == null) {
+            return 0;
+        }
+        long frame = current.baseFrame + (current.line.getLongFramePosition() - current.lineBaseFrame);
+        if (current.playing.frameLength > 0) {
+            frame = Math.min(frame, current.playing.frameLength);
+        }
+        return framesToMicros(Math.max(0, frame), current.playing.format);
+    }
+
+    public long getLengthMicros() {
+        Clock current = clock;
+        return current == null ? 0 : framesToMicros(current.playing.frameLength, current.playing.format);
+    }
+
+    public boolean isOpen() {
+        return line != null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    //Bytes decodificados esperando en el búfer circular
+    public int getBufferedBytes() {
+        return ring.available();
+    }
+
+    public int getBufferCapacity() {
+        return ring.capacity();
+    }
+
+    //Veces que la línea se quedó sin audio mientras se reproducía
+    public long getUnderruns() {
+        return underruns.get();
+    }
+
+    //Liberar la línea y el stream de la pista actual
+    public void close() {
+        synchronized (lock) {
+            openRequest++;
+            running = false;
+            discardPending();
+            AudioSink current = line;
+            line = null;
+            if (current != null) {
+                current.stop();
+                current.flush();
+                current.close();
+            }
+            closeStream();
+            clearPreload();
+            file = null;
+            format = null;
+            frameLength = 0;
+            playing = null;
+            publishClock();
+            lock.notifyAll();
+        }
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Usa el PCM de la caché si la pista ya está decodificada, si no se lee del disco y se guarda para la próxima vez
+    //Con formato de salida fijo, la conversión se hace sobre la marcha después de la caché
+    private AudioInputStream openStream(File audioFile) throws UnsupportedAudioFileException, IOException {
+        AudioInputStream source = null;
+        if (cache != null) {
+            source = cache.open(audioFile);
+            if (source == null) {
+                cache.prefetch(audioFile);
+            }
+        }
+        if (source == null) {
+            source = openDecodedStream(audioFile);
+        }
+        return FormatConverter.convert(source, outputFormat);
+    }
+
+    //Abre el archivo y lo convierte a PCM si viene en otro formato
+    static AudioInputStream openDecodedStream(File audioFile) throws UnsupportedAudioFileException, IOException {
+        //Los WAV PCM se leen mapeando el archivo en memoria, sin pasar por los streams de AudioSystem
+        WavFile wav = WavFile.open(audioFile);
+        if (wav != null) {
+            return wav.openStream();
+        }
+
+        AudioInputStream source = AudioSystem.getAudioInputStream(audioFile);
+        AudioFormat sourceFormat = source.getFormat();
+        AudioFormat.Encoding encoding = sourceFormat.getEncoding();
+
+        if (encoding.equals(AudioFormat.Encoding.PCM_SIGNED)
+                || encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED)
+                || encoding.equals(AudioFormat.Encoding.PCM_FLOAT)) {
+            return source;
+        }
+
+        AudioFormat pcm = new AudioFormat(
+                AudioFormat.Encoding.PCM_SIGNED,
+                sourceFormat.getSampleRate(),
+                16,
+                sourceFormat.getChannels(),
+                sourceFormat.getChannels() * 2,
+                sourceFormat.getSampleRate(),
+                false
+        );
+        return AudioSystem.getAudioInputStream(pcm, source);
+    }
+
+    private AudioSink openLine(AudioFormat lineFormat) throws LineUnavailableException {
+        int frameSize = Math.max(1, lineFormat.getFrameSize());
+        int lineBytes = (int) (lineFormat.getFrameRate() * LINE_BUFFER_MILLIS / 1000) * frameSize;
+        return sinks.open(lineFormat, Math.max(lineBytes, CHUNK_BYTES));
+    }
+
+    //Bloque alineado al tamaño de frame para no cortar muestras a la mitad
+    private int chunkSize(AudioFormat chunkFormat) {
+        int frameSize = Math.max(1, chunkFormat.getFrameSize());
+        return Math.max(frameSize, CHUNK_BYTES / frameSize * frameSize);
+    }
+
+    private void prepareBuffer() {
+        int chunk = chunkSize(format);
+        if (buffer == null || buffer.length != chunk) {
+            buffer = new byte[chunk];
+        }
+        chunkOffset = 0;
+        chunkLength = 0;
+    }
+
+    //Todo lo que ya está en el búfer circular deja de ser válido; se llama con el lock tomado
+    private void discardPending() {
+        generation++;
+        discardGeneration = generation;
+        discardUntil = ring.getWritePosition();
+        chunkOffset = 0;
+        chunkLength = 0;
+        endQueued = false;
+        //Un fundido a medias se corta, la posición nueva empieza limpia
+        closeFade();
+        LockSupport.unpark(outputThread);
+    }
+
+    //Se posiciona en un punto de la pista que suena: se reabre el stream, se saltan los bytes previos y se
+    //descarta lo ya decodificado. Como en open(), con el lock solo se corta el audio y se instala el stream nuevo;
+    //abrir, convertir y saltar hasta el punto pedido se hace fuera. Si mientras tanto llega otro seek, un open o un
+    //close, este se descarta
+    private void reopenAt(long microseconds, boolean stopping) throws IOException, UnsupportedAudioFileException {
+        long request;
+        long frame;
+        File reopenFile;
+        AudioFormat reopenFormat;
+        //Pista que el decodificador ya había empezado después de la que suena, se vuelve a precargar al final
+        File dropped = null;
+        synchronized (lock) {
+            if (line == null || playing == null) {
+                return;
+            }
+            if (stopping) {
+                running = false;
+            }
+            frame = (long) (microseconds / 1_000_000.0 * playing.format.getFrameRate());
+            if (playing.frameLength > 0) {
+                frame = Math.min(frame, playing.frameLength);
+            }
+            frame = Math.max(0, frame);
+
+            //Detenemos y vaciamos la línea para que no suene lo que quedó de la posición anterior
+            line.stop();
+            line.flush();
+            discardPending();
+            //Sin stream el decodificador espera hasta que se instale el nuevo
+            closeStream();
+
+            if (playing.file != null && !playing.file.equals(file)) {
+                dropped = file;
+                file = playing.file;
+                format = playing.format;
+                frameLength = playing.frameLength;
+                prepareBuffer();
+            }
+            decodedFrames = frame;
+            baseFrame = frame;
+            lineBaseFrame = line.getLongFramePosition();
+            publishClock();
+
+            request = ++openRequest;
+            reopenFile = file;
+            reopenFormat = format;
+        }
+
+        AudioInputStream source = null;
+        float sourceGain;
+        try {
+            //Si la pista se estaba convirtiendo (por ejemplo al formato de respaldo), se vuelve a convertir igual
+            source = FormatConverter.convert(openStream(reopenFile), reopenFormat);
+            long toSkip = frame * reopenFormat.getFrameSize();
+            while (toSkip > 0) {
+                long skipped = source.skip(toSkip);
+                if (skipped <= 0) {
+                    break;
+                }
+                toSkip -= skipped;
+            }
+            sourceGain = gainOf(reopenFile);
+        } catch (IOException | UnsupportedAudioFileException e) {
+            if (source != null) {
+                closeQuietly(source);
+            }
+            synchronized (lock) {
+                if (request != openRequest) {
+                    return;
+                }
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            if (request != openRequest) {
+                closeQuietly(source);
+                return;
+            }
+            stream = source;
+            trackGain = sourceGain;
+            if (running) {
+                line.start();
+            }
+            lock.notifyAll();
+            if (nextStream != null) {
+                dropped = null;
+            }
+        }
+
+        if (dropped != null) {
+            preload(dropped);
+        }
+    }
+
+    private void closeStream() {
+        if (stream != null) {
+            retire(stream);
+            stream = null;
+        }
+    }
+
+    //Cierra un stream que dejó de usarse; si el decodificador lo está leyendo, lo cierra él al terminar el bloque
+    //Se llama con el lock tomado
+    private void retire(AudioInputStream retiring) {
+        if (retiring == readingStream || retiring == readingFade) {
+            retired.add(retiring);
+        } else {
+            closeQuietly(retiring);
+        }
+    }
+
+    private static void closeQuietly(AudioInputStream closing) {
+        try {
+            closing.close();
+        } catch (IOException ignored) {
+            //El stream ya no se usa, no hay nada más que hacer
+        }
+    }
+
+    //Publica el reloj de la pista que suena para getPositionMicros(); se llama con el lock tomado tras cada cambio
+    private void publishClock() {
+        clock = line == null || playing == null ? null : new Clock(line, playing, baseFrame, lineBaseFrame);
+    }
+
+    private static long framesToMicros(long frames, AudioFormat framesFormat) {
+        if (framesFormat == null || framesFormat.getFrameRate() <= 0) {
+            return 0;
+        }
+        return (long) (frames * 1_000_000.0 / framesFormat.getFrameRate());
+    }
+
+    private void ensureThreads() {
+        if (decoderThread == null) {
+            decoderThread = new Thread(this::decodeLoop, "playback-decoder");
+            decoderThread.setDaemon(true);
+            decoderThread.setPriority(Thread.NORM_PRIORITY + 1);
+            decoderThread.start();
+        }
+        if (outputThread == null) {
+            outputThread = new Thread(this::outputLoop, "playback-output");
+            outputThread.setDaemon(true);
+            //La salida tiene la prioridad más alta, así la interfaz o el GC no la dejan sin audio
+            outputThread.setPriority(Thread.MAX_PRIORITY);
+            outputThread.start();
+        }
+    }
+
+    // ============ HILO DECODIFICADOR ============
+
+    //Lee bloques de la pista (o de la precargada) y los deja en el búfer circular
+    //Con el lock solo se decide qué leer y se entrega lo leído; la lectura en sí va fuera, así un disco lento
+    //no frena a open, seek o pause. Si la pista cambió mientras se leía (otra generación), el bloque se descarta
+    private void decodeLoop() {
+        while (true) {
+            AudioInputStream source = null;
+            AudioInputStream tail = null;
+            byte[] tailBuffer = null;
+            long tailFrames = 0;
+            int length = 0;
+            int primed = 0;
+            int frameSize;
+            boolean fresh;
+            long gen;
+            synchronized (lock) {
+                //Sin pista o ya marcado el final: no hay nada que decodificar
+                while (stream == null || endQueued) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                gen = generation;
+                fresh = chunkLength == 0;
+                if (fresh) {
+                    if (crossfadeDue()) {
+                        //La pista precargada pasa a ser la actual y la que se va queda sonando por debajo
+                        startCrossfade();
+                        primed = chunkLength;
+                    } else {
+                        source = stream;
+                        length = readLength();
+                        if (readBuffer.length < length) {
+                            readBuffer = new byte[buffer.length];
+                        }
+                    }
+                    if (fadeStream != null) {
+                        tail = fadeStream;
+                        tailBuffer = fadeBuffer;
+                        tailFrames = fadeFrames - fadePosition;
+                    }
+                }
+                frameSize = format.getFrameSize();
+                readingStream = source;
+                readingFade = tail;
+            }
+
+            int read = source != null ? read(source, readBuffer, length) : primed;
+            int tailBytes = 0;
+            if (tail != null && read > 0) {
+                tailBytes = readFully(tail, tailBuffer, (int) Math.min(read / frameSize, tailFrames) * frameSize);
+            }
+
+            boolean ringFull;
+            synchronized (lock) {
+                readingStream = null;
+                readingFade = null;
+                for (AudioInputStream closing : retired) {
+                    closeQuietly(closing);
+                }
+                retired.clear();
+                if (gen != generation) {
+                    //Hubo open, seek o close mientras se leía: el bloque es de una posición que ya no va
+                    continue;
+                }
+
+                if (fresh) {
+                    if (source != null) {
+                        if (read <= 0) {
+                            queueEndOfTrack();
+                            continue;
+                        }
+                        System.arraycopy(readBuffer, 0, buffer, 0, read);
+                        chunkOffset = 0;
+                        chunkLength = read;
+                        decodedFrames += read / frameSize;
+                    }
+                    if (tail != null && tail == fadeStream && chunkLength > 0) {
+                        mixFade(tailBytes);
+                    } else if (trackGain != 1.0f && chunkLength > 0) {
+                        applyTrackGain(chunkOffset, chunkLength);
+                    }
+                }
+
+                int written = ring.write(buffer, chunkOffset, chunkLength);
+                chunkOffset += written;
+                chunkLength -= written;
+                ringFull = chunkLength > 0;
+            }
+
+            LockSupport.unpark(outputThread);
+            if (ringFull) {
+                //El búfer circular está lleno, la salida nos despierta cuando libera espacio
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    //Fin del stream: si hay pista precargada se encadena, si no se marca el final; se llama con el lock tomado
+    private void queueEndOfTrack() {
+        if (nextStream != null) {
+            swapToPreloaded();
+            markers.add(new Marker(Marker.TRACK, ring.getWritePosition(), generation, file, format, frameLength));
+        } else {
+            markers.add(new Marker(Marker.END, ring.getWritePosition(), generation, null, null, 0));
+            endQueued = true;
+        }
+    }
+
+    //Convierte la pista precargada en la que se decodifica; se llama con el lock tomado
+    private void swapToPreloaded() {
+        closeStream();
+        stream = nextStream;
+        file = nextFile;
+        format = stream.getFormat();
+        frameLength = Math.max(0, stream.getFrameLength());
+        trackGain = nextTrackGain;
+
+        //Intercambiamos los búferes, el bloque precargado pasa a ser el actual sin copiarlo
+        byte[] previous = buffer;
+        buffer = nextBuffer;
+        nextBuffer = previous;
+        chunkOffset = 0;
+        chunkLength = nextPrimedBytes;
+        decodedFrames = nextPrimedBytes / format.getFrameSize();
+
+        nextStream = null;
+        nextFile = null;
+        nextPrimedBytes = 0;
+        endQueued = false;
+    }
+
+    //Bytes a leer en el próximo bloque; se llama con el lock tomado
+    private int readLength() {
+        int length = buffer.length;
+        //El bloque se corta justo donde empieza el fundido, así la mezcla arranca en el frame exacto
+        long fadeStart = crossfadeStartFrame();
+        if (fadeStart > decodedFrames) {
+            length = (int) Math.min(length, (fadeStart - decodedFrames) * format.getFrameSize());
+        }
+        return length;
+    }
+
+    //Una lectura del stream, fuera del lock; -1 si falló o se cerró mientras tanto
+    private static int read(AudioInputStream source, byte[] target, int length) {
+        try {
+            return source.read(target, 0, length);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    //Lee hasta completar los bytes pedidos o llegar al final, fuera del lock
+    private static int readFully(AudioInputStream source, byte[] target, int length) {
+        int total = 0;
+        try {
+            while (total < length) {
+                int read = source.read(target, total, length - total);
+                if (read <= 0) {
+                    break;
+                }
+                total += read;
+            }
+        } catch (IOException e) {
+            //Si la cola falla, la pista que entra sigue sola
+        }
+        return total;
+    }
+
+    // ============ FUNDIDO CRUZADO ============
+
+    //Frame de la pista actual donde empieza el fundido con la precargada, -1 si no corresponde
+    private long crossfadeStartFrame() {
+        if (crossfadeMillis <= 0 || fadeStream != null || nextStream == null || frameLength <= 0) {
+            return -1;
+        }
+        //Solo se mezclan pistas del mismo formato, si no se encadenan sin pausa como siempre
+        AudioFormat nextFormat = nextStream.getFormat();
+        if (!format.matches(nextFormat) || !PcmSamples.isSupported(format)) {
+            return -1;
+        }
+        long frames = (long) (crossfadeMillis / 1000.0 * format.getFrameRate());
+        //El fundido nunca ocupa más de la mitad de ninguna de las dos pistas
+        frames = Math.min(frames, frameLength / 2);
+        long nextLength = nextStream.getFrameLength();
+        if (nextLength > 0) {
+            frames = Math.min(frames, nextLength / 2);
+        }
+        return frames > 0 ? frameLength - frames : -1;
+    }
+
+    private boolean crossfadeDue() {
+        long fadeStart = crossfadeStartFrame();
+        return fadeStart >= 0 && decodedFrames >= fadeStart && decodedFrames < frameLength;
+    }
+
+    //Empieza a mezclar: la pista precargada pasa a ser la actual; se llama con el lock tomado
+    private void startCrossfade() {
+        AudioInputStream outgoing = stream;
+        float outgoingGain = trackGain;
+        long remaining = frameLength - decodedFrames;
+        //Se suelta el stream para que el cambio de pista no lo cierre, sigue sonando como cola
+        stream = null;
+        swapToPreloaded();
+
+        fadeStream = outgoing;
+        fadeTrackGain = outgoingGain;
+        fadeFrames = remaining;
+        fadePosition = 0;
+        activeCurve = fadeCurve;
+        int samples = buffer.length / Math.max(1, format.getSampleSizeInBits() / 8);
+        if (fadeBuffer == null || fadeBuffer.length != buffer.length) {
+            fadeBuffer = new byte[buffer.length];
+            mixIncoming = new float[samples];
+            mixOutgoing = new float[samples];
+        }
+
+        //Para la salida el cambio de pista ocurre donde empieza la mezcla
+        markers.add(new Marker(Marker.TRACK, ring.getWritePosition(), generation, file, format, frameLength));
+    }
+
+    //Mezcla el bloque actual de la pista que entra con la cola de la que se va, sin reservar memoria
+    //tailBytes es lo que el decodificador ya leyó de la cola en fadeBuffer
+    private void mixFade(int tailBytes) {
+        int frameSize = format.getFrameSize();
+        int channels = format.getChannels();
+        int frames = (int) Math.min(chunkLength / frameSize, fadeFrames - fadePosition);
+        int tailFrames = Math.min(frames, tailBytes / frameSize);
+
+        PcmSamples.toFloat(buffer, chunkOffset, mixIncoming, frames * channels, format);
+        PcmSamples.toFloat(fadeBuffer, 0, mixOutgoing, tailFrames * channels, format);
+
+        double step = 1.0 / fadeFrames;
+        for (int f = 0, i = 0; f < frames; f++) {
+            double t = (fadePosition + f) * step;
+            float gainIn;
+            float gainOut;
+            if (activeCurve == FadeCurve.EQUAL_POWER) {
+                //La suma de las potencias se mantiene constante, no hay un bajón a mitad del fundido
+                gainIn = (float) Math.sin(t * Math.PI / 2);
+                gainOut = (float) Math.cos(t * Math.PI / 2);
+            } else {
+                gainIn = (float) t;
+                gainOut = 1 - gainIn;
+            }
+            //Cada pista se mezcla ya normalizada con su propia ganancia
+            gainIn *= trackGain;
+            gainOut *= fadeTrackGain;
+            boolean hasTail = f < tailFrames;
+            for (int c = 0; c < channels; c++, i++) {
+                float mixed = mixIncoming[i] * gainIn;
+                if (hasTail) {
+                    mixed += mixOutgoing[i] * gainOut;
+                }
+                mixIncoming[i] = mixed;
+            }
+        }
+        PcmSamples.fromFloat(mixIncoming, frames * channels, buffer, chunkOffset, format);
+        //Si el fundido terminó a mitad del bloque, el resto lleva solo la ganancia de la pista nueva
+        int mixedBytes = frames * frameSize;
+        if (mixedBytes < chunkLength && trackGain != 1.0f) {
+            applyTrackGain(chunkOffset + mixedBytes, chunkLength - mixedBytes);
+        }
+
+        fadePosition += frames;
+        if (fadePosition >= fadeFrames || tailFrames < frames) {
+            closeFade();
+        }
+    }
+
+    //Normalización de volumen de la pista; corre en el decodificador, así no suma trabajo al hilo de salida
+    private void applyTrackGain(int offset, int length) {
+        if (!PcmSamples.isSupported(format)) {
+            return;
+        }
+        int count = length / format.getFrameSize() * format.getChannels();
+        if (gainSamples.length < count) {
+            gainSamples = new float[count];
+        }
+        PcmSamples.toFloat(buffer, offset, gainSamples, count, format);
+        for (int i = 0; i < count; i++) {
+            gainSamples[i] *= trackGain;
+        }
+        PcmSamples.fromFloat(gainSamples, count, buffer, offset, format);
+    }
+
+    private float gainOf(File audioFile) {
+        return loudness == null ? 1.0f : loudness.getPlaybackGain(audioFile);
+    }
+
+    private void closeFade() {
+        if (fadeStream != null) {
+            retire(fadeStream);
+            fadeStream = null;
+        }
+        fadeFrames = 0;
+        fadePosition = 0;
+    }
+
+    // ============ HILO DE SALIDA ============
+
+    //Pasa el audio del búfer circular a la línea; en estado estable no toma locks ni reserva memoria
+    private void outputLoop() {
+        boolean starved = false;
+        while (true) {
+            if (!running) {
+                synchronized (lock) {
+                    while (!running) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }
+
+            AudioSink target = line;
+            AudioFormat targetFormat = lineFormat;
+            if (target == null || targetFormat == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            applyDiscard(target);
+            long gen = generation;
+            int frameSize = Math.max(1, targetFormat.getFrameSize());
+
+            //Lo que quedó del bloque anterior va antes que cualquier marca o bloque nuevo
+            if (outputPending > 0) {
+                if (outputGeneration != gen) {
+                    //Hubo open, seek o close desde que se leyó: el resto ya no corresponde
+                    outputPending = 0;
+                } else {
+                    writeOutput(target, frameSize);
+                }
+                continue;
+            }
+
+            //Las marcas se procesan justo cuando la lectura llega a su posición
+            Marker marker = markers.peek();
+            long readPosition = ring.getReadPosition();
+            if (marker != null && marker.ringPosition <= readPosition) {
+                markers.poll();
+                if (marker.generation >= discardGeneration) {
+                    handleMarker(marker, target);
+                }
+                continue;
+            }
+
+            int max = outputBuffer.length / frameSize * frameSize;
+            if (marker != null) {
+                max = (int) Math.min(max, marker.ringPosition - readPosition);
+            }
+            int n = Math.min(max, ring.available());
+            n -= n % frameSize;
+            if (n > 0) {
+                n = ring.read(outputBuffer, 0, n);
+            }
+            LockSupport.unpark(decoderThread);
+
+            if (n <= 0) {
+                //El decodificador no alcanzó a llenar el búfer: se cuenta una vez por episodio
+                if (!starved && running && target.available() >= target.getBufferSize() - frameSize) {
+                    underruns.incrementAndGet();
+                    starved = true;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            starved = false;
+
+            try {
+                //Si hubo un seek mientras leíamos, este bloque ya no corresponde
+                if (gen == generation) {
+                    applyEffects(outputBuffer, n, targetFormat);
+                    outputOffset = 0;
+                    outputPending = n;
+                    outputGeneration = gen;
+                    writeOutput(target, frameSize);
+                }
+            } catch (RuntimeException e) {
+                //La línea se cerró mientras escribíamos, seguimos con el estado nuevo
+                outputPending = 0;
+            }
+        }
+    }
+
+    //Escribe lo pendiente de outputBuffer; la línea vuelve antes de tiempo si se detiene (pausa) o se vacía,
+    //así que solo se cuentan los frames que aceptó y el resto queda para cuando vuelva a sonar
+    private void writeOutput(AudioSink target, int frameSize) {
+        while (outputPending > 0 && running && outputGeneration == generation) {
+            int written = target.write(outputBuffer, outputOffset, outputPending);
+            written -= written % frameSize;
+            if (written <= 0) {
+                //La línea no acepta nada por ahora: se reintenta en la próxima vuelta
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                return;
+            }
+            outputOffset += written;
+            outputPending -= written;
+            lineWrittenFrames += written / frameSize;
+        }
+    }
+
+    //Ecualizador y volumen sobre el bloque, convirtiendo a float una sola vez; solo lo llama el hilo de salida
+    private void applyEffects(byte[] data, int length, AudioFormat blockFormat) {
+        //Sin bandas ni cambio de volumen el audio pasa tal cual, bit a bit
+        if ((equalizer.isIdle() && gain.isIdle()) || !PcmSamples.isSupported(blockFormat)) {
+            return;
+        }
+        int channels = blockFormat.getChannels();
+        int frames = length / blockFormat.getFrameSize();
+        int count = frames * channels;
+        PcmSamples.toFloat(data, 0, effectBuffer, count, blockFormat);
+        equalizer.process(effectBuffer, frames, channels, blockFormat.getFrameRate());
+        gain.process(effectBuffer, frames, channels, blockFormat.getFrameRate());
+        PcmSamples.fromFloat(effectBuffer, count, data, 0, blockFormat);
+    }
+
+    //Salta lo que quedó obsoleto por un open/seek/close; solo lo llama el hilo de salida
+    private void applyDiscard(AudioSink target) {
+        long discardGen = discardGeneration;
+        if (discardGen == appliedDiscardGeneration) {
+            return;
+        }
+        ring.skipTo(discardUntil);
+        Marker stale;
+        while ((stale = markers.peek()) != null && stale.generation < discardGen) {
+            markers.poll();
+        }
+        target.flush();
+        lineWrittenFrames = target.getLongFramePosition();
+        outputPending = 0;
+        appliedDiscardGeneration = discardGen;
+    }
+
+    //Cambio de pista encadenado por el decodificador
+    private void handleMarker(Marker marker, AudioSink target) {
+        if (marker.type == Marker.END) {
+            finishTrack(marker, target);
+            return;
+        }
+
+        //La nueva pista tiene otro formato: dejamos sonar la anterior y abrimos otra línea
+        boolean reopen = !marker.format.matches(lineFormat);
+        if (reopen) {
+            target.drain();
+        }
+
+        boolean advanced = false;
+        boolean finished = false;
+        synchronized (lock) {
+            if (marker.generation != generation || line != target) {
+                return;
+            }
+            if (reopen && !switchLine(target, marker.format)) {
+                finished = true;
+            }
+            if (!finished) {
+                //La pista nueva empieza en la línea justo después de lo último que se entregó
+                playing = marker;
+                baseFrame = 0;
+                lineBaseFrame = lineWrittenFrames;
+                publishClock();
+                advanced = true;
+            }
+        }
+
+        if (listener != null) {
+            if (advanced) {
+                listener.trackAdvanced(marker.file);
+            } else {
+                listener.trackFinished();
+            }
+        }
+    }
+
+    //No hay más audio de la pista: esperamos a que la línea suene lo que le queda
+    private void finishTrack(Marker marker, AudioSink target) {
+        try {
+            target.drain();
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        boolean finished = false;
+        File advanced = null;
+        synchronized (lock) {
+            //Si hubo seek, stop o cambio de pista mientras tanto, la marca ya no aplica
+            if (marker.generation != generation || line != target) {
+                return;
+            }
+            if (!running) {
+                //Se pausó durante el drain: dejamos la marca para cuando se reanude
+                markers.add(marker);
+                return;
+            }
+            if (nextStream != null && (nextStream.getFormat().matches(lineFormat) || switchLine(target, nextStream.getFormat()))) {
+                //Se precargó una pista después de marcar el final, se encadena ahora
+                swapToPreloaded();
+                playing = new Marker(Marker.TRACK, ring.getWritePosition(), generation, file, format, frameLength);
+                baseFrame = 0;
+                lineBaseFrame = lineWrittenFrames;
+                publishClock();
+                advanced = file;
+                lock.notifyAll();
+            } else {
+                finished = true;
+                running = false;
+                target.stop();
+            }
+        }
+
+        if (listener != null) {
+            if (advanced != null) {
+                listener.trackAdvanced(advanced);
+            } else if (finished) {
+                listener.trackFinished();
+            }
+        }
+    }
+
+    //Reemplaza la línea por una con otro formato; se llama con el lock tomado y la línea anterior ya vacía
+    private boolean switchLine(AudioSink target, AudioFormat newFormat) {
+        try {
+            AudioSink newLine = openLine(newFormat);
+            target.close();
+            lineFormat = newFormat;
+            line = newLine;
+            lineWrittenFrames = 0;
+            if (running) {
+                newLine.start();
+            }
+            return true;
+        } catch (LineUnavailableException e) {
+            //Sin línea para el nuevo formato, la reproducción termina aquí
+            running = false;
+            target.stop();
+            clearPreload();
+            return false;
+        }
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Qué frame de la pista que suena corresponde a qué posición de la línea; inmutable, se reemplaza entero
+    private static final class Clock {
+        final AudioSink line;
+        final Marker playing;
+        final long baseFrame;
+        final long lineBaseFrame;
+
+        Clock(AudioSink line, Marker playing, long baseFrame, long lineBaseFrame) {
+            this.line = line;
+            this.playing = playing;
+            this.baseFrame = baseFrame;
+            this.lineBaseFrame = lineBaseFrame;
+        }
+    }
+
+    //Marca en una posición del búfer circular, la salida la procesa al llegar a esa posición
+    private static final class Marker {
+        static final int TRACK = 0;
+        static final int END = 1;
+
+        final int type;
+        final long ringPosition;
+        final long generation;
+        final File file;
+        final AudioFormat format;
+        final long frameLength;
+
+        Marker(int type, long ringPosition, long generation, File file, AudioFormat format, long frameLength) {
+            this.type = type;
+            this.ringPosition = ringPosition;
+            this.generation = generation;
+            this.file = file;
+            this.format = format;
+            this.frameLength = frameLength;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.File;
+
+//Historial de lo que realmente sonó, para que "anterior" vuelva a la canción de antes aunque haya modo aleatorio o cola
+//Es un búfer circular de capacidad fija: registrar una canción no reserva memoria y la más vieja se pisa al llenarse
+//Las consultas son por antigüedad (0 = la más reciente) y leen directo de los arreglos, sin copiar
+public class PlaybackHistory {
+    //Atributos
+
+    //Valor de entrada para las canciones que no estaban en la playlist (por ejemplo, las de la cola)
+    public static final int NO_ENTRY = -1;
+
+    private final File[] files;
+    //Entrada de la playlist (Playlist.entryAt) que sonó, sigue siendo válida aunque la lista cambie
+    private final int[] entries;
+    private final long[] timestamps;
+    //Próxima posición a escribir y cuántas canciones hay guardadas
+    private int head = 0;
+    private int count = 0;
+    //Antigüedad de la canción donde está parado el usuario; mayor que 0 después de ir hacia atrás
+    private int cursor = 0;
+
+    public PlaybackHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacidad del historial debe ser positiva");
+        }
+        files = new File[capacity];
+        entries = new int[capacity];
+        timestamps = new long[capacity];
+    }
+
+    //Registra una canción nueva; si el usuario había vuelto atrás, lo que venía después se descarta
+    public void record(File file, int entry, long timeMillis) {
+        if (cursor > 0) {
+            for (int age = 0; age < cursor; age++) {
+                files[slot(age)] = null;
+            }
+            head = slot(cursor - 1);
+            count -= cursor;
+            cursor = 0;
+        }
+        files[head] = file;
+        entries[head] = entry;
+        timestamps[head] = timeMillis;
+        head = (head + 1) % files.length;
+        count = Math.min(count + 1, files.length);
+    }
+
+    //Agrega una canción antes de la más vieja y se para en ella; si el historial está lleno no hay lugar
+    public boolean recordOlder(File file, int entry, long timeMillis) {
+        if (count == files.length) {
+            return false;
+        }
+        count++;
+        int slot = slot(count - 1);
+        files[slot] = file;
+        entries[slot] = entry;
+        timestamps[slot] = timeMillis;
+        cursor = count - 1;
+        return true;
+    }
+
+    public boolean canGoBack() {
+        return cursor + 1 < count;
+    }
+
+    public boolean canGoForward() {
+        return cursor > 0;
+    }
+
+    //Retrocede una canción y devuelve su antigüedad
+    public int back() {
+        if (!canGoBack()) {
+            throw new IllegalStateException("No hay canciones anteriores en el historial");
+        }
+        return ++cursor;
+    }
+
+    //Avanza una canción y devuelve su antigüedad
+    public int forward() {
+        if (!canGoForward()) {
+            throw new IllegalStateException("No hay canciones siguientes en el historial");
+        }
+        return --cursor;
+    }
+
+    //Antigüedad de la canción actual dentro del historial
+    public int getCursor() {
+        return cursor;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return files.length;
+    }
+
+    public File getFile(int age) {
+        return files[checkedSlot(age)];
+    }
+
+    public int getEntry(int age) {
+        return entries[checkedSlot(age)];
+    }
+
+    //Momento en que empezó a sonar, en milisegundos desde 1970
+    public long getTimestamp(int age) {
+        return timestamps[checkedSlot(age)];
+    }
+
+    public void clear() {
+        for (int age = 0; age < count; age++) {
+            files[slot(age)] = null;
+        }
+        head = 0;
+        count = 0;
+        cursor = 0;
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private int checkedSlot(int age) {
+        if (age < 0 || age >= count) {
+            throw new IndexOutOfBoundsException("Antigüedad " + age + ", historial de " + count);
+        }
+        return slot(age);
+    }
+
+    private int slot(int age) {
+        return Math.floorMod(head - 1 - age, files.length);
+    }
+}
@@ -0,0 +1,109 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+//Avisos del reproductor hacia la interfaz, para que la ventana no tenga que preguntar cada tanto; todo en el hilo de Swing
+//Estado: MusicPlayer publica una foto nueva en cada cambio. Las que se publican dentro de un mismo evento de la
+//interfaz (empezar a cargar, precargar la siguiente...) se juntan: los listeners reciben un solo aviso con la
+//última foto y todos los cambios de la playlist en orden.
+//Posición: mientras la canción suena, un Timer a la frecuencia de la pantalla avisa la posición si cambió.
+//En pausa, detenido o sin canción el Timer está parado y no se gasta nada hasta el próximo cambio de estado.
+public final class PlayerEvents {
+    //Atributos
+
+    //Avisos de posición por segundo mientras suena, se puede cambiar con -Dmusicplayer.ui.fps
+    private static final int FRAME_RATE = Integer.getInteger("musicplayer.ui.fps", 60);
+
+    private final List<MusicPlayer.Listener> listeners = new ArrayList<>();
+    private final List<MusicPlayer.PositionListener> positionListeners = new ArrayList<>();
+    private final LongSupplier position;
+    private final LongSupplier length;
+    private final Timer ticker;
+
+    //Última foto entregada y la que espera su entrega (null si no hay), con los cambios de la playlist juntados
+    private PlayerState delivered;
+    private PlayerState pending;
+    private final List<PlaylistChange> pendingChanges = new ArrayList<>();
+    //Última posición avisada, no se repite si no cambió
+    private long lastPosition = -1;
+    private long lastLength = -1;
+
+    //position y length se leen en cada aviso de posición, en microsegundos
+    PlayerEvents(PlayerState initial, LongSupplier position, LongSupplier length) {
+        this.delivered = initial;
+        this.position = position;
+        this.length = length;
+        //Si la interfaz se atrasa, los avisos pendientes del Timer se juntan en uno
+        this.ticker = new Timer(Math.max(1, 1000 / FRAME_RATE), e -> publishPosition());
+        ticker.setCoalesce(true);
+    }
+
+    public void addListener(MusicPlayer.Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MusicPlayer.Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void addPositionListener(MusicPlayer.PositionListener listener) {
+        positionListeners.add(listener);
+    }
+
+    public void removePositionListener(MusicPlayer.PositionListener listener) {
+        positionListeners.remove(listener);
+    }
+
+    //Si el Timer de posición está corriendo, o sea si la última foto entregada estaba sonando
+    public boolean isTicking() {
+        return ticker.isRunning();
+    }
+
+    // ============ PUBLICACIÓN ============
+
+    //Foto nueva; se entrega al terminar el evento actual de la interfaz, junto con las que lleguen antes de eso
+    void publish(PlayerState state, List<PlaylistChange> changes) {
+        if (pending == null) {
+            SwingUtilities.invokeLater(this::deliver);
+        }
+        pending = state;
+        pendingChanges.addAll(changes);
+    }
+
+    //Avisa la posición actual si cambió; además del Timer, se llama al mover la posición a mano (en pausa no hay Timer)
+    void publishPosition() {
+        long now = position.getAsLong();
+        long total = length.getAsLong();
+        if (now == lastPosition && total == lastLength) {
+            return;
+        }
+        lastPosition = now;
+        lastLength = total;
+        for (MusicPlayer.PositionListener listener : positionListeners) {
+            listener.positionChanged(now, total);
+        }
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private void deliver() {
+        PlayerState previous = delivered;
+        delivered = pending;
+        pending = null;
+        List<PlaylistChange> changes = List.copyOf(pendingChanges);
+        pendingChanges.clear();
+        for (MusicPlayer.Listener listener : listeners) {
+            listener.stateChanged(previous, delivered, changes);
+        }
+        //El Timer corre solo mientras suena; al cambiar de canción, pausar o detener la posición se avisa una vez
+        if (delivered.isPlaying()) {
+            if (!ticker.isRunning()) {
+                ticker.start();
+            }
+        } else {
+            ticker.stop();
+        }
+        publishPosition();
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.File;
+import java.util.List;
+
+//Foto inmutable del estado del reproductor: playlist, canción actual, cola y modos
+//MusicPlayer publica una nueva en cada cambio; cualquier hilo puede leerla sin locks y todos sus datos
+//corresponden al mismo momento (el índice actual es válido para la playlist que trae, o -1 como se explica abajo)
+public final class PlayerState {
+    //Atributos
+
+    static final PlayerState EMPTY = new PlayerState(0, PlaylistSnapshot.empty(), 0, false,
+            null, null, null, List.of(), false, false, false, false);
+
+    private final long version;
+    private final PlaylistSnapshot playlist;
+    private final int currentIndex;
+    private final boolean playingQueued;
+    private final File currentFile;
+    private final File loadingFile;
+    private final File nextFile;
+    private final List<File> upNext;
+    private final boolean playing;
+    private final boolean paused;
+    private final boolean repeatMode;
+    private final boolean shuffleMode;
+
+    PlayerState(long version, PlaylistSnapshot playlist, int currentIndex, boolean playingQueued,
+                File currentFile, File loadingFile, File nextFile, List<File> upNext,
+                boolean playing, boolean paused, boolean repeatMode, boolean shuffleMode) {
+        this.version = version;
+        this.playlist = playlist;
+        this.currentIndex = currentIndex;
+        this.playingQueued = playingQueued;
+        this.currentFile = currentFile;
+        this.loadingFile = loadingFile;
+        this.nextFile = nextFile;
+        this.upNext = upNext;
+        this.playing = playing;
+        this.paused = paused;
+        this.repeatMode = repeatMode;
+        this.shuffleMode = shuffleMode;
+    }
+
+    //Getters
+
+    //Crece con cada publicación, dos fotos con la misma versión son iguales
+    public long getVersion() {
+        return version;
+    }
+
+    public PlaylistSnapshot getPlaylist() {
+        return playlist;
+    }
+
+    //Canción de la playlist donde va la reproducción; next() sigue con la de después
+    //Es -1 solo si la que sonaba se quitó de la lista estando primera (o la lista quedó vacía): entonces
+    //isPlayingQueued() es true y la siguiente es la 0. Para marcar una fila conviene getPlayingIndex()
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    //Fila de la playlist que está sonando, -1 si la actual salió de la cola o ya no está en la lista
+    public int getPlayingIndex() {
+        return playingQueued || currentIndex < 0 ? -1 : currentIndex;
+    }
+
+    //Si la canción actual salió de la cola y no de la playlist
+    public boolean isPlayingQueued() {
+        return playingQueued;
+    }
+
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    //Canción que se está abriendo en segundo plano, null si no hay ninguna
+    public File getLoadingFile() {
+        return loadingFile;
+    }
+
+    //Qué sonará después, null si no hay ninguna
+    public File getNextFile() {
+        return nextFile;
+    }
+
+    //Canciones pedidas en el orden en que van a sonar (lista inmutable)
+    public List<File> getUpNext() {
+        return upNext;
+    }
+
+    //Si el motor estaba sonando al publicar la foto; mientras suena la posición llega aparte, a la frecuencia de la pantalla
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isRepeatMode() {
+        return repeatMode;
+    }
+
+    public boolean isShuffleMode() {
+        return shuffleMode;
+    }
+}
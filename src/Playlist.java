@@ -0,0 +1,580 @@
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+//Lista de reproducción indexada para listas de millones de canciones
+//Cada archivo distinto es un ID entero de pista (el de TrackTable) y cada posición de la lista es una entrada con su
+//propio ID, así una canción repetida tiene dos entradas distinguibles. El orden se guarda en un árbol de estadísticas
+//de orden (treap implícito) sobre arreglos de enteros: insertar, quitar y ubicar una posición cuesta O(log n), y saber
+//si una canción está en la lista es O(1) mirando la primera entrada de su ID de pista. La lista no guarda File:
+//get() lo arma desde TrackTable.
+//Cada cambio publica además una copia inmutable (PlaylistSnapshot) que otros hilos pueden leer sin locks,
+//y se anota (PlaylistChange) para que la vista redibuje solo lo que cambió;
+//la lista en sí solo se modifica desde el hilo de Swing.
+public class Playlist extends AbstractList<File> {
+    //Atributos
+
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_PENDING_CHANGES = 256;
+
+    // ---- Pistas: los IDs de TrackTable, los mismos en todo el reproductor ----
+    private final TrackTable table = TrackTable.shared();
+    //Primera entrada de cada pista (NIL si no está en la lista), las demás se encadenan con nextSame/prevSame
+    private int[] firstEntry = newFirstEntries(INITIAL_CAPACITY);
+
+    // ---- Entradas: nodos del árbol, el ID de la entrada es su índice en los arreglos ----
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] subtreeSize = new int[INITIAL_CAPACITY];
+    private int[] priority = new int[INITIAL_CAPACITY];
+    //Pista de cada entrada, NIL si la entrada está libre
+    private int[] track = new int[INITIAL_CAPACITY];
+    private int[] nextSame = new int[INITIAL_CAPACITY];
+    private int[] prevSame = new int[INITIAL_CAPACITY];
+    private int entryCapacity = 0;
+    //Entradas liberadas, se reutilizan antes de crecer los arreglos
+    private int[] freeEntries = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+
+    private int root = NIL;
+    private final Random random = new Random();
+    //Resultado de split(), evita crear un objeto por cada corte
+    private int splitLeft;
+    private int splitRight;
+    //Última versión publicada; volatile para que cualquier hilo vea una copia completa
+    private volatile PlaylistSnapshot snapshot = PlaylistSnapshot.empty();
+    //Cambios desde el último drainChanges(); si nadie los pide, al pasar el límite se resumen en un RESET
+    private final List<PlaylistChange> changes = new ArrayList<>();
+    private boolean changesOverflowed = false;
+
+    public Playlist() {
+    }
+
+    //Copia inmutable del estado actual, O(1): comparte los nodos con las demás versiones
+    public PlaylistSnapshot snapshot() {
+        return snapshot;
+    }
+
+    //Cambios desde la última llamada, en orden; aplicados sobre la lista de entonces dan la lista actual
+    public List<PlaylistChange> drainChanges() {
+        List<PlaylistChange> drained = changesOverflowed ? List.of(PlaylistChange.RESET) : List.copyOf(changes);
+        changes.clear();
+        changesOverflowed = false;
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        return subtreeSize(root);
+    }
+
+    @Override
+    public File get(int index) {
+        return table.file(trackAt(index));
+    }
+
+    //ID de pista en esa posición, sin armar el File
+    public int trackAt(int index) {
+        checkIndex(index, size());
+        return track[entryAt(index)];
+    }
+
+    @Override
+    public File set(int index, File file) {
+        checkIndex(index, size());
+        int entry = entryAt(index);
+        File previous = table.file(track[entry]);
+        int trackId = trackIdOf(file);
+        unlinkTrack(entry);
+        linkTrack(entry, trackId);
+        snapshot = snapshot.withReplaced(index, trackId);
+        recordChange(new PlaylistChange(PlaylistChange.Type.REPLACED, index, 1));
+        return previous;
+    }
+
+    @Override
+    public void add(int index, File file) {
+        checkIndex(index, size() + 1);
+        int trackId = trackIdOf(file);
+        int entry = allocateEntry(trackId);
+        if (index == size()) {
+            //Agregar al final es lo más común, no hace falta cortar el árbol
+            root = merge(root, entry);
+        } else {
+            split(root, index);
+            int rest = splitRight;
+            root = merge(merge(splitLeft, entry), rest);
+        }
+        parent[root] = NIL;
+        snapshot = snapshot.withInserted(index, trackId);
+        recordChange(new PlaylistChange(PlaylistChange.Type.INSERTED, index, 1));
+        modCount++;
+    }
+
+    //Inserta todas juntas en O(n + log n): se arma un árbol con las nuevas y se une una sola vez
+    @Override
+    public boolean addAll(int index, Collection<? extends File> files) {
+        checkIndex(index, size() + 1);
+        if (files.isEmpty()) {
+            return false;
+        }
+        int[] trackIds = new int[files.size()];
+        int i = 0;
+        for (File file : files) {
+            trackIds[i++] = trackIdOf(file);
+        }
+        int added = build(trackIds);
+        if (index == size()) {
+            root = merge(root, added);
+        } else {
+            split(root, index);
+            int rest = splitRight;
+            root = merge(merge(splitLeft, added), rest);
+        }
+        parent[root] = NIL;
+        snapshot = snapshot.withInsertedAll(index, trackIds);
+        recordChange(new PlaylistChange(PlaylistChange.Type.INSERTED, index, trackIds.length));
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends File> files) {
+        return addAll(size(), files);
+    }
+
+    @Override
+    public File remove(int index) {
+        checkIndex(index, size());
+        split(root, index);
+        int before = splitLeft;
+        split(splitRight, 1);
+        int entry = splitLeft;
+        root = merge(before, splitRight);
+        if (root != NIL) {
+            parent[root] = NIL;
+        }
+        File removed = table.file(track[entry]);
+        freeEntry(entry);
+        snapshot = snapshot.withRemoved(index);
+        recordChange(new PlaylistChange(PlaylistChange.Type.REMOVED, index, 1));
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (root != NIL) {
+            recordChange(new PlaylistChange(PlaylistChange.Type.REMOVED, 0, size()));
+        }
+        root = NIL;
+        Arrays.fill(firstEntry, NIL);
+        entryCapacity = 0;
+        freeCount = 0;
+        snapshot = snapshot.cleared();
+        modCount++;
+    }
+
+    //O(1): consulta la primera entrada de la pista, no recorre la lista
+    @Override
+    public boolean contains(Object o) {
+        int id = trackId(o);
+        return id >= 0 && firstEntry[id] != NIL;
+    }
+
+    //Primera posición del archivo; O(log n) por cada vez que la canción está repetida
+    @Override
+    public int indexOf(Object o) {
+        int id = trackId(o);
+        if (id < 0) {
+            return -1;
+        }
+        int best = -1;
+        for (int entry = firstEntry[id]; entry != NIL; entry = nextSame[entry]) {
+            int position = indexOfEntry(entry);
+            if (best < 0 || position < best) {
+                best = position;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int id = trackId(o);
+        if (id < 0) {
+            return -1;
+        }
+        int best = -1;
+        for (int entry = firstEntry[id]; entry != NIL; entry = nextSame[entry]) {
+            best = Math.max(best, indexOfEntry(entry));
+        }
+        return best;
+    }
+
+    //Recorre el árbol en orden, O(1) amortizado por elemento
+    @Override
+    public Iterator<File> iterator() {
+        return new Iterator<File>() {
+            private int next = leftmost(root);
+            private int lastIndex = -1;
+            private int nextIndex = 0;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != NIL;
+            }
+
+            @Override
+            public File next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == NIL) {
+                    throw new NoSuchElementException();
+                }
+                File file = table.file(track[next]);
+                next = successor(next);
+                lastIndex = nextIndex++;
+                return file;
+            }
+
+            @Override
+            public void remove() {
+                if (lastIndex < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                Playlist.this.remove(lastIndex);
+                nextIndex = lastIndex;
+                lastIndex = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    // ============ ENTRADAS Y PISTAS ============
+
+    //ID de la entrada en esa posición; sigue identificando a la misma entrada aunque se inserte o quite antes
+    public int entryAt(int index) {
+        checkIndex(index, size());
+        int node = root;
+        while (true) {
+            int leftSize = subtreeSize(left[node]);
+            if (index < leftSize) {
+                node = left[node];
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    //Posición actual de la entrada, -1 si ya no está en la lista; O(log n) subiendo hasta la raíz
+    public int indexOfEntry(int entry) {
+        if (entry < 0 || entry >= entryCapacity || track[entry] == NIL) {
+            return -1;
+        }
+        int position = subtreeSize(left[entry]);
+        for (int node = entry; parent[node] != NIL; node = parent[node]) {
+            int up = parent[node];
+            if (right[up] == node) {
+                position += subtreeSize(left[up]) + 1;
+            }
+        }
+        return position;
+    }
+
+    //Archivo de una entrada, null si ya no está en la lista
+    public File fileOfEntry(int entry) {
+        if (entry < 0 || entry >= entryCapacity || track[entry] == NIL) {
+            return null;
+        }
+        return table.file(track[entry]);
+    }
+
+    //ID de pista de una entrada, -1 si ya no está en la lista
+    public int trackOfEntry(int entry) {
+        if (entry < 0 || entry >= entryCapacity) {
+            return NIL;
+        }
+        return track[entry];
+    }
+
+    //ID de pista del archivo, -1 si nunca estuvo en la lista
+    public int trackId(Object file) {
+        if (!(file instanceof File)) {
+            return -1;
+        }
+        int id = table.find((File) file);
+        return id >= 0 && id < firstEntry.length ? id : -1;
+    }
+
+    public File trackFile(int trackId) {
+        return trackId >= 0 && trackId < firstEntry.length ? table.file(trackId) : null;
+    }
+
+    //Posiciones de todas las entradas de esa pista, sin orden; O(log n) por cada vez que la canción está repetida
+    public int[] indexesOf(int trackId) {
+        if (trackId < 0 || trackId >= firstEntry.length) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int entry = firstEntry[trackId]; entry != NIL; entry = nextSame[entry]) {
+            count++;
+        }
+        int[] positions = new int[count];
+        int i = 0;
+        for (int entry = firstEntry[trackId]; entry != NIL; entry = nextSame[entry]) {
+            positions[i++] = indexOfEntry(entry);
+        }
+        return positions;
+    }
+
+    //Cuántas veces aparece el archivo en la lista
+    public int occurrences(File file) {
+        int id = trackId(file);
+        int count = 0;
+        if (id >= 0) {
+            for (int entry = firstEntry[id]; entry != NIL; entry = nextSame[entry]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Junta el cambio con el anterior si son entradas seguidas (agregar al final, quitar de atrás hacia adelante)
+    private void recordChange(PlaylistChange change) {
+        if (changesOverflowed) {
+            return;
+        }
+        if (!changes.isEmpty()) {
+            PlaylistChange merged = changes.get(changes.size() - 1).mergeWith(change);
+            if (merged != null) {
+                changes.set(changes.size() - 1, merged);
+                return;
+            }
+        }
+        if (changes.size() == MAX_PENDING_CHANGES) {
+            changes.clear();
+            changesOverflowed = true;
+            return;
+        }
+        changes.add(change);
+    }
+
+    private int trackIdOf(File file) {
+        if (file == null) {
+            throw new NullPointerException("La playlist no admite archivos nulos");
+        }
+        int id = table.intern(file);
+        if (id >= firstEntry.length) {
+            int capacity = Math.max(id + 1, firstEntry.length + (firstEntry.length >> 1));
+            int old = firstEntry.length;
+            firstEntry = Arrays.copyOf(firstEntry, capacity);
+            Arrays.fill(firstEntry, old, capacity, NIL);
+        }
+        return id;
+    }
+
+    private static int[] newFirstEntries(int capacity) {
+        int[] entries = new int[capacity];
+        Arrays.fill(entries, NIL);
+        return entries;
+    }
+
+    private int allocateEntry(int trackId) {
+        int entry;
+        if (freeCount > 0) {
+            entry = freeEntries[--freeCount];
+        } else {
+            if (entryCapacity == left.length) {
+                growEntries(left.length + (left.length >> 1));
+            }
+            entry = entryCapacity++;
+        }
+        left[entry] = NIL;
+        right[entry] = NIL;
+        parent[entry] = NIL;
+        subtreeSize[entry] = 1;
+        priority[entry] = random.nextInt();
+        linkTrack(entry, trackId);
+        return entry;
+    }
+
+    private void freeEntry(int entry) {
+        unlinkTrack(entry);
+        track[entry] = NIL;
+        if (freeCount == freeEntries.length) {
+            freeEntries = Arrays.copyOf(freeEntries, freeEntries.length + (freeEntries.length >> 1));
+        }
+        freeEntries[freeCount++] = entry;
+    }
+
+    private void growEntries(int capacity) {
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        subtreeSize = Arrays.copyOf(subtreeSize, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        track = Arrays.copyOf(track, capacity);
+        nextSame = Arrays.copyOf(nextSame, capacity);
+        prevSame = Arrays.copyOf(prevSame, capacity);
+    }
+
+    //Agrega la entrada a la cadena de entradas de su pista
+    private void linkTrack(int entry, int trackId) {
+        track[entry] = trackId;
+        prevSame[entry] = NIL;
+        nextSame[entry] = firstEntry[trackId];
+        if (firstEntry[trackId] != NIL) {
+            prevSame[firstEntry[trackId]] = entry;
+        }
+        firstEntry[trackId] = entry;
+    }
+
+    private void unlinkTrack(int entry) {
+        int trackId = track[entry];
+        if (prevSame[entry] != NIL) {
+            nextSame[prevSame[entry]] = nextSame[entry];
+        } else {
+            firstEntry[trackId] = nextSame[entry];
+        }
+        if (nextSame[entry] != NIL) {
+            prevSame[nextSame[entry]] = prevSame[entry];
+        }
+    }
+
+    private int subtreeSize(int node) {
+        return node == NIL ? 0 : subtreeSize[node];
+    }
+
+    //Recalcula el tamaño del subárbol y los padres de sus hijos
+    private void update(int node) {
+        int l = left[node];
+        int r = right[node];
+        subtreeSize[node] = 1 + subtreeSize(l) + subtreeSize(r);
+        if (l != NIL) {
+            parent[l] = node;
+        }
+        if (r != NIL) {
+            parent[r] = node;
+        }
+    }
+
+    //Corta el árbol en las primeras k entradas (splitLeft) y el resto (splitRight)
+    private void split(int node, int k) {
+        if (node == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (subtreeSize(left[node]) < k) {
+            split(right[node], k - subtreeSize(left[node]) - 1);
+            right[node] = splitLeft;
+            update(node);
+            parent[node] = NIL;
+            splitLeft = node;
+        } else {
+            split(left[node], k);
+            left[node] = splitRight;
+            update(node);
+            parent[node] = NIL;
+            splitRight = node;
+        }
+    }
+
+    //Une dos árboles conservando el orden: todas las entradas de a van antes que las de b
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    //Árbol cartesiano en orden con una pila: cada entrada nueva baja a su izquierda las de menor prioridad
+    private int build(int[] trackIds) {
+        int[] stack = new int[64];
+        int depth = 0;
+        if (entryCapacity + trackIds.length > left.length) {
+            growEntries(entryCapacity + trackIds.length);
+        }
+        for (int trackId : trackIds) {
+            int entry = allocateEntry(trackId);
+            int last = NIL;
+            while (depth > 0 && priority[stack[depth - 1]] < priority[entry]) {
+                last = stack[--depth];
+                //Su subárbol ya no cambia, se puede calcular el tamaño
+                update(last);
+            }
+            left[entry] = last;
+            if (depth > 0) {
+                right[stack[depth - 1]] = entry;
+            }
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = entry;
+        }
+        while (depth > 1) {
+            update(stack[--depth]);
+        }
+        update(stack[0]);
+        parent[stack[0]] = NIL;
+        return stack[0];
+    }
+
+    private int leftmost(int node) {
+        if (node == NIL) {
+            return NIL;
+        }
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return node;
+    }
+
+    private int successor(int node) {
+        if (right[node] != NIL) {
+            return leftmost(right[node]);
+        }
+        int up = parent[node];
+        while (up != NIL && right[up] == node) {
+            node = up;
+            up = parent[node];
+        }
+        return up;
+    }
+
+    private static void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Índice " + index + ", tamaño " + limit);
+        }
+    }
+}
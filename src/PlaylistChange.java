@@ -0,0 +1,57 @@
+//Un cambio de la playlist: entradas agregadas, quitadas o reemplazadas a partir de una posición
+//La vista los aplica en orden para redibujar solo las filas que cambiaron en lugar de toda la lista.
+//RESET significa que se juntaron demasiados cambios sin que nadie los pidiera: hay que volver a mirar la lista entera
+public final class PlaylistChange {
+    //Atributos
+
+    public enum Type { INSERTED, REMOVED, REPLACED, RESET }
+
+    static final PlaylistChange RESET = new PlaylistChange(Type.RESET, 0, 0);
+
+    private final Type type;
+    private final int index;
+    private final int count;
+
+    PlaylistChange(Type type, int index, int count) {
+        this.type = type;
+        this.index = index;
+        this.count = count;
+    }
+
+    //Getters
+
+    public Type getType() {
+        return type;
+    }
+
+    //Primera posición afectada, contada sobre la lista como estaba justo antes de este cambio
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    //Si el cambio siguiente se puede juntar con este en uno solo (agregar o quitar entradas seguidas)
+    PlaylistChange mergeWith(PlaylistChange next) {
+        if (type != next.type) {
+            return null;
+        }
+        if (type == Type.INSERTED && next.index >= index && next.index <= index + count) {
+            return new PlaylistChange(type, index, count + next.count);
+        }
+        if (type == Type.REMOVED && next.index == index) {
+            return new PlaylistChange(type, index, count + next.count);
+        }
+        if (type == Type.REMOVED && next.index + next.count == index) {
+            return new PlaylistChange(type, next.index, count + next.count);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + index + ", " + count + ")";
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Copia inmutable de la playlist en un momento dado, se puede leer desde cualquier hilo sin locks
+//Es un treap implícito persistente: cada cambio copia solo el camino desde la raíz hasta la posición tocada
+//(O(log n) nodos) y comparte el resto con la versión anterior, así publicar una versión nueva nunca copia la lista
+//Los nodos guardan el ID de pista de TrackTable; el File se arma al pedirlo
+public final class PlaylistSnapshot extends AbstractList<File> {
+    //Atributos
+
+    private static final PlaylistSnapshot EMPTY = new PlaylistSnapshot(null, 0);
+
+    private final Node root;
+    //Cada cambio de la playlist produce una versión mayor, sirve para saber si algo cambió sin comparar listas
+    private final long version;
+
+    private PlaylistSnapshot(Node root, long version) {
+        this.root = root;
+        this.version = version;
+    }
+
+    public static PlaylistSnapshot empty() {
+        return EMPTY;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        return Node.size(root);
+    }
+
+    //O(log n)
+    @Override
+    public File get(int index) {
+        return TrackTable.shared().file(trackAt(index));
+    }
+
+    //ID de pista en esa posición, sin armar el File
+    public int trackAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Índice " + index + ", tamaño " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = Node.size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.track;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    //Recorrido en orden con una pila, O(1) amortizado por elemento; nunca falla porque la copia no cambia
+    @Override
+    public Iterator<File> iterator() {
+        return new Iterator<File>() {
+            private final ArrayDeque<Node> path = new ArrayDeque<>();
+            private Node pending = root;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || !path.isEmpty();
+            }
+
+            @Override
+            public File next() {
+                while (pending != null) {
+                    path.push(pending);
+                    pending = pending.left;
+                }
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                pending = node.right;
+                return TrackTable.shared().file(node.track);
+            }
+        };
+    }
+
+    // ============ VERSIONES NUEVAS (solo Playlist) ============
+
+    PlaylistSnapshot withInserted(int index, int track) {
+        Node node = new Node(track, ThreadLocalRandom.current().nextInt(), null, null);
+        return new PlaylistSnapshot(insert(root, index, node), version + 1);
+    }
+
+    PlaylistSnapshot withInsertedAll(int index, int[] tracks) {
+        Node built = build(tracks, 0, tracks.length);
+        Split split = new Split();
+        split(root, index, split);
+        return new PlaylistSnapshot(merge(merge(split.left, built), split.right), version + 1);
+    }
+
+    PlaylistSnapshot withRemoved(int index) {
+        return new PlaylistSnapshot(remove(root, index), version + 1);
+    }
+
+    PlaylistSnapshot withReplaced(int index, int track) {
+        return new PlaylistSnapshot(replace(root, index, track), version + 1);
+    }
+
+    PlaylistSnapshot cleared() {
+        return new PlaylistSnapshot(null, version + 1);
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Los nodos nunca se modifican: cada operación devuelve nodos nuevos solo en el camino recorrido
+    private static Node insert(Node node, int index, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Split split = new Split();
+            split(node, index, split);
+            return new Node(added.track, added.priority, split.left, split.right);
+        }
+        int leftSize = Node.size(node.left);
+        if (index <= leftSize) {
+            return node.withLeft(insert(node.left, index, added));
+        }
+        return node.withRight(insert(node.right, index - leftSize - 1, added));
+    }
+
+    private static Node remove(Node node, int index) {
+        int leftSize = Node.size(node.left);
+        if (index < leftSize) {
+            return node.withLeft(remove(node.left, index));
+        }
+        if (index > leftSize) {
+            return node.withRight(remove(node.right, index - leftSize - 1));
+        }
+        return merge(node.left, node.right);
+    }
+
+    private static Node replace(Node node, int index, int track) {
+        int leftSize = Node.size(node.left);
+        if (index < leftSize) {
+            return node.withLeft(replace(node.left, index, track));
+        }
+        if (index > leftSize) {
+            return node.withRight(replace(node.right, index - leftSize - 1, track));
+        }
+        return new Node(track, node.priority, node.left, node.right);
+    }
+
+    private static void split(Node node, int k, Split out) {
+        if (node == null) {
+            out.left = null;
+            out.right = null;
+            return;
+        }
+        int leftSize = Node.size(node.left);
+        if (leftSize < k) {
+            split(node.right, k - leftSize - 1, out);
+            out.left = node.withRight(out.left);
+        } else {
+            split(node.left, k, out);
+            out.right = node.withLeft(out.right);
+        }
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            return a.withRight(merge(a.right, b));
+        }
+        return b.withLeft(merge(a, b.left));
+    }
+
+    //Árbol equilibrado con las canciones agregadas juntas; cada raíz toma la mayor prioridad para respetar el orden de heap
+    private static Node build(int[] tracks, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node left = build(tracks, from, middle);
+        Node right = build(tracks, middle + 1, to);
+        int priority = ThreadLocalRandom.current().nextInt();
+        if (left != null) {
+            priority = Math.max(priority, left.priority);
+        }
+        if (right != null) {
+            priority = Math.max(priority, right.priority);
+        }
+        return new Node(tracks[middle], priority, left, right);
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    private static final class Node {
+        final int track;
+        final int priority;
+        final int size;
+        final Node left;
+        final Node right;
+
+        Node(int track, int priority, Node left, Node right) {
+            this.track = track;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node withLeft(Node newLeft) {
+            return new Node(track, priority, newLeft, right);
+        }
+
+        Node withRight(Node newRight) {
+            return new Node(track, priority, left, newRight);
+        }
+
+        static int size(Node node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+
+    //Resultado de un corte, uno por operación
+    private static final class Split {
+        Node left;
+        Node right;
+    }
+}
@@ -0,0 +1,171 @@
+import javax.swing.AbstractListModel;
+import java.io.File;
+import java.util.List;
+
+//Modelo de la lista de reproducción: la cola (hasta MAX_QUEUE_ROWS pedidos) y después la playlist, leídas de la
+//última foto del estado. El texto se arma solo para las filas que la lista dibuja, y cada estado nuevo avisa
+//solo las filas que cambiaron: agregar una canción a una playlist de 50.000 no vuelve a recorrerla.
+//Se usa solo en el hilo de la interfaz
+public final class PlaylistViewModel extends AbstractListModel<String> {
+    //Atributos
+
+    //Pedidos de la cola que se muestran, con miles en cola la lista no crece sin límite
+    public static final int MAX_QUEUE_ROWS = 50;
+    //Encabezado y línea en blanco de la playlist; sin canciones son las dos líneas del mensaje
+    private static final int HEADER_ROWS = 2;
+
+    private final MusicPlayer player;
+    private PlayerState state;
+    //Filas de la cola y canciones de la playlist que la lista ya conoce
+    private int queueRows;
+    private int playlistSize;
+
+    public PlaylistViewModel(MusicPlayer player) {
+        this.player = player;
+        this.state = player.getState();
+        this.queueRows = queueRows(state);
+        this.playlistSize = state.getPlaylist().size();
+    }
+
+    @Override
+    public int getSize() {
+        return queueRows + HEADER_ROWS + playlistSize;
+    }
+
+    @Override
+    public String getElementAt(int row) {
+        if (row < queueRows) {
+            return queueRow(row);
+        }
+        PlaylistSnapshot playlist = state.getPlaylist();
+        int index = row - queueRows - HEADER_ROWS;
+        if (index == -HEADER_ROWS) {
+            return playlist.isEmpty() ? "No hay canciones en la lista de reproducción."
+                    : "LISTA ACTUAL (" + playlist.size() + " canciones)";
+        }
+        if (index < 0) {
+            return playlist.isEmpty() ? "Selecciona una canción y haz clic en 'Agregar a Playlist'." : "";
+        }
+        if (index >= playlist.size()) {
+            return "";
+        }
+        return (isCurrent(index) ? ">> " : "- ") + String.format("%2d", index + 1) + ". "
+                + player.getTrack(playlist.get(index)).getDisplayName();
+    }
+
+    //Si la fila es la canción de la playlist que está sonando
+    public boolean isCurrentRow(int row) {
+        int index = row - queueRows - HEADER_ROWS;
+        return index >= 0 && index < state.getPlaylist().size() && isCurrent(index);
+    }
+
+    //Pasa a la foto nueva y avisa a la lista lo que cambió, en el mismo orden en que cambió la playlist
+    public void update(PlayerState previous, PlayerState next, List<PlaylistChange> changes) {
+        state = next;
+        //La cola se muestra con pocas filas; si cambió se avisan todas
+        if (next.getUpNext() != previous.getUpNext()) {
+            int oldRows = queueRows;
+            queueRows = queueRows(next);
+            resize(0, oldRows, queueRows);
+        }
+        int start = queueRows + HEADER_ROWS;
+        //Fila que tenía la marca de la actual; se corre con los cambios para desmarcarla donde haya quedado
+        int oldCurrent = previous.getPlayingIndex();
+        for (PlaylistChange change : changes) {
+            int from = start + change.getIndex();
+            int to = from + change.getCount() - 1;
+            switch (change.getType()) {
+                case INSERTED:
+                    playlistSize += change.getCount();
+                    if (oldCurrent >= change.getIndex()) {
+                        oldCurrent += change.getCount();
+                    }
+                    fireIntervalAdded(this, from, to);
+                    break;
+                case REMOVED:
+                    playlistSize -= change.getCount();
+                    if (oldCurrent >= change.getIndex() + change.getCount()) {
+                        oldCurrent -= change.getCount();
+                    } else if (oldCurrent >= change.getIndex()) {
+                        oldCurrent = -1;
+                    }
+                    fireIntervalRemoved(this, from, to);
+                    break;
+                case REPLACED:
+                    fireContentsChanged(this, from, to);
+                    break;
+                default:
+                    reset(start);
+                    oldCurrent = -1;
+            }
+        }
+        //Si la cuenta no coincide (por ejemplo, la playlist se reemplazó entera) se vuelve a mostrar completa
+        if (playlistSize != next.getPlaylist().size()) {
+            reset(start);
+        }
+        if (!changes.isEmpty()) {
+            fireContentsChanged(this, queueRows, queueRows + HEADER_ROWS - 1);
+        }
+        int newCurrent = next.getPlayingIndex();
+        if (oldCurrent != newCurrent) {
+            playlistRowChanged(oldCurrent);
+            playlistRowChanged(newCurrent);
+        }
+    }
+
+    private boolean isCurrent(int index) {
+        return index == state.getPlayingIndex();
+    }
+
+    //Encabezado, línea en blanco, los pedidos que se muestran, "... y N más" si hay más, y otra línea en blanco
+    private static int queueRows(PlayerState state) {
+        int queued = state.getUpNext().size();
+        if (queued == 0) {
+            return 0;
+        }
+        return 3 + Math.min(queued, MAX_QUEUE_ROWS) + (queued > MAX_QUEUE_ROWS ? 1 : 0);
+    }
+
+    private String queueRow(int row) {
+        List<File> queued = state.getUpNext();
+        if (row == 0) {
+            return "EN COLA (" + queued.size() + " canciones)";
+        }
+        int position = row - 1;
+        if (position >= 1 && position <= Math.min(queued.size(), MAX_QUEUE_ROWS)) {
+            return "-> " + String.format("%2d", position) + ". "
+                    + player.getTrack(queued.get(position - 1)).getDisplayName();
+        }
+        if (position == MAX_QUEUE_ROWS + 1 && queued.size() > MAX_QUEUE_ROWS) {
+            return "   ... y " + (queued.size() - MAX_QUEUE_ROWS) + " más";
+        }
+        return "";
+    }
+
+    private void reset(int start) {
+        int oldSize = playlistSize;
+        playlistSize = state.getPlaylist().size();
+        resize(start, oldSize, playlistSize);
+    }
+
+    private void playlistRowChanged(int index) {
+        if (index >= 0 && index < playlistSize) {
+            int row = queueRows + HEADER_ROWS + index;
+            fireContentsChanged(this, row, row);
+        }
+    }
+
+    //Una sección que empieza en start pasó de oldRows a newRows filas: se agregan o quitan las del final
+    //y las comunes se avisan como cambiadas
+    private void resize(int start, int oldRows, int newRows) {
+        if (newRows > oldRows) {
+            fireIntervalAdded(this, start + oldRows, start + newRows - 1);
+        } else if (newRows < oldRows) {
+            fireIntervalRemoved(this, start + newRows, start + oldRows - 1);
+        }
+        int common = Math.min(oldRows, newRows);
+        if (common > 0) {
+            fireContentsChanged(this, start, start + common - 1);
+        }
+    }
+}
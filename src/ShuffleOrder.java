@@ -0,0 +1,211 @@
+import java.util.HashSet;
+import java.util.Set;
+
+//Orden aleatorio perezoso para el modo aleatorio: cada ciclo es una permutación de la playlist que empieza
+//justo después de la canción actual, así ninguna se repite hasta que suenen todas
+//La permutación no se guarda: es una función biyectiva con clave sobre [0, 2^bits) recortada al tamaño
+//de la lista (cycle walking), por eso elegir la siguiente es O(1) y anotarla como escuchada O(log n)
+//Si la playlist cambia a mitad de ciclo, el ciclo sigue con una permutación de la lista nueva que salta las
+//entradas que ya sonaron, así el cambio no hace repetir ninguna; la memoria es solo la de las ya escuchadas
+public class ShuffleOrder {
+    //Atributos
+
+    private static final int ROUNDS = 4;
+
+    private final long seed;
+    //Ciclo actual, cada ciclo usa otra clave y por lo tanto otro orden
+    private long cycle = 0;
+    //Tamaño y versión de la lista con los que se armó la permutación actual
+    private int size = 0;
+    private long version = -1;
+    //Posición de la canción con la que empezó la permutación y pasos dados desde ella
+    private int offset = 0;
+    private int step = 0;
+    //Entradas de la playlist que ya sonaron en este ciclo (entrada y pista, así un ID reutilizado no cuenta)
+    private final Set<Long> played = new HashSet<>();
+    //La lista cambió a mitad del ciclo: la permutación actual incluye entradas que ya sonaron y hay que saltarlas
+    private boolean skipping = false;
+
+    // ---- Clave de la permutación del ciclo actual ----
+    private int bits;
+    private int mask;
+    private final int[] xorKeys = new int[ROUNDS];
+    private final int[] multipliers = new int[ROUNDS];
+    private final int[] inverses = new int[ROUNDS];
+
+    //Constructor, la misma semilla da siempre el mismo orden para la misma lista
+    public ShuffleOrder(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    //Empieza un ciclo nuevo a partir de la canción actual, que cuenta como ya escuchada
+    public void start(Playlist playlist, int current) {
+        cycle++;
+        played.clear();
+        skipping = false;
+        begin(playlist, current);
+        markPlayed(playlist, current);
+    }
+
+    //Índice que sigue sin avanzar; -1 si la lista tiene menos de dos canciones
+    public int peek(Playlist playlist, int current) {
+        return pick(playlist, current, false);
+    }
+
+    //Avanza y devuelve el siguiente índice; -1 si la lista tiene menos de dos canciones
+    public int next(Playlist playlist, int current) {
+        return pick(playlist, current, true);
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private int pick(Playlist playlist, int current, boolean advance) {
+        if (playlist.size() < 2) {
+            return -1;
+        }
+        if (playlist.snapshot().getVersion() != version) {
+            //Canciones agregadas o quitadas a mitad de ciclo: el mismo ciclo sigue sobre la lista nueva,
+            //sin volver a pasar por las que ya sonaron; la actual ya está anotada si salió de este ciclo
+            begin(playlist, current);
+            skipping = !played.isEmpty();
+        }
+        //El paseo se hace sobre copias; peek no cambia nada
+        long walkCycle = cycle;
+        int walkOffset = offset;
+        int walkStep = step;
+        boolean walkSkipping = skipping;
+        while (true) {
+            if (walkStep + 1 >= size) {
+                //Ya pasaron todas: ciclo nuevo con otra clave, que empieza después de la actual
+                walkCycle++;
+                prepareKey(walkCycle, size);
+                walkOffset = offsetOf(current);
+                walkStep = firstStep(current);
+                walkSkipping = false;
+            }
+            walkStep++;
+            int index = permute((walkOffset + walkStep) % size);
+            if (walkSkipping && played.contains(key(playlist, index))) {
+                continue;
+            }
+            if (!advance) {
+                if (walkCycle != cycle) {
+                    prepareKey(cycle, size);
+                }
+                return index;
+            }
+            if (walkCycle != cycle) {
+                played.clear();
+                markPlayed(playlist, current);
+            }
+            cycle = walkCycle;
+            offset = walkOffset;
+            step = walkStep;
+            skipping = walkSkipping;
+            played.add(key(playlist, index));
+            return index;
+        }
+    }
+
+    //Permutación nueva de la lista tal como está, desde la canción actual
+    private void begin(Playlist playlist, int current) {
+        size = playlist.size();
+        version = playlist.snapshot().getVersion();
+        prepareKey(cycle, size);
+        offset = offsetOf(current);
+        step = firstStep(current);
+    }
+
+    //Posición de la permutación donde está la actual; si no hay actual se empieza por la primera posición
+    private int offsetOf(int current) {
+        return current >= 0 && current < size ? inverse(current) : 0;
+    }
+
+    //El paso 0 es la actual, que ya sonó; sin actual el paso 0 también es una canción por escuchar
+    private int firstStep(int current) {
+        return current >= 0 && current < size ? 0 : -1;
+    }
+
+    private void markPlayed(Playlist playlist, int current) {
+        if (current >= 0 && current < playlist.size()) {
+            played.add(key(playlist, current));
+        }
+    }
+
+    private static long key(Playlist playlist, int index) {
+        int entry = playlist.entryAt(index);
+        return (long) entry << 32 | (playlist.trackOfEntry(entry) & 0xFFFFFFFFL);
+    }
+
+    //Deriva la clave de la semilla y el ciclo; el dominio es la potencia de dos más chica que cubre la lista
+    private void prepareKey(long keyCycle, int playlistSize) {
+        bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(Math.max(1, playlistSize - 1)));
+        mask = bits == 32 ? -1 : (1 << bits) - 1;
+        long state = mix(seed ^ mix(keyCycle));
+        for (int r = 0; r < ROUNDS; r++) {
+            state = mix(state + 0x9E3779B97F4A7C15L);
+            xorKeys[r] = (int) state & mask;
+            multipliers[r] = (int) (state >>> 32) | 1;
+            inverses[r] = inverseOf(multipliers[r]);
+        }
+    }
+
+    //Permutación de [0, size): se aplica la biyección hasta caer dentro de la lista
+    private int permute(int position) {
+        int x = position;
+        do {
+            x = forward(x);
+        } while (x >= size || x < 0);
+        return x;
+    }
+
+    private int inverse(int index) {
+        int x = index;
+        do {
+            x = backward(x);
+        } while (x >= size || x < 0);
+        return x;
+    }
+
+    //Cada ronda es biyectiva módulo 2^bits: xor con la clave, producto por un impar y xorshift
+    private int forward(int x) {
+        int shift = (bits + 1) / 2;
+        for (int r = 0; r < ROUNDS; r++) {
+            x ^= xorKeys[r];
+            x = (x * multipliers[r]) & mask;
+            x ^= x >>> shift;
+        }
+        return x & mask;
+    }
+
+    private int backward(int x) {
+        int shift = (bits + 1) / 2;
+        for (int r = ROUNDS - 1; r >= 0; r--) {
+            //Con shift >= bits/2 el xorshift se deshace aplicándolo otra vez
+            x ^= x >>> shift;
+            x = (x * inverses[r]) & mask;
+            x ^= xorKeys[r];
+        }
+        return x & mask;
+    }
+
+    //Inverso multiplicativo de un impar módulo 2^32 (método de Newton)
+    private static int inverseOf(int odd) {
+        int inverse = odd;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+
+    //Mezclador de SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,594 @@
+import java.io.File;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+//Índice de búsqueda de la biblioteca en memoria, para filtrar el selector mientras se escribe
+//Cada canción tiene un id, que es su posición en la biblioteca, y se indexan las palabras de su título, artista,
+//álbum y nombre de archivo. Una palabra buscada coincide con una igual, con una que empieza igual (la que se está
+//escribiendo) o con una parecida por trigramas (errores de tipeo); la canción debe coincidir con todas las palabras.
+//Las palabras se indexan recién en la primera búsqueda, así abrir una biblioteca grande no espera al índice.
+//No es seguro entre hilos: la ventana lo usa solo desde el hilo de Swing
+public final class SongIndex {
+    //Atributos
+
+    //Puntaje de cada tipo de coincidencia, de mejor a peor: igual, prefijo, muy parecida y parecida
+    private static final int[] TIER_SCORES = {300, 200, 150, 100};
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int CLOSE = 2;
+    private static final int FUZZY = 3;
+    //Parecido (coeficiente de Dice entre trigramas) para aceptar una palabra mal escrita y para considerarla muy parecida
+    private static final double MIN_SIMILARITY = 0.5;
+    private static final double CLOSE_SIMILARITY = 0.75;
+    //Las palabras más cortas no se buscan con errores, casi todo se les parece
+    private static final int MIN_FUZZY_LENGTH = 4;
+    //Si cambian más canciones que esta fracción, conviene volver a indexar todo en la próxima búsqueda
+    private static final int REINDEX_FRACTION = 8;
+
+    private final List<Track> tracks = new ArrayList<>();
+    //Id en el índice de cada canción por su id de TrackTable, -1 si no está
+    private int[] ids = new int[0];
+
+    // ---- Índice de palabras, se arma en la primera búsqueda ----
+    private boolean indexed = false;
+    private final Map<String, Term> terms = new HashMap<>();
+    //Las mismas palabras ordenadas, así las que empiezan con un prefijo quedan juntas; se arma al buscar si hubo cambios
+    private Term[] sorted = null;
+    //Trigrama (tres caracteres empaquetados) -> palabras que lo contienen
+    private final Map<Long, List<Term>> trigrams = new HashMap<>();
+
+    // ---- Memoria de trabajo de la búsqueda, se reutiliza entre consultas ----
+    private int gramGeneration = 0;
+    //Un bit por canción y por tipo de coincidencia de cada palabra buscada; con 500k canciones cada uno ocupa 62 KB
+    private final List<long[][]> tiers = new ArrayList<>();
+    //Palabra de cada posición de tiers; al escribir solo cambia la última, las anteriores se reutilizan
+    private final List<String> tierWords = new ArrayList<>();
+    private long[] result = new long[0];
+
+    //Getters
+
+    public int size() {
+        return tracks.size();
+    }
+
+    public Track get(int id) {
+        return tracks.get(id);
+    }
+
+    //Id de la canción, -1 si no está en la biblioteca
+    public int idOf(File file) {
+        return idOfTrack(TrackTable.shared().find(file));
+    }
+
+    private int idOfTrack(int track) {
+        return track >= 0 && track < ids.length ? ids[track] : -1;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    public List<File> getFiles() {
+        List<File> files = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            files.add(track.getFile());
+        }
+        return files;
+    }
+
+    // ============ CAMBIOS ============
+
+    //Agrega al final; las canciones que ya estaban se ignoran
+    public void addAll(Collection<Track> added) {
+        for (Track track : added) {
+            if (idOfTrack(track.getId()) >= 0) {
+                continue;
+            }
+            if (track.getId() >= ids.length) {
+                int old = ids.length;
+                ids = Arrays.copyOf(ids, Math.max(track.getId() + 1, old + (old >> 1)));
+                Arrays.fill(ids, old, ids.length, -1);
+            }
+            int id = tracks.size();
+            tracks.add(track);
+            ids[track.getId()] = id;
+            if (indexed) {
+                index(id, track);
+            }
+        }
+        tierWords.clear();
+    }
+
+    //Quita canciones; las que quedan se corren hacia adelante y sus ids se renumeran en el mismo recorrido
+    public boolean removeAll(Collection<File> removed) {
+        int[] remap = new int[tracks.size()];
+        for (File file : removed) {
+            int id = idOf(file);
+            if (id >= 0) {
+                remap[id] = -1;
+            }
+        }
+        int kept = 0;
+        for (int id = 0; id < tracks.size(); id++) {
+            Track track = tracks.get(id);
+            if (remap[id] < 0) {
+                ids[track.getId()] = -1;
+            } else {
+                remap[id] = kept;
+                if (kept != id) {
+                    tracks.set(kept, track);
+                    ids[track.getId()] = kept;
+                }
+                kept++;
+            }
+        }
+        if (kept == tracks.size()) {
+            return false;
+        }
+        tracks.subList(kept, tracks.size()).clear();
+        tierWords.clear();
+        if (indexed) {
+            //Los ids solo bajan y conservan su orden, así cada lista sigue ordenada
+            for (Term term : terms.values()) {
+                int size = 0;
+                for (int i = 0; i < term.size; i++) {
+                    int id = remap[term.docs[i]];
+                    if (id >= 0) {
+                        term.docs[size++] = id;
+                    }
+                }
+                term.size = size;
+            }
+        }
+        return true;
+    }
+
+    //Reemplaza los datos de esas canciones (por ejemplo, recién leídos de la cabecera) y las vuelve a indexar
+    public void refresh(Collection<File> changed, Function<File, Track> lookup) {
+        if (indexed && changed.size() > tracks.size() / REINDEX_FRACTION) {
+            clearTerms();
+        }
+        for (File file : changed) {
+            int id = idOf(file);
+            if (id < 0) {
+                continue;
+            }
+            Track updated = lookup.apply(file);
+            if (indexed) {
+                unindex(id, tracks.get(id));
+                index(id, updated);
+            }
+            tracks.set(id, updated);
+        }
+        tierWords.clear();
+    }
+
+    private void clearTerms() {
+        indexed = false;
+        terms.clear();
+        sorted = null;
+        trigrams.clear();
+    }
+
+    private void ensureIndexed() {
+        if (!indexed) {
+            for (int id = 0; id < tracks.size(); id++) {
+                index(id, tracks.get(id));
+            }
+            indexed = true;
+        }
+    }
+
+    private void index(int id, Track track) {
+        for (String word : words(track)) {
+            Term term = terms.get(word);
+            if (term == null) {
+                long[] grams = grams(word);
+                term = new Term(word, grams.length);
+                terms.put(word, term);
+                sorted = null;
+                for (long gram : grams) {
+                    trigrams.computeIfAbsent(gram, g -> new ArrayList<>()).add(term);
+                }
+            }
+            term.insert(id);
+        }
+    }
+
+    //Las palabras que quedan sin canciones siguen en el índice, vacías; no cuestan nada al buscar
+    private void unindex(int id, Track track) {
+        for (String word : words(track)) {
+            Term term = terms.get(word);
+            if (term != null) {
+                term.remove(id);
+            }
+        }
+    }
+
+    //Palabras distintas de la canción; son pocas, buscar repetidas en la lista es más barato que un Set
+    private static List<String> words(Track track) {
+        List<String> words = new ArrayList<>();
+        tokenize(track.getTitle(), words);
+        tokenize(track.getArtist(), words);
+        tokenize(track.getAlbum(), words);
+        String name = track.getFileName();
+        int dot = name.lastIndexOf('.');
+        tokenize(dot > 0 ? name.substring(0, dot) : name, words);
+        List<String> distinct = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (!distinct.contains(word)) {
+                distinct.add(word);
+            }
+        }
+        return distinct;
+    }
+
+    // ============ BÚSQUEDA ============
+
+    //Las mejores canciones para el texto buscado, de mayor a menor puntaje y en orden de biblioteca si empatan
+    //Cada palabra buscada marca en sus bits las canciones de cada tipo de coincidencia; las que coinciden con todas
+    //salen de cruzar esos bits, sin tocar una tabla por canción
+    public Result search(String query, int limit) {
+        long start = System.nanoTime();
+        List<String> tokens = new ArrayList<>();
+        tokenize(query, tokens);
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokens));
+        if (words.isEmpty() || limit <= 0) {
+            return new Result(new int[0], 0, System.nanoTime() - start);
+        }
+        ensureIndexed();
+        int longs = (tracks.size() + 63) >>> 6;
+        if (result.length < longs) {
+            result = new long[longs];
+            tiers.clear();
+            tierWords.clear();
+        }
+
+        //Canciones de cada palabra, separadas por tipo de coincidencia
+        for (int w = 0; w < words.size(); w++) {
+            if (tiers.size() <= w) {
+                tiers.add(new long[TIER_SCORES.length][result.length]);
+            }
+            if (tierWords.size() <= w) {
+                tierWords.add(null);
+            }
+            if (words.get(w).equals(tierWords.get(w))) {
+                continue;
+            }
+            tierWords.set(w, words.get(w));
+            long[][] bits = tiers.get(w);
+            for (long[] tier : bits) {
+                Arrays.fill(tier, 0, longs, 0L);
+            }
+            for (Match match : matches(words.get(w))) {
+                long[] tier = bits[match.tier];
+                Term term = match.term;
+                for (int i = 0; i < term.size; i++) {
+                    int doc = term.docs[i];
+                    tier[doc >>> 6] |= 1L << doc;
+                }
+            }
+        }
+
+        //Las que coinciden con todas las palabras
+        int total = 0;
+        for (int i = 0; i < longs; i++) {
+            long all = -1L;
+            for (int w = 0; w < words.size() && all != 0; w++) {
+                long[][] bits = tiers.get(w);
+                all &= bits[EXACT][i] | bits[PREFIX][i] | bits[CLOSE][i] | bits[FUZZY][i];
+            }
+            result[i] = all;
+            total += Long.bitCount(all);
+        }
+
+        if (words.size() == 1) {
+            return new Result(bestOfOneWord(tiers.get(0), longs, limit), total, System.nanoTime() - start);
+        }
+
+        //Las k mejores con un montículo de mínimos: puntaje arriba y, a igual puntaje, el id más chico
+        long[] heap = new long[Math.min(limit, Math.max(total, 1))];
+        int heapSize = 0;
+        for (int i = 0; i < longs; i++) {
+            long bitsLeft = result[i];
+            while (bitsLeft != 0) {
+                int bit = Long.numberOfTrailingZeros(bitsLeft);
+                bitsLeft &= bitsLeft - 1;
+                int doc = (i << 6) | bit;
+                int score = 0;
+                for (int w = 0; w < words.size(); w++) {
+                    long[][] bits = tiers.get(w);
+                    int tier = 0;
+                    while ((bits[tier][i] & (1L << bit)) == 0) {
+                        tier++;
+                    }
+                    score += TIER_SCORES[tier];
+                }
+                long key = ((long) score << 32) | (Integer.MAX_VALUE - doc);
+                if (heapSize < heap.length) {
+                    heap[heapSize] = key;
+                    siftUp(heap, heapSize++);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, heapSize);
+                }
+            }
+        }
+        long[] best = Arrays.copyOf(heap, heapSize);
+        Arrays.sort(best);
+        int[] found = new int[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            found[i] = Integer.MAX_VALUE - (int) best[heapSize - 1 - i];
+        }
+        return new Result(found, total, System.nanoTime() - start);
+    }
+
+    //Con una sola palabra el puntaje es el tipo de coincidencia: se toman los tipos en orden y, dentro de cada uno,
+    //las canciones en orden de biblioteca, hasta juntar k; "s" coincide con media biblioteca y no hace falta recorrerla
+    private static int[] bestOfOneWord(long[][] bits, int longs, int limit) {
+        int[] found = new int[limit];
+        int count = 0;
+        for (int tier = 0; tier < bits.length && count < limit; tier++) {
+            for (int i = 0; i < longs && count < limit; i++) {
+                long better = 0;
+                for (int t = 0; t < tier; t++) {
+                    better |= bits[t][i];
+                }
+                long only = bits[tier][i] & ~better;
+                while (only != 0 && count < limit) {
+                    found[count++] = (i << 6) | Long.numberOfTrailingZeros(only);
+                    only &= only - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    //Palabras del índice que sirven para una palabra buscada: igual, con ese prefijo o parecida
+    private List<Match> matches(String word) {
+        List<Match> found = new ArrayList<>();
+        Term[] byWord = sortedTerms();
+        //Primera palabra mayor o igual que la buscada; desde ahí siguen todas las que empiezan con ella
+        int from = 0;
+        int to = byWord.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (byWord[middle].word.compareTo(word) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        boolean exact = false;
+        for (int i = from; i < byWord.length && byWord[i].word.startsWith(word); i++) {
+            Term term = byWord[i];
+            if (term.size > 0) {
+                exact |= term.word.length() == word.length();
+                found.add(new Match(term, term.word.length() == word.length() ? EXACT : PREFIX));
+            }
+        }
+        //Si la palabra existe tal cual no se supone un error de tipeo
+        if (word.length() < MIN_FUZZY_LENGTH || exact) {
+            return found;
+        }
+
+        //Trigramas compartidos con cada palabra del índice; se cuentan en la propia palabra para no crear mapas
+        long[] queryGrams = grams(word);
+        List<Term> seen = new ArrayList<>();
+        gramGeneration++;
+        for (long gram : queryGrams) {
+            List<Term> withGram = trigrams.get(gram);
+            if (withGram == null) {
+                continue;
+            }
+            for (Term term : withGram) {
+                if (term.gramStamp != gramGeneration) {
+                    term.gramStamp = gramGeneration;
+                    term.gramHits = 0;
+                    seen.add(term);
+                }
+                term.gramHits++;
+            }
+        }
+        for (Term term : seen) {
+            double similarity = 2.0 * term.gramHits / (queryGrams.length + term.gramCount);
+            if (similarity >= MIN_SIMILARITY && term.size > 0 && !term.word.startsWith(word)) {
+                found.add(new Match(term, similarity >= CLOSE_SIMILARITY ? CLOSE : FUZZY));
+            }
+        }
+        return found;
+    }
+
+    private Term[] sortedTerms() {
+        if (sorted == null) {
+            sorted = terms.values().toArray(new Term[0]);
+            Arrays.sort(sorted, Comparator.comparing(term -> term.word));
+        }
+        return sorted;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    // ============ PALABRAS ============
+
+    //Letras latinas ya plegadas: minúscula sin tilde, 0 si separa palabras; el resto pasa por Normalizer
+    private static final char[] FOLD = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) {
+            FOLD[c] = Character.isLetterOrDigit(c) ? fold(c) : 0;
+        }
+    }
+
+    //Separa en palabras en minúsculas y sin tildes, así "Canción" y "cancion" son la misma
+    static void tokenize(String text, List<String> words) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FOLD.length) {
+                c = FOLD[c];
+            } else if (Character.isLetterOrDigit(c)) {
+                c = fold(c);
+            } else {
+                c = 0;
+            }
+            if (c != 0) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+    }
+
+    private static char fold(char c) {
+        String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        return Character.toLowerCase(base.charAt(0));
+    }
+
+    //Trigramas distintos de la palabra, cada uno con sus tres caracteres en un long
+    //Se rellena con dos espacios a cada lado: así el principio y el final cuentan y las palabras cortas también se parecen
+    private static long[] grams(String word) {
+        String padded = "  " + word + "  ";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            long gram = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            //Multiplicar por un impar no mezcla trigramas distintos y reparte los bits: Long.hashCode de un trigrama
+            //de letras comunes caería casi siempre en los mismos baldes del HashMap
+            grams[i] = gram * 0x9E3779B97F4A7C15L;
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Una palabra del índice y las canciones que la tienen, ordenadas por id
+    private static final class Term {
+        private final String word;
+        private final int gramCount;
+        private int[] docs = new int[2];
+        private int size = 0;
+        //Conteo de trigramas de la búsqueda en curso
+        private int gramStamp = -1;
+        private int gramHits = 0;
+
+        Term(String word, int gramCount) {
+            this.word = word;
+            this.gramCount = gramCount;
+        }
+
+        //Al indexar todo los ids llegan en orden y se agregan al final; al refrescar una canción se busca su lugar
+        void insert(int doc) {
+            int at = size > 0 && docs[size - 1] >= doc ? Arrays.binarySearch(docs, 0, size, doc) : -size - 1;
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            docs[at] = doc;
+            size++;
+        }
+
+        void remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    private static final class Match {
+        private final Term term;
+        private final int tier;
+
+        Match(Term term, int tier) {
+            this.term = term;
+            this.tier = tier;
+        }
+    }
+
+    //Ids encontrados, ordenados del mejor al peor, y cuántas canciones coincidían en total
+    public static final class Result {
+        private final int[] ids;
+        private final int total;
+        private final long elapsedNanos;
+
+        Result(int[] ids, int total, long elapsedNanos) {
+            this.ids = ids;
+            this.total = total;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public double getMillis() {
+            return elapsedNanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.File;
+
+//Datos de una canción leídos de su cabecera: formato, duración y etiquetas (título, artista, álbum)
+//Es inmutable; si el archivo cambia se lee de nuevo y se reemplaza por otro
+//El archivo se guarda como su id en TrackTable, no como File
+public final class Track {
+    //Atributos
+
+    private final int id;
+    //Tamaño y fecha del archivo cuando se leyó, sirven para saber si la caché sigue siendo válida
+    private final long size;
+    private final long modified;
+    //Cadena vacía si el archivo no trae la etiqueta
+    private final String title;
+    private final String artist;
+    private final String album;
+    //-1 si no se pudo calcular
+    private final long durationMicros;
+    private final float sampleRate;
+    private final int channels;
+    private final int bits;
+
+    public Track(File file, long size, long modified, String title, String artist, String album,
+                 long durationMicros, float sampleRate, int channels, int bits) {
+        this(TrackTable.shared().intern(file), size, modified, title, artist, album, durationMicros, sampleRate, channels, bits);
+    }
+
+    Track(int id, long size, long modified, String title, String artist, String album,
+          long durationMicros, float sampleRate, int channels, int bits) {
+        this.id = id;
+        this.size = size;
+        this.modified = modified;
+        this.title = title == null ? "" : title;
+        this.artist = artist == null ? "" : artist;
+        this.album = album == null ? "" : album;
+        this.durationMicros = durationMicros;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bits = bits;
+    }
+
+    //Canción de la que solo se conoce el archivo, mientras sus datos no estén leídos
+    public static Track unknown(File file) {
+        return unknown(TrackTable.shared().intern(file));
+    }
+
+    static Track unknown(int id) {
+        return new Track(id, -1, -1, "", "", "", -1, 0, 0, 0);
+    }
+
+    //Getters
+
+    //Id en TrackTable.shared()
+    public int getId() {
+        return id;
+    }
+
+    //Arma un File nuevo en cada llamada
+    public File getFile() {
+        return TrackTable.shared().file(id);
+    }
+
+    //Nombre del archivo sin la carpeta, sin armar el File
+    public String getFileName() {
+        return TrackTable.shared().name(id);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    //Si ya se leyó la cabecera o solo se conoce el archivo
+    public boolean isKnown() {
+        return size >= 0;
+    }
+
+    //Si los datos corresponden al archivo tal como está ahora en el disco
+    public boolean matches(long currentSize, long currentModified) {
+        return size == currentSize && modified == currentModified;
+    }
+
+    //"Artista - Título" si el archivo trae etiquetas, si no el nombre del archivo
+    public String getDisplayName() {
+        if (title.isEmpty()) {
+            return getFileName();
+        }
+        return artist.isEmpty() ? title : artist + " - " + title;
+    }
+
+    @Override
+    public String toString() {
+        return getDisplayName();
+    }
+}
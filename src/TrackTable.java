@@ -0,0 +1,299 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//Tabla de todas las canciones que conoce el reproductor: cada archivo recibe un id entero que no cambia mientras
+//el programa está abierto, y la biblioteca, los metadatos, el volumen y la playlist guardan solo ese id.
+//Las rutas se guardan como un árbol de carpetas: cada tramo de ruta ("Música", "Artista", "01 Canción.wav") está
+//una sola vez, en UTF-8 dentro de un arreglo de bytes compartido; una carpeta es (carpeta padre, tramo) y una
+//canción es (carpeta, tramo). Así un millón de canciones no son un millón de File con el mismo prefijo repetido,
+//y el File se arma solo cuando hace falta abrir el archivo o mostrarlo.
+//Es segura entre hilos. Los ids no se reutilizan: una canción borrada deja su id sin uso
+public final class TrackTable {
+    //Atributos
+
+    private static final TrackTable SHARED = new TrackTable();
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int EMPTY = 0;
+    //La carpeta 0 es la raíz del árbol, no tiene nombre ni padre
+    private static final int ROOT = 0;
+    private static final byte SEPARATOR = (byte) File.separatorChar;
+
+    // ---- Tramos: el tramo i ocupa bytes[segmentStart[i] .. segmentStart[i + 1]) ----
+    private byte[] bytes = new byte[INITIAL_CAPACITY * 16];
+    private int[] segmentStart = new int[INITIAL_CAPACITY + 1];
+    private int segmentCount = 0;
+
+    // ---- Carpetas y canciones: su tramo y la carpeta que las contiene ----
+    private int[] folderParent = new int[INITIAL_CAPACITY];
+    private int[] folderName = new int[INITIAL_CAPACITY];
+    private int folderCount = 1;
+    private int[] trackFolder = new int[INITIAL_CAPACITY];
+    private int[] trackName = new int[INITIAL_CAPACITY];
+    private int trackCount = 0;
+
+    //Tablas hash con direccionamiento abierto: cada casilla guarda id + 1, EMPTY si está libre
+    private int[] segmentSlots = new int[INITIAL_CAPACITY * 2];
+    private int[] folderSlots = new int[INITIAL_CAPACITY * 2];
+    private int[] trackSlots = new int[INITIAL_CAPACITY * 2];
+
+    TrackTable() {
+        folderParent[ROOT] = -1;
+        folderName[ROOT] = -1;
+    }
+
+    //La tabla de todo el programa; los ids de una sirven en cualquier parte
+    public static TrackTable shared() {
+        return SHARED;
+    }
+
+    //Getters
+
+    public synchronized int size() {
+        return trackCount;
+    }
+
+    //Bytes ocupados por los arreglos de la tabla, para medir cuánto cuesta cada canción
+    public synchronized long getMemoryBytes() {
+        return bytes.length + 4L * (segmentStart.length + folderParent.length + folderName.length
+                + trackFolder.length + trackName.length + segmentSlots.length + folderSlots.length + trackSlots.length);
+    }
+
+    // ============ IDS ============
+
+    //Id del archivo, lo agrega si es la primera vez; la ruta se toma absoluta
+    public int intern(File file) {
+        return intern(file.getAbsolutePath());
+    }
+
+    public synchronized int intern(String absolutePath) {
+        byte[] path = absolutePath.getBytes(StandardCharsets.UTF_8);
+        int nameStart = lastSeparator(path) + 1;
+        int folder = ROOT;
+        int from = 0;
+        while (from < nameStart) {
+            int to = nextSeparator(path, from);
+            int segment = internSegment(path, from, to);
+            int child = findFolder(folder, segment);
+            folder = child >= 0 ? child : addFolder(folder, segment);
+            from = to + 1;
+        }
+        int name = internSegment(path, nameStart, path.length);
+        int track = findTrack(folder, name);
+        return track >= 0 ? track : addTrack(folder, name);
+    }
+
+    //Id del archivo, -1 si nunca se agregó; no cambia la tabla
+    public synchronized int find(File file) {
+        byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        int nameStart = lastSeparator(path) + 1;
+        int folder = ROOT;
+        int from = 0;
+        while (from < nameStart) {
+            int to = nextSeparator(path, from);
+            int segment = findSegment(path, from, to);
+            folder = segment < 0 ? -1 : findFolder(folder, segment);
+            if (folder < 0) {
+                return -1;
+            }
+            from = to + 1;
+        }
+        int name = findSegment(path, nameStart, path.length);
+        return name < 0 ? -1 : findTrack(folder, name);
+    }
+
+    // ============ RUTAS ============
+
+    //Se arma un File nuevo en cada llamada; conviene guardar el id, no el File
+    public File file(int track) {
+        return new File(path(track));
+    }
+
+    public synchronized String path(int track) {
+        checkTrack(track);
+        //Los tramos se juntan de la canción hacia la raíz y se copian al revés
+        int length = segmentLength(trackName[track]);
+        for (int folder = trackFolder[track]; folder != ROOT; folder = folderParent[folder]) {
+            length += segmentLength(folderName[folder]) + 1;
+        }
+        byte[] path = new byte[length];
+        int at = length - segmentLength(trackName[track]);
+        copySegment(trackName[track], path, at);
+        for (int folder = trackFolder[track]; folder != ROOT; folder = folderParent[folder]) {
+            path[--at] = SEPARATOR;
+            at -= segmentLength(folderName[folder]);
+            copySegment(folderName[folder], path, at);
+        }
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    //Nombre del archivo, sin la carpeta
+    public synchronized String name(int track) {
+        checkTrack(track);
+        int segment = trackName[track];
+        return new String(bytes, segmentStart[segment], segmentLength(segment), StandardCharsets.UTF_8);
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    private void checkTrack(int track) {
+        if (track < 0 || track >= trackCount) {
+            throw new IndexOutOfBoundsException("Canción " + track + ", tabla de " + trackCount);
+        }
+    }
+
+    private static int lastSeparator(byte[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (path[i] == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //El separador es ASCII, en UTF-8 nunca aparece dentro de otro carácter
+    private static int nextSeparator(byte[] path, int from) {
+        while (path[from] != SEPARATOR) {
+            from++;
+        }
+        return from;
+    }
+
+    private int segmentLength(int segment) {
+        return segmentStart[segment + 1] - segmentStart[segment];
+    }
+
+    private void copySegment(int segment, byte[] to, int at) {
+        System.arraycopy(bytes, segmentStart[segment], to, at, segmentLength(segment));
+    }
+
+    private int findSegment(byte[] text, int from, int to) {
+        int mask = segmentSlots.length - 1;
+        for (int slot = hashBytes(text, from, to) & mask; segmentSlots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int segment = segmentSlots[slot] - 1;
+            if (Arrays.equals(bytes, segmentStart[segment], segmentStart[segment + 1], text, from, to)) {
+                return segment;
+            }
+        }
+        return -1;
+    }
+
+    private int internSegment(byte[] text, int from, int to) {
+        int found = findSegment(text, from, to);
+        if (found >= 0) {
+            return found;
+        }
+        int length = to - from;
+        int end = segmentStart[segmentCount];
+        if (end + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(end + length, bytes.length + (bytes.length >> 1)));
+        }
+        if (segmentCount + 2 > segmentStart.length) {
+            segmentStart = Arrays.copyOf(segmentStart, segmentStart.length + (segmentStart.length >> 1));
+        }
+        System.arraycopy(text, from, bytes, end, length);
+        int segment = segmentCount++;
+        segmentStart[segmentCount] = end + length;
+        if (segmentCount * 2 > segmentSlots.length) {
+            segmentSlots = new int[segmentSlots.length * 2];
+            for (int s = 0; s < segmentCount; s++) {
+                insertSlot(segmentSlots, hashBytes(bytes, segmentStart[s], segmentStart[s + 1]), s);
+            }
+        } else {
+            insertSlot(segmentSlots, hashBytes(text, from, to), segment);
+        }
+        return segment;
+    }
+
+    private int findFolder(int parent, int segment) {
+        int mask = folderSlots.length - 1;
+        for (int slot = hashPair(parent, segment) & mask; folderSlots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int folder = folderSlots[slot] - 1;
+            if (folderParent[folder] == parent && folderName[folder] == segment) {
+                return folder;
+            }
+        }
+        return -1;
+    }
+
+    private int addFolder(int parent, int segment) {
+        if (folderCount == folderParent.length) {
+            int capacity = folderCount + (folderCount >> 1);
+            folderParent = Arrays.copyOf(folderParent, capacity);
+            folderName = Arrays.copyOf(folderName, capacity);
+        }
+        int folder = folderCount++;
+        folderParent[folder] = parent;
+        folderName[folder] = segment;
+        if (folderCount * 2 > folderSlots.length) {
+            folderSlots = new int[folderSlots.length * 2];
+            for (int f = 1; f < folderCount; f++) {
+                insertSlot(folderSlots, hashPair(folderParent[f], folderName[f]), f);
+            }
+        } else {
+            insertSlot(folderSlots, hashPair(parent, segment), folder);
+        }
+        return folder;
+    }
+
+    private int findTrack(int folder, int segment) {
+        int mask = trackSlots.length - 1;
+        for (int slot = hashPair(folder, segment) & mask; trackSlots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int track = trackSlots[slot] - 1;
+            if (trackFolder[track] == folder && trackName[track] == segment) {
+                return track;
+            }
+        }
+        return -1;
+    }
+
+    private int addTrack(int folder, int segment) {
+        if (trackCount == trackFolder.length) {
+            int capacity = trackCount + (trackCount >> 1);
+            trackFolder = Arrays.copyOf(trackFolder, capacity);
+            trackName = Arrays.copyOf(trackName, capacity);
+        }
+        int track = trackCount++;
+        trackFolder[track] = folder;
+        trackName[track] = segment;
+        if (trackCount * 2 > trackSlots.length) {
+            trackSlots = new int[trackSlots.length * 2];
+            for (int t = 0; t < trackCount; t++) {
+                insertSlot(trackSlots, hashPair(trackFolder[t], trackName[t]), t);
+            }
+        } else {
+            insertSlot(trackSlots, hashPair(folder, segment), track);
+        }
+        return track;
+    }
+
+    private static void insertSlot(int[] slots, int hash, int id) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private static int hashBytes(byte[] text, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + text[i];
+        }
+        return mix(hash);
+    }
+
+    private static int hashPair(int a, int b) {
+        return mix(a * 0x9E3779B1 + b);
+    }
+
+    //Mezcla final de MurmurHash3: con direccionamiento abierto los bits bajos tienen que variar
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+}
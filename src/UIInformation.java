@@ -15,6 +15,11 @@ public class UIInformation {
     // ========== MÉTODOS DE ERROR ==========
 
     public void showException(String titulo, String mensaje, String tituloVentana) {
+        //Sin pantalla (pruebas o benchmarks en servidores) el mensaje va a la consola
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println(tituloVentana + ": " + titulo + " - " + mensaje);
+            return;
+        }
         JPanel panel = new JPanel();
         panel.setLayout(new BorderLayout(20, 15));
         panel.setBackground(BLACK);
@@ -62,6 +67,10 @@ public class UIInformation {
     // ========== MÉTODOS DE ÉXITO ==========
 
     public void showSuccess(String titulo, String mensaje, String tituloVentana) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.out.println(tituloVentana + ": " + titulo + " - " + mensaje);
+            return;
+        }
         JPanel panel = new JPanel();
         panel.setLayout(new BorderLayout(20, 15));
         panel.setBackground(BLACK);
@@ -303,6 +312,18 @@ public class UIInformation {
             });
         }
 
+        //Progreso de un escaneo, el total no se conoce hasta terminar
+        public void updateScan(int tracks, int directories, double filesPerSecond, String fileName) {
+            SwingUtilities.invokeLater(() -> {
+                progressBar.setIndeterminate(true);
+                progressBar.setString(tracks + " canciones en " + directories + " carpetas - "
+                        + String.format("%.0f", filesPerSecond) + " archivos/s");
+                if (fileName != null) {
+                    fileLabel.setText(fileName);
+                }
+            });
+        }
+
         public void close() {
             if (dotsTimer != null) {
                 dotsTimer.stop();
@@ -1,22 +1,33 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class UIMusicPlayer extends JFrame {
 
     private final MusicPlayer player;
-    private final JComboBox<String> songSelector;
+    //Buscador y selector de la biblioteca: la lista muestra toda la biblioteca o lo que coincide con lo escrito
+    private final JTextField searchField;
+    private final JLabel searchInfo;
+    private final JList<Track> songSelector;
+    private final SongListModel songModel;
     private final JLabel statusLabel;
     private final JLabel queueLabel;
     private final JLabel timeLabel;
-    private final JTextArea playlistArea;
-    private final List<File> songs;
+    //Cola y playlist actuales, la lista solo dibuja las filas visibles
+    private final JList<String> playlistView;
+    private final PlaylistViewModel playlistModel;
+    private final SongIndex library = new SongIndex();
     private final UIInformation info;
-    private final Timer progressTimer;
     private final JSlider progressSlider;
     private boolean isSliderChanging = false;
 
@@ -27,6 +38,10 @@ public class UIMusicPlayer extends JFrame {
     private JButton btnRepeat;
     private JButton btnShuffle;
 
+    //Volumen por software y silencio
+    private JButton btnMute;
+    private JSlider volumeSlider;
+
     // Colores negro y dorado
     private final Color BLACK = new Color(20, 20, 20);
     private final Color DARK_GRAY = new Color(40, 40, 40);
@@ -35,9 +50,12 @@ public class UIMusicPlayer extends JFrame {
     private final Color DARK_GOLD = new Color(180, 150, 45);
     private final Color TEXT_WHITE = new Color(240, 240, 240);
     private final Color TEXT_GRAY = new Color(180, 180, 180);
+    //Pasos de la barra de progreso; con 60 avisos por segundo la barra avanza de a poco y no a saltos de 1%
+    private static final int PROGRESS_STEPS = 1000;
+    //Canciones que muestra el selector al buscar, las de mayor puntaje
+    private static final int SEARCH_RESULTS = 200;
 
-    public UIMusicPlayer(List<File> songs, UIInformation info) {
-        this.songs = songs;
+    public UIMusicPlayer(List<Track> songs, UIInformation info) {
         this.info = info;
         this.player = new MusicPlayer(info);
 
@@ -94,20 +112,79 @@ public class UIMusicPlayer extends JFrame {
 
         selectorPanel.add(Box.createVerticalStrut(12));
 
-        songSelector = new JComboBox<>();
-        for (File song : songs) {
-            songSelector.addItem(song.getName());
-        }
+        searchField = new JTextField();
+        searchField.setToolTipText("Buscar por título, artista, álbum o archivo");
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        searchField.setMaximumSize(new Dimension(500, 32));
+        searchField.setAlignmentX(Component.CENTER_ALIGNMENT);
+        searchField.setBackground(BLACK);
+        searchField.setForeground(TEXT_WHITE);
+        searchField.setCaretColor(GOLD);
+        searchField.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(GOLD, 1),
+                new EmptyBorder(6, 10, 6, 10)
+        ));
+        //Filtra con cada tecla; el índice responde en pocos milisegundos aun con cientos de miles de canciones
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        selectorPanel.add(searchField);
+
+        selectorPanel.add(Box.createVerticalStrut(6));
+
+        searchInfo = new JLabel(" ");
+        searchInfo.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        searchInfo.setForeground(TEXT_GRAY);
+        searchInfo.setAlignmentX(Component.CENTER_ALIGNMENT);
+        selectorPanel.add(searchInfo);
+
+        selectorPanel.add(Box.createVerticalStrut(6));
+
+        library.addAll(songs);
+        songModel = new SongListModel(library);
+        songSelector = new JList<>(songModel);
+        songSelector.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         songSelector.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        songSelector.setMaximumSize(new Dimension(500, 35));
-        songSelector.setAlignmentX(Component.CENTER_ALIGNMENT);
         songSelector.setBackground(DARK_GRAY);
         songSelector.setForeground(TEXT_WHITE);
-        songSelector.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(GOLD, 1),
-                new EmptyBorder(8, 12, 8, 12)
-        ));
-        selectorPanel.add(songSelector);
+        songSelector.setSelectionBackground(GOLD);
+        songSelector.setSelectionForeground(BLACK);
+        //Con alto y ancho fijos la lista no mide cada canción: solo se dibujan las filas visibles
+        songSelector.setFixedCellHeight(22);
+        songSelector.setFixedCellWidth(440);
+        songSelector.setVisibleRowCount(6);
+        songSelector.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                setText(((Track) value).getDisplayName());
+                setBorder(new EmptyBorder(0, 8, 0, 8));
+                return this;
+            }
+        });
+        JScrollPane selectorScroll = new JScrollPane(songSelector);
+        selectorScroll.setMaximumSize(new Dimension(500, 140));
+        selectorScroll.setAlignmentX(Component.CENTER_ALIGNMENT);
+        selectorScroll.setBorder(BorderFactory.createLineBorder(GOLD, 1));
+        selectorPanel.add(selectorScroll);
+        if (songModel.getSize() > 0) {
+            songSelector.setSelectedIndex(0);
+        }
+        updateSearchInfo(null);
 
         mainPanel.add(selectorPanel);
         mainPanel.add(Box.createVerticalStrut(20));
@@ -171,7 +248,7 @@ public class UIMusicPlayer extends JFrame {
         progressPanel.setAlignmentX(Component.CENTER_ALIGNMENT);
         progressPanel.setMaximumSize(new Dimension(550, 60));
 
-        progressSlider = new JSlider(0, 100, 0);
+        progressSlider = new JSlider(0, PROGRESS_STEPS, 0);
         progressSlider.setBackground(BLACK);
         progressSlider.setForeground(GOLD);
 
@@ -198,7 +275,7 @@ public class UIMusicPlayer extends JFrame {
                 // Track de progreso
                 if (progressSlider.getValue() > 0) {
                     g2d.setColor(GOLD);
-                    int progressWidth = (int) (trackRect.width * (progressSlider.getValue() / 100.0));
+                    int progressWidth = (int) (trackRect.width * ((double) progressSlider.getValue() / PROGRESS_STEPS));
                     g2d.fillRoundRect(trackRect.x, trackRect.y + trackRect.height/2 - 2,
                             progressWidth, 4, 4, 4);
                 }
@@ -223,8 +300,8 @@ public class UIMusicPlayer extends JFrame {
             public void mouseReleased(MouseEvent e) {
                 if (isSliderChanging && player.getCurrentFile() != null && player.getTotalTime() > 0) {
                     double percent = (double) e.getX() / progressSlider.getWidth();
-                    int newValue = (int) (percent * 100);
-                    progressSlider.setValue(Math.max(0, Math.min(100, newValue)));
+                    int newValue = (int) (percent * PROGRESS_STEPS);
+                    progressSlider.setValue(Math.max(0, Math.min(PROGRESS_STEPS, newValue)));
 
                     long newPosition = (long) (percent * player.getTotalTime());
                     player.setPosition(newPosition);
@@ -272,6 +349,16 @@ public class UIMusicPlayer extends JFrame {
         secondaryControlsPanel.add(btnRestart);
         secondaryControlsPanel.add(btnRepeat);
 
+        btnMute = createControlButton("VOL", "Silenciar", GOLD, 45);
+        volumeSlider = new JSlider(0, 100, player.getVolume());
+        volumeSlider.setBackground(BLACK);
+        volumeSlider.setForeground(GOLD);
+        volumeSlider.setPreferredSize(new Dimension(120, 25));
+        volumeSlider.setToolTipText("Volumen: " + player.getVolume() + "%");
+
+        secondaryControlsPanel.add(btnMute);
+        secondaryControlsPanel.add(volumeSlider);
+
         mainPanel.add(secondaryControlsPanel);
         mainPanel.add(Box.createVerticalStrut(20));
 
@@ -328,20 +415,39 @@ public class UIMusicPlayer extends JFrame {
 
         playlistPanel.add(Box.createVerticalStrut(10));
 
-        playlistArea = new JTextArea(8, 45);
-        playlistArea.setEditable(false);
-        playlistArea.setFont(new Font("Consolas", Font.PLAIN, 12));
-        playlistArea.setBackground(DARK_GRAY);
-        playlistArea.setForeground(TEXT_WHITE);
-        playlistArea.setCaretColor(GOLD);
-        playlistArea.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(GOLD, 1),
-                new EmptyBorder(10, 15, 10, 15)
-        ));
-        playlistArea.setLineWrap(true);
-        playlistArea.setWrapStyleWord(true);
+        playlistModel = new PlaylistViewModel(player);
+        playlistView = new JList<>(playlistModel);
+        playlistView.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        playlistView.setFont(new Font("Consolas", Font.PLAIN, 12));
+        playlistView.setBackground(DARK_GRAY);
+        playlistView.setForeground(TEXT_WHITE);
+        playlistView.setSelectionBackground(GOLD);
+        playlistView.setSelectionForeground(BLACK);
+        playlistView.setBorder(new EmptyBorder(10, 0, 10, 0));
+        //Igual que en el selector: con alto y ancho fijos solo se arma el texto de las filas visibles
+        playlistView.setFixedCellHeight(18);
+        playlistView.setFixedCellWidth(520);
+        playlistView.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (!isSelected && playlistModel.isCurrentRow(index)) {
+                    setForeground(GOLD);
+                }
+                setBorder(new EmptyBorder(0, 15, 0, 8));
+                return this;
+            }
+        });
+        //Cada estado nuevo del reproductor llega con los cambios de la playlist: solo se avisan esas filas
+        player.addListener((previous, state, changes) -> {
+            playlistModel.update(previous, state, changes);
+            updateQueueInfo();
+            //Modos, pausa o canción nueva cambian el texto del tiempo aunque la posición sea la misma
+            updateTimeDisplay(player.getCurrentTime(), player.getTotalTime());
+        });
 
-        JScrollPane playlistScrollPane = new JScrollPane(playlistArea);
+        JScrollPane playlistScrollPane = new JScrollPane(playlistView);
         playlistScrollPane.setPreferredSize(new Dimension(550, 180));
         playlistScrollPane.setMaximumSize(new Dimension(550, 180));
         playlistScrollPane.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -363,37 +469,35 @@ public class UIMusicPlayer extends JFrame {
 
         add(mainPanel, BorderLayout.CENTER);
 
-        // ========== TIMER PARA ACTUALIZAR TIEMPO ==========
-        progressTimer = new Timer(500, e -> updateTimeDisplay());
-        progressTimer.start();
+        // ========== AVISOS DEL REPRODUCTOR ==========
+        //La posición llega a la frecuencia de la pantalla solo mientras suena; detenido no hay ningún Timer corriendo
+        player.addPositionListener(this::updateTimeDisplay);
 
         // ========== ACCIONES DE LOS BOTONES ==========
 
         btnPlay.addActionListener(e -> {
-            File selected = songs.get(songSelector.getSelectedIndex());
+            Track track = selectedSong();
+            if (track == null) {
+                return;
+            }
+            File selected = track.getFile();
 
             if (player.getCurrentFile() == null || !player.getCurrentFile().equals(selected)) {
-                player.load(selected);
-                updateWindowTitle(selected.getName());
-
-                //SINCRONIZAR SOLO AL CAMBIAR DE CANCIÓN
-                for (int i = 0; i < songSelector.getItemCount(); i++) {
-                    if (songSelector.getItemAt(i).equals(selected.getName())) {
-                        songSelector.setSelectedIndex(i);
-                        break;
-                    }
-                }
-            }
+                //La carga ocurre en segundo plano, la ventana sigue respondiendo mientras tanto
+                showLoading(selected);
+                player.loadAsync(selected, true).thenAccept(loaded -> {
+                    updateWindowTitle(player.getTrack(selected).getDisplayName());
 
-            player.play();
-            statusLabel.setText("Reproduciendo: " + selected.getName());
-            statusLabel.setForeground(GOLD);
+                    //SINCRONIZAR SOLO AL CAMBIAR DE CANCIÓN
+                    selectSong(selected);
 
-            wavePanel.setPlaying(true);
-            wavePanel.setVolume(0.8);
+                    showPlaying(selected);
+                });
+                return;
+            }
 
-            updateQueueInfo();
-            updatePlaylistDisplay();
+            player.play();
+            showPlaying(selected);
         });
 
         btnPause.addActionListener(e -> {
@@ -408,13 +512,7 @@ public class UIMusicPlayer extends JFrame {
 
             //SINCRONIZAR AL PAUSAR
             if (player.getCurrentFile() != null) {
-                String currentSongName = player.getCurrentFile().getName();
-                for (int i = 0; i < songSelector.getItemCount(); i++) {
-                    if (songSelector.getItemAt(i).equals(currentSongName)) {
-                        songSelector.setSelectedIndex(i);
-                        break;
-                    }
-                }
+                selectSong(player.getCurrentFile());
             }
 
             wavePanel.setPlaying(false);
@@ -462,6 +560,25 @@ public class UIMusicPlayer extends JFrame {
             updateRepeatIndicator();
         });
 
+        //El volumen cambia mientras se arrastra, la rampa del motor evita chasquidos
+        volumeSlider.addChangeListener(e -> {
+            player.setVolume(volumeSlider.getValue());
+            volumeSlider.setToolTipText("Volumen: " + volumeSlider.getValue() + "%");
+        });
+
+        btnMute.addActionListener(e -> {
+            player.setMuted(!player.isMuted());
+            if (player.isMuted()) {
+                btnMute.setText("MUT");
+                btnMute.setBackground(TEXT_GRAY);
+                btnMute.setToolTipText("Activar sonido");
+            } else {
+                btnMute.setText("VOL");
+                btnMute.setBackground(GOLD);
+                btnMute.setToolTipText("Silenciar");
+            }
+        });
+
         btnShuffle.addActionListener(e -> {
             player.toggleShuffleMode();
             boolean isShuffleOn = player.isShuffleMode();
@@ -481,99 +598,98 @@ public class UIMusicPlayer extends JFrame {
             }
 
             updateShuffleIndicator();
-            updatePlaylistDisplay();
         });
 
         btnNext.addActionListener(e -> {
             File previous = player.getCurrentFile();
-            player.next();
-            File current = player.getCurrentFile();
-
-            if (current != null) {
-                if (previous == null || !current.getName().equals(previous.getName())) {
-                    statusLabel.setText("Reproduciendo: " + current.getName());
-                    statusLabel.setForeground(GOLD);
-                    updateWindowTitle(current.getName());
-
-                    //SINCRONIZAR SOLO CUANDO CAMBIA LA CANCIÓN
-                    for (int i = 0; i < songSelector.getItemCount(); i++) {
-                        if (songSelector.getItemAt(i).equals(current.getName())) {
-                            songSelector.setSelectedIndex(i);
-                            break;
-                        }
+            //Si se presiona varias veces seguidas, solo se completa la última carga
+            player.nextAsync().thenAccept(loaded -> {
+                File current = player.getCurrentFile();
+
+                if (current != null) {
+                    if (previous == null || !current.equals(previous)) {
+                        String name = player.getTrack(current).getDisplayName();
+                        statusLabel.setText("Reproduciendo: " + name);
+                        statusLabel.setForeground(GOLD);
+                        updateWindowTitle(name);
+
+                        //SINCRONIZAR SOLO CUANDO CAMBIA LA CANCIÓN
+                        selectSong(current);
+
+                        wavePanel.setPlaying(true);
+                        wavePanel.setVolume(0.8);
+                    } else {
+                        statusLabel.setText("No hay más canciones en la cola");
+                        statusLabel.setForeground(TEXT_GRAY);
+                        wavePanel.setPlaying(false);
+                        wavePanel.setVolume(0.3);
                     }
-
-                    wavePanel.setPlaying(true);
-                    wavePanel.setVolume(0.8);
                 } else {
-                    statusLabel.setText("No hay más canciones en la cola");
+                    statusLabel.setText("No hay canción actual");
                     statusLabel.setForeground(TEXT_GRAY);
                     wavePanel.setPlaying(false);
-                    wavePanel.setVolume(0.3);
+                    wavePanel.setVolume(0.2);
                 }
-            } else {
-                statusLabel.setText("No hay canción actual");
-                statusLabel.setForeground(TEXT_GRAY);
-                wavePanel.setPlaying(false);
-                wavePanel.setVolume(0.2);
-            }
+            });
 
-            updateQueueInfo();
-            updatePlaylistDisplay();
+            if (player.isLoading()) {
+                showLoading(player.getLoadingFile());
+            }
         });
 
         btnPrevious.addActionListener(e -> {
             File previous = player.getCurrentFile();
-            player.previous();
-            File current = player.getCurrentFile();
-
-            if (current != null) {
-                if (previous == null || !current.getName().equals(previous.getName())) {
-                    statusLabel.setText("Reproduciendo: " + current.getName());
-                    statusLabel.setForeground(GOLD);
-                    updateWindowTitle(current.getName());
-
-                    for (int i = 0; i < songSelector.getItemCount(); i++) {
-                        if (songSelector.getItemAt(i).equals(current.getName())) {
-                            songSelector.setSelectedIndex(i);
-                            break;
-                        }
+            player.previousAsync().thenAccept(loaded -> {
+                File current = player.getCurrentFile();
+
+                if (current != null) {
+                    if (previous == null || !current.equals(previous)) {
+                        String name = player.getTrack(current).getDisplayName();
+                        statusLabel.setText("Reproduciendo: " + name);
+                        statusLabel.setForeground(GOLD);
+                        updateWindowTitle(name);
+
+                        selectSong(current);
+
+                        wavePanel.setPlaying(true);
+                        wavePanel.setVolume(0.8);
+                    } else {
+                        statusLabel.setText("Ya estás en la primera canción");
+                        statusLabel.setForeground(TEXT_GRAY);
+                        wavePanel.setPlaying(false);
+                        wavePanel.setVolume(0.3);
                     }
-
-                    wavePanel.setPlaying(true);
-                    wavePanel.setVolume(0.8);
                 } else {
-                    statusLabel.setText("Ya estás en la primera canción");
+                    statusLabel.setText("No hay canción actual");
                     statusLabel.setForeground(TEXT_GRAY);
                     wavePanel.setPlaying(false);
-                    wavePanel.setVolume(0.3);
+                    wavePanel.setVolume(0.2);
                 }
-            } else {
-                statusLabel.setText("No hay canción actual");
-                statusLabel.setForeground(TEXT_GRAY);
-                wavePanel.setPlaying(false);
-                wavePanel.setVolume(0.2);
-            }
+            });
 
-            updateQueueInfo();
-            updatePlaylistDisplay();
+            if (player.isLoading()) {
+                showLoading(player.getLoadingFile());
+            }
         });
 
         btnAddQueue.addActionListener(e -> {
-            File selected = songs.get(songSelector.getSelectedIndex());
+            Track selected = selectedSong();
+            if (selected == null) {
+                return;
+            }
             player.addToQueue(selected);
-            updateQueueInfo();
         });
 
         btnAddPlaylist.addActionListener(e -> {
-            File selected = songs.get(songSelector.getSelectedIndex());
+            Track selected = selectedSong();
+            if (selected == null) {
+                return;
+            }
             player.addToPlaylist(selected);
-            updateQueueInfo();
         });
 
         btnClearQueue.addActionListener(e -> {
             player.clearQueue();
-            updateQueueInfo();
         });
 
         btnClearPlaylist.addActionListener(e -> {
@@ -588,8 +704,6 @@ public class UIMusicPlayer extends JFrame {
                 player.clearPlaylist();
                 statusLabel.setText("Playlist eliminada");
                 statusLabel.setForeground(TEXT_GRAY);
-                updateQueueInfo();
-                updatePlaylistDisplay();
                 updateWindowTitle("Sin canción");
 
                 wavePanel.setPlaying(false);
@@ -597,7 +711,118 @@ public class UIMusicPlayer extends JFrame {
             }
         });
 
-        updatePlaylistDisplay();
+        updateQueueInfo();
+        updateTimeDisplay(0, 0);
+
+        if (library.size() > 0) {
+            analyzeLibrary();
+        }
+    }
+
+    //Canciones que el escaneo encontró con la ventana ya abierta, se agregan al final del selector
+    //Las que ya estaban en la caché de metadatos aparecen con su título desde el principio
+    public void addSongs(List<File> found) {
+        List<Track> tracks = new ArrayList<>(found.size());
+        for (File file : found) {
+            tracks.add(player.getTrack(file));
+        }
+        //Los ids de las que ya estaban no cambian, la selección sigue en su lugar
+        library.addAll(tracks);
+        if (searchField.getText().isBlank()) {
+            songModel.showAll();
+            if (songSelector.isSelectionEmpty() && songModel.getSize() > 0) {
+                songSelector.setSelectedIndex(0);
+            }
+            updateSearchInfo(null);
+        } else {
+            applyFilter();
+        }
+    }
+
+    //Canciones que ya no están en el disco; también salen de la playlist y de la cola
+    public void removeSongs(List<File> gone) {
+        Set<File> removed = new HashSet<>(gone);
+        //Los ids se corren al quitar, la elegida se vuelve a buscar por su archivo
+        Track selected = selectedSong();
+        if (library.removeAll(removed)) {
+            applyFilter(selected);
+        }
+        player.removeFromLibrary(removed);
+    }
+
+    //Lee las cabeceras de las canciones nuevas y después mide el volumen de la biblioteca, todo en segundo plano
+    //Devuelve el informe del análisis de volumen (archivos/s, MB/s) para quien lo quiera mostrar
+    public CompletableFuture<LoudnessLibrary.Report> analyzeLibrary() {
+        return analyzeSongs(library.getFiles());
+    }
+
+    //Igual que analyzeLibrary() pero solo con esas canciones (nuevas o modificadas); las que no cambiaron salen de las cachés
+    public CompletableFuture<LoudnessLibrary.Report> analyzeSongs(List<File> files) {
+        player.extractMetadata(files).thenAccept(report -> {
+            if (report.getReadFiles() + report.getFailedFiles() > 0) {
+                SwingUtilities.invokeLater(() -> refreshSongs(files));
+            }
+        });
+        //Medimos el volumen para normalizar las canciones al reproducirlas
+        return player.analyzeLibrary(files);
+    }
+
+    //Toma los datos recién leídos de esas canciones; sus ids no cambian, solo se vuelven a indexar
+    private void refreshSongs(List<File> files) {
+        library.refresh(files, player::getTrack);
+        applyFilter();
+    }
+
+    //Muestra en el selector lo que coincide con el buscador, o toda la biblioteca si está vacío
+    private void applyFilter() {
+        applyFilter(selectedSong());
+    }
+
+    private void applyFilter(Track selected) {
+        String query = searchField.getText();
+        SongIndex.Result result = null;
+        if (query.isBlank()) {
+            songModel.showAll();
+        } else {
+            result = library.search(query, SEARCH_RESULTS);
+            songModel.showResults(result.getIds());
+        }
+        songSelector.clearSelection();
+        if (selected != null) {
+            selectSong(selected.getFile());
+        }
+        //Si la elegida no quedó en la lista, se elige la mejor, así Play suena lo que se buscó
+        if (songSelector.isSelectionEmpty() && songModel.getSize() > 0) {
+            songSelector.setSelectedIndex(0);
+            songSelector.ensureIndexIsVisible(0);
+        }
+        updateSearchInfo(result);
+    }
+
+    private void updateSearchInfo(SongIndex.Result result) {
+        if (result == null) {
+            searchInfo.setText(library.size() + " canciones");
+        } else if (result.getTotal() > result.getIds().length) {
+            searchInfo.setText(String.format("%d mejores de %d coincidencias (%.1f ms)",
+                    result.getIds().length, result.getTotal(), result.getMillis()));
+        } else {
+            searchInfo.setText(String.format("%d coincidencias (%.1f ms)", result.getTotal(), result.getMillis()));
+        }
+    }
+
+    //Canción elegida en el selector, null mientras la biblioteca está vacía o la búsqueda no encontró nada
+    private Track selectedSong() {
+        int row = songSelector.getSelectedIndex();
+        return row >= 0 && row < songModel.getSize() ? songModel.getElementAt(row) : null;
+    }
+
+    //Marca en el selector la canción que está sonando: id por archivo y fila por id, sin recorrer la lista
+    private void selectSong(File file) {
+        int row = songModel.rowOf(library.idOf(file));
+        if (row >= 0) {
+            songSelector.setSelectedIndex(row);
+            songSelector.ensureIndexIsVisible(row);
+        }
     }
 
     private JButton createControlButton(String icon, String tooltip, Color color, int size) {
@@ -652,46 +877,56 @@ public class UIMusicPlayer extends JFrame {
         return btn;
     }
 
-    private void updateWindowTitle(String songName) {
-        setTitle("Reproductor de Música - " + songName);
+    //Estado mientras la canción se abre en segundo plano
+    private void showLoading(File song) {
+        statusLabel.setText("[CARGANDO] " + player.getTrack(song).getDisplayName() + "...");
+        statusLabel.setForeground(TEXT_GRAY);
+        wavePanel.setPlaying(false);
+        wavePanel.setVolume(0.4);
     }
 
-    private void updateTimeDisplay() {
-        SwingUtilities.invokeLater(() -> {
-            if (player.getCurrentFile() != null && player.getTotalTime() > 0) {
-                String currentTime = player.getCurrentTimeFormatted();
-                String totalTime = player.getTotalTimeFormatted();
+    private void showPlaying(File song) {
+        statusLabel.setText("Reproduciendo: " + player.getTrack(song).getDisplayName());
+        statusLabel.setForeground(GOLD);
 
-                String timePrefix = "";
-                if (player.isRepeatMode()) timePrefix += "[R] ";
-                if (player.isShuffleMode()) timePrefix += "[S] ";
-                if (timePrefix.isEmpty()) timePrefix = "TIME: ";
+        wavePanel.setPlaying(true);
+        wavePanel.setVolume(0.8);
+    }
 
-                timeLabel.setText(timePrefix + currentTime + " / " + totalTime);
+    private void updateWindowTitle(String songName) {
+        setTitle("Reproductor de Música - " + songName);
+    }
 
-                if (!isSliderChanging) {
-                    int progress = (int) ((double) player.getCurrentTime() / player.getTotalTime() * 100);
-                    progressSlider.setValue(progress);
-                }
+    //Tiempo y barra de progreso, con la posición que trae el aviso del reproductor (en microsegundos)
+    private void updateTimeDisplay(long position, long length) {
+        PlayerState state = player.getState();
+        String timePrefix = "";
+        if (state.isRepeatMode()) timePrefix += "[R] ";
+        if (state.isShuffleMode()) timePrefix += "[S] ";
 
-                if (player.isPlaying()) {
-                    timeLabel.setForeground(GOLD);
-                } else if (player.isPaused()) {
-                    timeLabel.setForeground(LIGHT_GOLD);
-                } else {
-                    timeLabel.setForeground(TEXT_GRAY);
-                }
+        if (state.getCurrentFile() != null && length > 0) {
+            if (timePrefix.isEmpty()) timePrefix = "TIME: ";
+            timeLabel.setText(timePrefix + player.formatTime(position) + " / " + player.formatTime(length));
 
+            if (!isSliderChanging) {
+                int progress = (int) ((double) position / length * PROGRESS_STEPS);
+                progressSlider.setValue(progress);
+            }
+
+            if (state.isPlaying()) {
+                timeLabel.setForeground(GOLD);
+            } else if (state.isPaused()) {
+                timeLabel.setForeground(LIGHT_GOLD);
             } else {
-                String timePrefix = "";
-                if (player.isRepeatMode()) timePrefix += "[R] ";
-                if (player.isShuffleMode()) timePrefix += "[S] ";
-                if (timePrefix.isEmpty()) timePrefix = "Time: ";
-                timeLabel.setText(timePrefix + "--:-- / --:--");
                 timeLabel.setForeground(TEXT_GRAY);
-                progressSlider.setValue(0);
             }
-        });
+
+        } else {
+            if (timePrefix.isEmpty()) timePrefix = "Time: ";
+            timeLabel.setText(timePrefix + "--:-- / --:--");
+            timeLabel.setForeground(TEXT_GRAY);
+            progressSlider.setValue(0);
+        }
     }
 
     private void updateRepeatIndicator() {
@@ -717,75 +952,95 @@ public class UIMusicPlayer extends JFrame {
     }
 
     private void updateQueueInfo() {
-        List<File> currentPlaylist = player.getPlaylist();
-
-        if (currentPlaylist != null && !currentPlaylist.isEmpty()) {
-            int currentIndex = player.getCurrentIndex();
+        PlayerState state = player.getState();
+        File nextSong = state.getNextFile();
 
-            if (currentIndex + 1 < currentPlaylist.size()) {
-                File nextSong = currentPlaylist.get(currentIndex + 1);
-
-                if (player.getQueuedCount() > 0 && currentIndex + 1 <= player.getCurrentIndex() + player.getQueuedCount()) {
-                    queueLabel.setText("Próxima en cola: " + nextSong.getName());
-                } else {
-                    queueLabel.setText("Próxima: " + nextSong.getName());
-                }
-                queueLabel.setForeground(GOLD);
+        if (nextSong != null) {
+            if (!state.getUpNext().isEmpty()) {
+                queueLabel.setText("Próxima en cola: " + player.getTrack(nextSong).getDisplayName());
             } else {
-                queueLabel.setText("Próxima: Ninguna");
-                queueLabel.setForeground(TEXT_GRAY);
+                queueLabel.setText("Próxima: " + player.getTrack(nextSong).getDisplayName());
             }
+            queueLabel.setForeground(GOLD);
         } else {
             queueLabel.setText("Próxima: Ninguna");
             queueLabel.setForeground(TEXT_GRAY);
         }
-        updatePlaylistDisplay();
     }
 
-    private void updatePlaylistDisplay() {
-        List<File> currentPlaylist = player.getPlaylist();
+    @Override
+    public void dispose() {
+        if (wavePanel != null) {
+            wavePanel.cleanup();
+        }
+        if (player != null) {
+            player.close();
+        }
+        super.dispose();
+    }
+
+    //Modelo del selector: toda la biblioteca en orden o los resultados de la búsqueda, sin copiar canciones
+    private static final class SongListModel extends AbstractListModel<Track> {
+        private final SongIndex library;
+        //null muestra toda la biblioteca; si no, los ids encontrados de mejor a peor
+        private int[] results = null;
+        private int size = 0;
 
-        StringBuilder playlistText = new StringBuilder();
+        SongListModel(SongIndex library) {
+            this.library = library;
+            this.size = library.size();
+        }
 
-        if (currentPlaylist != null && !currentPlaylist.isEmpty()) {
-            playlistText.append("LISTA ACTUAL (").append(currentPlaylist.size()).append(" canciones)\n\n");
+        @Override
+        public int getSize() {
+            return size;
+        }
 
-            for (int i = 0; i < currentPlaylist.size(); i++) {
-                File song = currentPlaylist.get(i);
+        @Override
+        public Track getElementAt(int row) {
+            return library.get(results == null ? row : results[row]);
+        }
 
-                if (i == player.getCurrentIndex()) {
-                    playlistText.append(">> ");
-                } else if (i > player.getCurrentIndex() && i <= player.getCurrentIndex() + player.getQueuedCount()) {
-                    playlistText.append("-> ");
-                } else {
-                    playlistText.append("- ");
+        //Fila de la canción, -1 si no se muestra; con toda la biblioteca la fila es el id, si no se buscan
+        //entre los resultados, que nunca son más de SEARCH_RESULTS
+        int rowOf(int id) {
+            if (id < 0) {
+                return -1;
+            }
+            if (results == null) {
+                return id < size ? id : -1;
+            }
+            for (int row = 0; row < results.length; row++) {
+                if (results[row] == id) {
+                    return row;
                 }
-
-                playlistText.append(String.format("%2d", i + 1))
-                        .append(". ")
-                        .append(song.getName())
-                        .append("\n");
             }
-        } else {
-            playlistText.append("No hay canciones en la lista de reproducción.\n");
-            playlistText.append("Selecciona una canción y haz clic en 'Agregar a Playlist'.");
+            return -1;
         }
 
-        playlistArea.setText(playlistText.toString());
-        playlistArea.setCaretPosition(0);
-    }
-
-    @Override
-    public void dispose() {
-        if (progressTimer != null) {
-            progressTimer.stop();
+        void showAll() {
+            replace(null, library.size());
         }
-        if (wavePanel != null) {
-            wavePanel.cleanup();
+
+        void showResults(int[] ids) {
+            replace(ids, ids.length);
         }
-        if (player != null) {
-            player.close();
+
+        //Avisa a la lista solo el cambio de tamaño y las filas que pueden haber cambiado
+        private void replace(int[] ids, int newSize) {
+            boolean sameRows = results == null && ids == null;
+            int oldSize = size;
+            results = ids;
+            size = newSize;
+            if (newSize > oldSize) {
+                fireIntervalAdded(this, oldSize, newSize - 1);
+            } else if (newSize < oldSize) {
+                fireIntervalRemoved(this, newSize, oldSize - 1);
+            }
+            //Al crecer la biblioteca las filas que ya estaban siguen iguales
+            if (!sameRows && Math.min(oldSize, newSize) > 0) {
+                fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+            }
         }
-        super.dispose();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+import java.io.File;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+//Cola "a continuación": canciones pedidas que suenan antes de seguir con la playlist
+//Es una cola doble circular de IDs de TrackTable, pedir al final o al frente, sacar la siguiente y ver cuál sigue
+//es O(1) aunque haya miles de pedidos; la siguiente se guarda ya armada como File
+public class UpNextQueue implements Iterable<File> {
+    //Atributos
+    private final TrackTable table = TrackTable.shared();
+    //Capacidad siempre potencia de 2, así la vuelta del índice es una máscara
+    private int[] tracks = new int[16];
+    private int head;
+    private int size;
+    private File first;
+
+    //Cada cambio suma uno; la copia para otros hilos se arma solo si alguien la pide después de un cambio
+    private long version;
+    private long snapshotVersion;
+    private List<File> snapshot = new Snapshot(new int[0]);
+
+    //Suena después de todo lo que ya estaba pedido
+    public void playLast(File file) {
+        grow();
+        tracks[(head + size) & (tracks.length - 1)] = table.intern(file);
+        if (size == 0) {
+            first = file;
+        }
+        size++;
+        version++;
+    }
+
+    //Suena apenas termine la canción actual, antes que los demás pedidos
+    public void playNext(File file) {
+        grow();
+        head = (head - 1) & (tracks.length - 1);
+        tracks[head] = table.intern(file);
+        first = file;
+        size++;
+        version++;
+    }
+
+    //Saca la siguiente canción pedida, null si no hay ninguna
+    public File poll() {
+        if (size == 0) {
+            return null;
+        }
+        File file = first;
+        head = (head + 1) & (tracks.length - 1);
+        size--;
+        first = size > 0 ? table.file(tracks[head]) : null;
+        version++;
+        return file;
+    }
+
+    //Qué suena después, sin sacarla de la cola; null si no hay pedidos
+    public File peek() {
+        return first;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            head = 0;
+            size = 0;
+            first = null;
+            version++;
+        }
+    }
+
+    //Quita los pedidos de esos archivos, por ejemplo si se borraron de la biblioteca; O(n) sobre la cola
+    public boolean removeAll(Collection<File> removed) {
+        Set<Integer> ids = new HashSet<>();
+        for (File file : removed) {
+            int id = table.find(file);
+            if (id >= 0) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty() || size == 0) {
+            return false;
+        }
+        //Los que quedan se corren hacia el frente sin cambiar el orden
+        int mask = tracks.length - 1;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int track = tracks[(head + i) & mask];
+            if (!ids.contains(track)) {
+                tracks[(head + kept) & mask] = track;
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        size = kept;
+        first = size > 0 ? table.file(tracks[head]) : null;
+        version++;
+        return true;
+    }
+
+    //Copia inmutable de los pedidos en orden, se puede leer desde cualquier hilo
+    //Se copia solo si la cola cambió desde la última vez que se pidió; si no, se devuelve la misma
+    public List<File> snapshot() {
+        if (snapshotVersion != version) {
+            snapshot = new Snapshot(copyTracks());
+            snapshotVersion = version;
+        }
+        return snapshot;
+    }
+
+    //Recorre los pedidos en el orden en que van a sonar, sin copiarlos ni permitir cambios
+    @Override
+    public Iterator<File> iterator() {
+        return new Iterator<File>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public File next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return table.file(tracks[(head + next++) & (tracks.length - 1)]);
+            }
+        };
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Duplica la capacidad cuando está llena, dejando los pedidos en orden desde la posición 0
+    private void grow() {
+        if (size < tracks.length) {
+            return;
+        }
+        tracks = copyTracks(tracks.length * 2);
+        head = 0;
+    }
+
+    private int[] copyTracks() {
+        return copyTracks(size);
+    }
+
+    private int[] copyTracks(int capacity) {
+        int[] copy = new int[capacity];
+        int firstPart = Math.min(size, tracks.length - head);
+        System.arraycopy(tracks, head, copy, 0, firstPart);
+        System.arraycopy(tracks, 0, copy, firstPart, size - firstPart);
+        return copy;
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Los pedidos de un momento dado, solo IDs; el File se arma al pedirlo
+    private static final class Snapshot extends AbstractList<File> implements RandomAccess {
+        private final int[] tracks;
+
+        Snapshot(int[] tracks) {
+            this.tracks = tracks;
+        }
+
+        @Override
+        public File get(int index) {
+            return TrackTable.shared().file(tracks[index]);
+        }
+
+        @Override
+        public int size() {
+            return tracks.length;
+        }
+    }
+}
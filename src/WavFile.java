@@ -0,0 +1,175 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+//Lector de WAV/RIFF propio: lee solo la cabecera y mapea los frames del archivo en memoria
+public class WavFile {
+    //Atributos
+
+    //Códigos de formato del chunk "fmt "
+    private static final int FORMAT_PCM = 0x0001;
+    private static final int FORMAT_FLOAT = 0x0003;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    //Tamaño máximo de cada región mapeada (un MappedByteBuffer no puede pasar de 2 GB)
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final File file;
+    private final AudioFormat format;
+    //Posición y tamaño en bytes del chunk "data" dentro del archivo
+    private final long dataOffset;
+    private final long dataLength;
+
+    private WavFile(File file, AudioFormat format, long dataOffset, long dataLength) {
+        this.file = file;
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    //Lee la cabecera, devuelve null si no es un WAV PCM/float que sepamos leer directamente
+    public static WavFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 12) {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+                return null;
+            }
+
+            AudioFormat format = null;
+            long position = 12;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+            //Recorremos los chunks hasta encontrar "fmt " y "data", el resto se salta
+            while (position + 8 <= fileSize) {
+                chunkHeader.clear();
+                readFully(channel, chunkHeader, position);
+                int id = chunkHeader.getInt(0);
+                long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+                long body = position + 8;
+
+                if (id == fourCC("fmt ")) {
+                    ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 64)).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(channel, fmt, body);
+                    format = parseFormat(fmt);
+                    if (format == null) {
+                        return null;
+                    }
+                } else if (id == fourCC("data")) {
+                    if (format == null) {
+                        return null;
+                    }
+                    //Archivos grabados en vivo pueden traer un tamaño incorrecto, lo limitamos al archivo real
+                    long length = Math.min(size, fileSize - body);
+                    length -= length % format.getFrameSize();
+                    return new WavFile(file, format, body, length);
+                }
+
+                //Los chunks de tamaño impar llevan un byte de relleno
+                position = body + size + (size & 1);
+            }
+            return null;
+        }
+    }
+
+    //Stream sobre los frames mapeados, sin búferes intermedios en el heap
+    public AudioInputStream openStream() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int frameSize = format.getFrameSize();
+            //Cada segmento termina en un frame completo para no partir muestras entre regiones
+            long segmentBytes = MAX_SEGMENT_BYTES - MAX_SEGMENT_BYTES % frameSize;
+            int count = (int) Math.max(1, (dataLength + segmentBytes - 1) / segmentBytes);
+
+            ByteBuffer[] segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long offset = i * segmentBytes;
+                long length = Math.min(segmentBytes, dataLength - offset);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + offset, Math.max(0, length));
+                segments[i] = mapped;
+            }
+            //El mapeo sigue siendo válido aunque el canal se cierre
+            return new AudioInputStream(new ByteBufferInputStream(segments), format, dataLength / frameSize);
+        }
+    }
+
+    //Getters
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public long getFrameLength() {
+        return dataLength / format.getFrameSize();
+    }
+
+    // ============ MÉTODOS INTERNOS ============
+
+    //Formato del chunk "fmt ", null si no es PCM ni float; también lo usa MetadataReader
+    static AudioFormat parseFormat(ByteBuffer fmt) {
+        if (fmt.limit() < 16) {
+            return null;
+        }
+        int tag = fmt.getShort(0) & 0xFFFF;
+        int channels = fmt.getShort(2) & 0xFFFF;
+        int sampleRate = fmt.getInt(4);
+        int blockAlign = fmt.getShort(12) & 0xFFFF;
+        int bits = fmt.getShort(14) & 0xFFFF;
+
+        //WAVE_FORMAT_EXTENSIBLE: el formato real está en los dos primeros bytes del GUID SubFormat
+        if (tag == FORMAT_EXTENSIBLE) {
+            if (fmt.limit() < 26) {
+                return null;
+            }
+            tag = fmt.getShort(24) & 0xFFFF;
+        }
+
+        if (channels <= 0 || sampleRate <= 0 || blockAlign <= 0 || bits <= 0) {
+            return null;
+        }
+        //El contenedor de cada muestra se deduce del blockAlign, los bits válidos pueden ser menos
+        int containerBits = blockAlign / channels * 8;
+
+        if (tag == FORMAT_PCM) {
+            AudioFormat.Encoding encoding = containerBits == 8
+                    ? AudioFormat.Encoding.PCM_UNSIGNED
+                    : AudioFormat.Encoding.PCM_SIGNED;
+            return new AudioFormat(encoding, sampleRate, containerBits, channels, blockAlign, sampleRate, false);
+        }
+        if (tag == FORMAT_FLOAT && (containerBits == 32 || containerBits == 64)) {
+            return new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, sampleRate, containerBits, channels, blockAlign, sampleRate, false);
+        }
+        return null;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.rewind();
+    }
+
+    static int fourCC(String id) {
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
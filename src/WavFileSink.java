@@ -0,0 +1,264 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+//Salida que graba en un archivo WAV todo lo que sonaría, con el volumen, el ecualizador y los fundidos aplicados
+//Las pistas del mismo formato van seguidas en un solo archivo; si el formato cambia se empieza otro (musica-2.wav...)
+public class WavFileSink implements AudioSink {
+    //Atributos
+
+    private final Recorder recorder;
+    private final AudioFormat format;
+    private final int bufferBytes;
+    private final int frameSize;
+    //Frames grabados desde que se abrió esta salida
+    private long writtenFrames;
+    private boolean closed;
+
+    private WavFileSink(Recorder recorder, AudioFormat format, int bufferBytes) {
+        this.recorder = recorder;
+        this.format = format;
+        this.frameSize = Math.max(1, format.getFrameSize());
+        this.bufferBytes = Math.max(frameSize, bufferBytes);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    //Lo escrito ya está en el archivo, no hay nada pendiente que descartar
+    @Override
+    public void flush() {
+    }
+
+    //Deja la cabecera al día, así el archivo se puede abrir aunque el reproductor siga grabando
+    @Override
+    public void drain() {
+        recorder.updateHeader();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            recorder.updateHeader();
+        }
+    }
+
+    @Override
+    public synchronized int write(byte[] data, int offset, int length) {
+        if (closed) {
+            return 0;
+        }
+        int frames = length / frameSize;
+        if (!recorder.write(format, data, offset, frames * frameSize)) {
+            return 0;
+        }
+        writtenFrames += frames;
+        return frames * frameSize;
+    }
+
+    @Override
+    public synchronized long getLongFramePosition() {
+        return writtenFrames;
+    }
+
+    @Override
+    public int available() {
+        return bufferBytes;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferBytes;
+    }
+
+    // ============ CLASES INTERNAS ============
+
+    //Fábrica de salidas a archivo; se cierra al terminar para dejar la cabecera del último archivo correcta
+    public static final class Recorder implements AudioSink.Factory, Closeable {
+        private static final int HEADER_BYTES = 44;
+
+        private final File file;
+        private RandomAccessFile out;
+        private AudioFormat currentFormat;
+        private long dataBytes;
+        private int fileCount;
+        //Bloque convertido al orden de bytes y signo de WAV, se reutiliza entre escrituras
+        private byte[] converted = new byte[0];
+
+        public Recorder(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public synchronized AudioSink open(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+            if (!isSupported(format)) {
+                throw new LineUnavailableException("Formato no soportado para grabar en WAV: " + format);
+            }
+            if (currentFormat == null || !format.matches(currentFormat)) {
+                try {
+                    startFile(format);
+                } catch (IOException e) {
+                    throw new LineUnavailableException("No se pudo crear " + file + ": " + e.getMessage());
+                }
+            }
+            return new WavFileSink(this, format, bufferBytes);
+        }
+
+        //Archivos grabados hasta ahora
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        public synchronized long getRecordedBytes() {
+            return dataBytes;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (out != null) {
+                writeHeader();
+                out.close();
+                out = null;
+                currentFormat = null;
+            }
+        }
+
+        private synchronized boolean write(AudioFormat format, byte[] data, int offset, int length) {
+            if (out == null || !format.matches(currentFormat)) {
+                return false;
+            }
+            try {
+                out.write(toWav(format, data, offset, length), 0, length);
+                dataBytes += length;
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private synchronized void updateHeader() {
+            if (out == null) {
+                return;
+            }
+            try {
+                writeHeader();
+            } catch (IOException e) {
+                //La cabecera se vuelve a escribir al cerrar
+            }
+        }
+
+        private void startFile(AudioFormat format) throws IOException {
+            close();
+            fileCount++;
+            File target = fileCount == 1 ? file : numbered(fileCount);
+            File dir = target.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("No se pudo crear la carpeta " + dir);
+            }
+            out = new RandomAccessFile(target, "rw");
+            out.setLength(0);
+            currentFormat = format;
+            dataBytes = 0;
+            writeHeader();
+        }
+
+        //musica.wav -> musica-2.wav
+        private File numbered(int count) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String extension = dot > 0 ? name.substring(dot) : ".wav";
+            return new File(file.getAbsoluteFile().getParentFile(), base + "-" + count + extension);
+        }
+
+        //Cabecera RIFF de 44 bytes; los tamaños se corrigen cada vez que se reescribe
+        private void writeHeader() throws IOException {
+            AudioFormat format = currentFormat;
+            int channels = format.getChannels();
+            int bits = format.getSampleSizeInBits();
+            int rate = Math.round(format.getSampleRate());
+            int blockAlign = format.getFrameSize();
+            boolean isFloat = format.getEncoding().equals(AudioFormat.Encoding.PCM_FLOAT);
+            long dataSize = Math.min(dataBytes, 0xFFFFFFFFL - HEADER_BYTES);
+
+            byte[] header = new byte[HEADER_BYTES];
+            putAscii(header, 0, "RIFF");
+            putInt(header, 4, (int) (dataSize + HEADER_BYTES - 8), 4);
+            putAscii(header, 8, "WAVE");
+            putAscii(header, 12, "fmt ");
+            putInt(header, 16, 16, 4);
+            putInt(header, 20, isFloat ? 3 : 1, 2);
+            putInt(header, 22, channels, 2);
+            putInt(header, 24, rate, 4);
+            putInt(header, 28, rate * blockAlign, 4);
+            putInt(header, 32, blockAlign, 2);
+            putInt(header, 34, bits, 2);
+            putAscii(header, 36, "data");
+            putInt(header, 40, (int) dataSize, 4);
+
+            long position = out.getFilePointer();
+            out.seek(0);
+            out.write(header);
+            out.seek(Math.max(position, HEADER_BYTES));
+        }
+
+        //WAV guarda en little endian, con 8 bits sin signo y el resto con signo
+        private byte[] toWav(AudioFormat format, byte[] data, int offset, int length) {
+            int bytesPerSample = format.getSampleSizeInBits() / 8;
+            boolean signed8 = bytesPerSample == 1 && format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+            boolean unsignedWide = bytesPerSample > 1 && format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED);
+            boolean swap = bytesPerSample > 1 && format.isBigEndian();
+            if (!signed8 && !unsignedWide && !swap && offset == 0) {
+                return data;
+            }
+            if (converted.length < length) {
+                converted = new byte[length];
+            }
+            for (int i = 0; i + bytesPerSample <= length; i += bytesPerSample) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    converted[i + b] = data[offset + i + (swap ? bytesPerSample - 1 - b : b)];
+                }
+                if (signed8 || unsignedWide) {
+                    //El byte más significativo cambia de signo con y sin signo
+                    converted[i + bytesPerSample - 1] ^= (byte) 0x80;
+                }
+            }
+            return converted;
+        }
+
+        private static boolean isSupported(AudioFormat format) {
+            AudioFormat.Encoding encoding = format.getEncoding();
+            int bits = format.getSampleSizeInBits();
+            boolean pcm = encoding.equals(AudioFormat.Encoding.PCM_SIGNED) || encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED);
+            boolean pcmFloat = encoding.equals(AudioFormat.Encoding.PCM_FLOAT) && (bits == 32 || bits == 64);
+            return (pcm || pcmFloat) && bits % 8 == 0 && bits > 0 && format.getChannels() > 0
+                    && format.getFrameSize() == bits / 8 * format.getChannels();
+        }
+
+        private static void putAscii(byte[] target, int offset, String text) {
+            for (int i = 0; i < text.length(); i++) {
+                target[offset + i] = (byte) text.charAt(i);
+            }
+        }
+
+        private static void putInt(byte[] target, int offset, int value, int bytes) {
+            for (int i = 0; i < bytes; i++) {
+                target[offset + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+}